@@ -0,0 +1,251 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Load test: many front desks reserving, updating, checking out and searching at once against a
+ * real MySQL database, to measure where the rush-hour limits are before an upgrade.
+ *
+ * <pre>
+ * java -Dhotel.db.url="jdbc:mysql://localhost:3310/hotel_load?serverTimezone=UTC&amp;rewriteBatchedStatements=true"
+ *      -cp "lib/mysql-connector-j-9.1.0.jar;bin-bench" LoadGenerator
+ *      [-Dload.desks=50] [-Dload.seconds=60] [-Dload.rate=2]   (operations per second, per desk)
+ *      [-Dload.mix=reserve:40,update:15,checkout:15,available:30]
+ *      [-Dload.rooms=100] [-Dload.days=30] [-Dload.cleanup=true]
+ * </pre>
+ *
+ * Each desk is a thread with its own connection and {@link ReservationService}, so, as on a real
+ * desk, its availability index only sees its own writes and clashes with other desks are caught
+ * by the database. Operations arrive at random (Poisson) at the given rate whether or not the
+ * previous one finished, and latency is measured from when an operation was due: a desk that
+ * falls behind shows up as latency instead of quietly lowering the load.
+ *
+ * The test books only its own rooms ({@value #FIRST_ROOM} and up, type LoadTest), which it
+ * creates and clears first; use a scratch schema all the same. At the end it reports throughput,
+ * latency percentiles, lock timeouts, InnoDB row lock waits and any double bookings (overlapping
+ * ACTIVE stays on one room), and exits with status 1 if there are any.
+ */
+public class LoadGenerator {
+
+    private static final int FIRST_ROOM = 90_001;
+    private static final long DAY = 24L * 60 * 60 * 1000;
+
+    enum Op { RESERVE, UPDATE, CHECKOUT, AVAILABLE }
+
+    private static final class Stats {
+        final Metrics.LatencyHistogram latency = new Metrics.LatencyHistogram();
+        final LongAdder ok = new LongAdder();
+        final LongAdder conflicts = new LongAdder();   // room already taken: expected under load
+        final LongAdder lockTimeouts = new LongAdder();
+        final LongAdder errors = new LongAdder();
+    }
+
+    private final int desks = Integer.getInteger("load.desks", 50);
+    private final int seconds = Integer.getInteger("load.seconds", 60);
+    private final double rate = Double.parseDouble(System.getProperty("load.rate", "2"));
+    private final int rooms = Integer.getInteger("load.rooms", 100);
+    private final int days = Integer.getInteger("load.days", 30);
+    private final Op[] mix = parseMix(System.getProperty("load.mix", "reserve:40,update:15,checkout:15,available:30"));
+    private final Map<Op, Stats> stats = new EnumMap<>(Op.class);
+    private final AtomicReference<Exception> firstError = new AtomicReference<>();
+    private final long today = Timestamp.valueOf(LocalDate.now().atStartOfDay()).getTime();
+    private long doubles;
+
+    LoadGenerator() {
+        for (Op op : Op.values()) stats.put(op, new Stats());
+    }
+
+    /** "reserve:40,update:15,..." as a table of 100-ish slots to pick from at random. */
+    static Op[] parseMix(String spec) {
+        List<Op> slots = new ArrayList<>();
+        for (String part : spec.split(",")) {
+            String[] kv = part.trim().split(":");
+            if (kv.length != 2) throw new IllegalArgumentException("Invalid mix entry '" + part + "' (expected op:weight)");
+            Op op = Op.valueOf(kv[0].trim().toUpperCase(Locale.ROOT));
+            for (int i = Integer.parseInt(kv[1].trim()); i > 0; i--) slots.add(op);
+        }
+        if (slots.isEmpty()) throw new IllegalArgumentException("The mix has no weights: " + spec);
+        return slots.toArray(new Op[0]);
+    }
+
+    void run() throws Exception {
+        ConnectionPool admin = DbConfig.newPool(1);
+        List<ConnectionPool> pools = new ArrayList<>();
+        try {
+            MigrationRunner.runAtStartup(admin);
+            prepareRooms(admin);
+            long[] locksBefore = rowLockWaits(admin);
+
+            List<Thread> threads = new ArrayList<>();
+            long start = System.nanoTime() + 1_000_000_000L; // every desk starts on the same beat
+            long end = start + seconds * 1_000_000_000L;
+            for (int d = 0; d < desks; d++) {
+                ConnectionPool pool = DbConfig.newPool(1);
+                pools.add(pool);
+                int desk = d;
+                Thread t = new Thread(() -> desk(desk, pool, start, end), "desk-" + d);
+                threads.add(t);
+                t.start();
+            }
+            for (Thread t : threads) t.join();
+
+            long[] locksAfter = rowLockWaits(admin);
+            doubles = doubleBookings(admin);
+            report(locksAfter[0] - locksBefore[0], locksAfter[1] - locksBefore[1]);
+            if (Boolean.getBoolean("load.cleanup")) clearRooms(admin, true);
+        } finally {
+            for (ConnectionPool p : pools) p.close();
+            admin.close();
+        }
+    }
+
+    private void desk(int desk, ConnectionPool pool, long start, long end) {
+        ReservationService service = new ReservationService(pool);
+        Random rnd = new Random(desk);
+        List<Integer> mine = new ArrayList<>(); // this desk's ACTIVE bookings
+        try {
+            service.loadCaches();
+        } catch (SQLException e) {
+            firstError.compareAndSet(null, e);
+            return;
+        }
+        long due = start;
+        while (true) {
+            due += (long) (-Math.log(1 - rnd.nextDouble()) / rate * 1e9); // exponential gaps: Poisson arrivals
+            if (due >= end) return;
+            long wait = due - System.nanoTime();
+            if (wait > 0) LockSupport.parkNanos(wait);
+
+            Op op = mix[rnd.nextInt(mix.length)];
+            if ((op == Op.UPDATE || op == Op.CHECKOUT) && mine.isEmpty()) op = Op.RESERVE;
+            Stats s = stats.get(op);
+            try {
+                perform(op, desk, service, rnd, mine);
+                s.ok.increment();
+            } catch (RoomConflictException e) {
+                s.conflicts.increment();
+            } catch (Exception e) {
+                if (ReservationService.isLockTimeout(e)) {
+                    s.lockTimeouts.increment();
+                } else {
+                    s.errors.increment();
+                    firstError.compareAndSet(null, e);
+                }
+            }
+            s.latency.record((System.nanoTime() - due) / 1_000);
+        }
+    }
+
+    private void perform(Op op, int desk, ReservationService service, Random rnd, List<Integer> mine) throws SQLException {
+        Timestamp in = new Timestamp(today + rnd.nextInt(days) * DAY + 14 * 60 * 60 * 1000);
+        Timestamp out = new Timestamp(in.getTime() + (1 + rnd.nextInt(4)) * DAY - 3 * 60 * 60 * 1000);
+        int room = FIRST_ROOM + rnd.nextInt(rooms);
+        switch (op) {
+            case RESERVE:
+                mine.add(service.reserve("Load Desk " + desk, "90000" + desk, room, in, out).id);
+                break;
+            case UPDATE: {
+                int id = mine.get(rnd.nextInt(mine.size()));
+                if (service.update(id, "Load Desk " + desk, "90000" + desk, room, in, out) == null) mine.remove((Integer) id);
+                break;
+            }
+            case CHECKOUT:
+                service.checkout(mine.remove(rnd.nextInt(mine.size())));
+                break;
+            case AVAILABLE:
+                service.availableRooms(in, out);
+                break;
+        }
+    }
+
+    // ---------------- Setup and checks ----------------
+
+    private void prepareRooms(ConnectionPool admin) throws SQLException {
+        clearRooms(admin, false);
+        try (Connection c = admin.getConnection();
+             PreparedStatement ps = c.prepareStatement(
+                     "INSERT IGNORE INTO rooms (room_number, room_type, price_per_night) VALUES (?, 'LoadTest', 2500.00)")) {
+            for (int i = 0; i < rooms; i++) {
+                ps.setInt(1, FIRST_ROOM + i);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
+    /** Deletes earlier test bookings and invoices; with {@code rooms} the test rooms too. */
+    private void clearRooms(ConnectionPool admin, boolean rooms) throws SQLException {
+        try (Connection c = admin.getConnection(); Statement st = c.createStatement()) {
+            String range = " WHERE room_number >= " + FIRST_ROOM;
+            st.executeUpdate("DELETE FROM invoices" + range);
+            st.executeUpdate("DELETE FROM reservations" + range);
+            if (rooms) st.executeUpdate("DELETE FROM rooms" + range);
+        }
+    }
+
+    /** {waits, total wait ms} from InnoDB's server-wide row lock counters. */
+    private static long[] rowLockWaits(ConnectionPool admin) throws SQLException {
+        long[] out = new long[2];
+        try (Connection c = admin.getConnection(); Statement st = c.createStatement();
+             ResultSet rs = st.executeQuery("SHOW GLOBAL STATUS LIKE 'Innodb_row_lock_%'")) {
+            while (rs.next()) {
+                if (rs.getString(1).equalsIgnoreCase("Innodb_row_lock_waits")) out[0] = rs.getLong(2);
+                if (rs.getString(1).equalsIgnoreCase("Innodb_row_lock_time")) out[1] = rs.getLong(2);
+            }
+        }
+        return out;
+    }
+
+    /** Pairs of ACTIVE bookings on the same test room whose stays overlap; must be 0. */
+    private static long doubleBookings(ConnectionPool admin) throws SQLException {
+        try (Connection c = admin.getConnection(); Statement st = c.createStatement();
+             ResultSet rs = st.executeQuery(
+                     "SELECT COUNT(*) FROM reservations a JOIN reservations b " +
+                     "ON b.room_number = a.room_number AND b.reservation_id > a.reservation_id " +
+                     "WHERE a.room_number >= " + FIRST_ROOM + " AND a.status = 'ACTIVE' AND b.status = 'ACTIVE' " +
+                     "AND a.checkout_date > b.reservation_date AND a.reservation_date < b.checkout_date")) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    private void report(long lockWaits, long lockWaitMs) {
+        System.out.printf("%d desks x %.1f ops/s for %d s on %d rooms%n%n", desks, rate, seconds, rooms);
+        System.out.printf("%-10s %9s %8s %9s %8s %7s %9s %9s %9s %9s %9s%n",
+                "op", "count", "ops/s", "ok", "conflict", "lockTO", "errors", "p50 ms", "p95 ms", "p99 ms", "max ms");
+        long total = 0;
+        for (Map.Entry<Op, Stats> e : stats.entrySet()) {
+            Stats s = e.getValue();
+            long n = s.latency.count();
+            total += n;
+            if (n == 0) continue;
+            System.out.printf("%-10s %9d %8.1f %9d %8d %7d %9d %9.1f %9.1f %9.1f %9.1f%n",
+                    e.getKey().name().toLowerCase(Locale.ROOT), n, n / (double) seconds, s.ok.sum(), s.conflicts.sum(),
+                    s.lockTimeouts.sum(), s.errors.sum(), s.latency.quantile(0.5) / 1000.0, s.latency.quantile(0.95) / 1000.0,
+                    s.latency.quantile(0.99) / 1000.0, s.latency.max() / 1000.0);
+        }
+        System.out.printf("%nthroughput        %.1f ops/s%n", total / (double) seconds);
+        System.out.printf("row lock waits    %d (%d ms waited in total)%n", lockWaits, lockWaitMs);
+        System.out.printf("double bookings   %d%n", doubles);
+        if (firstError.get() != null) System.out.println("first error       " + firstError.get());
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadGenerator load = new LoadGenerator();
+        load.run();
+        if (load.doubles > 0) System.exit(1);
+    }
+}
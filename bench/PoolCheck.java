@@ -0,0 +1,230 @@
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Checks {@link ConnectionPool} checkout, validation and eviction against an in-process stub
+ * driver ({@code jdbc:stub:}), so no database is needed.
+ *
+ * <pre>
+ * java -cp "lib/mysql-connector-j-9.1.0.jar;bin-bench" PoolCheck
+ * </pre>
+ *
+ * Covers exhaustion and the acquire timeout, a waiter being handed a returned connection,
+ * close-on-return (same physical connection, dead proxy, rollback of an open transaction),
+ * validation of a stale connection, max lifetime and idle eviction. Exits with status 1 on the
+ * first failed check.
+ */
+public class PoolCheck {
+
+    private static final String URL = "jdbc:stub:pool";
+
+    /** A physical connection of the stub driver; {@code broken} makes every query fail. */
+    static final class StubConnection {
+        volatile boolean closed;
+        volatile boolean broken;
+        volatile boolean autoCommit = true;
+        volatile int rollbacks;
+        volatile int queries;
+
+        Connection proxy() {
+            return (Connection) Proxy.newProxyInstance(PoolCheck.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, (p, m, args) -> {
+                        switch (m.getName()) {
+                            case "close": closed = true; return null;
+                            case "isClosed": return closed;
+                            case "getAutoCommit": return autoCommit;
+                            case "setAutoCommit": autoCommit = (Boolean) args[0]; return null;
+                            case "rollback": rollbacks++; return null;
+                            case "clearWarnings": return null;
+                            case "createStatement": return statement();
+                            case "equals": return p == args[0];
+                            case "hashCode": return System.identityHashCode(p);
+                            case "toString": return "StubConnection@" + Integer.toHexString(hashCode());
+                            default: throw new SQLFeatureNotSupportedException(m.getName());
+                        }
+                    });
+        }
+
+        private Statement statement() {
+            return (Statement) Proxy.newProxyInstance(PoolCheck.class.getClassLoader(),
+                    new Class<?>[]{Statement.class}, (p, m, args) -> {
+                        switch (m.getName()) {
+                            case "executeQuery":
+                                queries++;
+                                if (broken || closed) throw new SQLException("Communications link failure");
+                                return resultSet();
+                            case "setQueryTimeout":
+                            case "close":
+                                return null;
+                            default: throw new SQLFeatureNotSupportedException(m.getName());
+                        }
+                    });
+        }
+
+        private static ResultSet resultSet() {
+            boolean[] read = {false};
+            return (ResultSet) Proxy.newProxyInstance(PoolCheck.class.getClassLoader(),
+                    new Class<?>[]{ResultSet.class}, (p, m, args) -> {
+                        switch (m.getName()) {
+                            case "next": return !read[0] && (read[0] = true);
+                            case "close": return null;
+                            default: throw new SQLFeatureNotSupportedException(m.getName());
+                        }
+                    });
+        }
+    }
+
+    /** Opens {@link StubConnection}s and remembers them in order. */
+    static final class StubDriver implements Driver {
+        final List<StubConnection> opened = new ArrayList<>();
+
+        @Override
+        public synchronized Connection connect(String url, Properties info) {
+            if (!acceptsURL(url)) return null;
+            StubConnection c = new StubConnection();
+            opened.add(c);
+            return c.proxy();
+        }
+
+        synchronized StubConnection last() { return opened.get(opened.size() - 1); }
+        synchronized int count() { return opened.size(); }
+
+        @Override public boolean acceptsURL(String url) { return url.startsWith("jdbc:stub:"); }
+        @Override public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) { return new DriverPropertyInfo[0]; }
+        @Override public int getMajorVersion() { return 1; }
+        @Override public int getMinorVersion() { return 0; }
+        @Override public boolean jdbcCompliant() { return false; }
+        @Override public Logger getParentLogger() throws SQLFeatureNotSupportedException { throw new SQLFeatureNotSupportedException(); }
+    }
+
+    private static final StubDriver driver = new StubDriver();
+    private static int passed;
+
+    public static void main(String[] args) throws Exception {
+        DriverManager.registerDriver(driver);
+        exhaustion();
+        closeOnReturn();
+        staleValidation();
+        lifetimeAndEviction();
+        System.out.println("PoolCheck: " + passed + " checks passed");
+    }
+
+    private static void exhaustion() throws Exception {
+        try (ConnectionPool pool = new ConnectionPool(URL, "", "", 2).acquireTimeout(200)) {
+            Connection a = pool.getConnection();
+            Connection b = pool.getConnection();
+            long start = System.nanoTime();
+            try {
+                pool.getConnection().close();
+                fail("a third connection from a pool of 2 should time out");
+            } catch (SQLTimeoutException expected) {
+                long waited = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                check(waited >= 190, "acquire waits for the timeout before failing (waited " + waited + " ms)");
+            }
+            check(pool.getAcquireTimeouts() == 1, "the timeout is counted");
+
+            // A borrower waiting for a connection gets the one handed back
+            pool.acquireTimeout(5_000);
+            CompletableFuture<Connection> waiter = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return pool.getConnection();
+                } catch (SQLException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            Thread.sleep(100);
+            check(!waiter.isDone(), "a borrower waits while the pool is exhausted");
+            a.close();
+            Connection c = waiter.get(2, TimeUnit.SECONDS);
+            check(driver.count() == 2, "the waiter reuses the returned connection instead of opening one");
+            b.close();
+            c.close();
+        }
+    }
+
+    private static void closeOnReturn() throws Exception {
+        int before = driver.count();
+        try (ConnectionPool pool = new ConnectionPool(URL, "", "", 2)) {
+            Connection first = pool.getConnection();
+            StubConnection physical = driver.last();
+            first.setAutoCommit(false);
+            first.close();
+            check(!physical.closed, "close() returns the physical connection instead of closing it");
+            check(physical.rollbacks == 1 && physical.autoCommit, "an open transaction is rolled back on return");
+            check(first.isClosed(), "the returned proxy reports itself closed");
+            try {
+                first.createStatement();
+                fail("a returned proxy must refuse further use");
+            } catch (SQLException expected) {
+                check(true, "a returned proxy refuses further use");
+            }
+            first.close(); // a second close must not return the connection twice
+
+            Connection second = pool.getConnection();
+            Connection third = pool.getConnection();
+            check(driver.count() == before + 2, "a double close does not hand one connection to two borrowers");
+            second.close();
+            third.close();
+        }
+        check(driver.opened.subList(before, driver.count()).stream().allMatch(c -> c.closed),
+                "closing the pool closes its idle connections");
+    }
+
+    private static void staleValidation() throws Exception {
+        try (ConnectionPool pool = new ConnectionPool(URL, "", "", 2).validateAfterIdle(0)) {
+            pool.getConnection().close();
+            StubConnection stale = driver.last();
+            Connection again = pool.getConnection();
+            check(driver.last() == stale && stale.queries == 1, "an idle connection is validated before reuse");
+            again.close();
+
+            stale.broken = true; // e.g. the server dropped the session while it sat idle
+            int before = driver.count();
+            Connection fresh = pool.getConnection();
+            check(stale.closed, "a connection that fails validation is closed");
+            check(driver.count() == before + 1 && !driver.last().closed, "and replaced by a new one");
+            fresh.close();
+        }
+    }
+
+    private static void lifetimeAndEviction() throws Exception {
+        try (ConnectionPool pool = new ConnectionPool(URL, "", "", 2).maxLifetime(0)) {
+            pool.getConnection().close();
+            check(driver.last().closed, "a connection past its max lifetime is closed on return");
+        }
+        try (ConnectionPool pool = new ConnectionPool(URL, "", "", 2).idleTimeout(50)) {
+            pool.getConnection().close();
+            StubConnection idle = driver.last();
+            pool.evictIdle();
+            check(!idle.closed, "a recently returned connection survives eviction");
+            Thread.sleep(80);
+            pool.evictIdle();
+            check(idle.closed, "a connection idle past the idle timeout is evicted");
+        }
+    }
+
+    private static void check(boolean ok, String what) {
+        if (!ok) fail(what);
+        passed++;
+        System.out.println("ok   " + what);
+    }
+
+    private static void fail(String what) {
+        System.out.println("FAIL " + what);
+        System.exit(1);
+    }
+}
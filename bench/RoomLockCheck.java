@@ -0,0 +1,173 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Concurrency check for {@link ReservationService#reserve} and {@link ReservationService#update}:
+ * many desks go for the same room and the same nights at the same instant, and exactly one of
+ * them may win.
+ *
+ * <pre>
+ * java -Dhotel.db.url="jdbc:mysql://localhost:3310/hotel_check?serverTimezone=UTC"
+ *      -cp "lib/mysql-connector-j-9.1.0.jar;bin-bench" RoomLockCheck
+ *      [-Dcheck.desks=32] [-Dcheck.rounds=50]
+ * </pre>
+ *
+ * Each desk is a thread with its own connection and {@link ReservationService}, so its
+ * availability index never hears of the other desks' bookings and every attempt reaches the
+ * room lock and the overlap check in the database. In each round all desks are released together
+ * by a barrier; even desks reserve room {@value #ROOM} directly, odd desks first book their own
+ * spare room and then try to move that booking onto it. All requested stays of a round share a
+ * night, so one success per round is the only correct outcome.
+ *
+ * The check uses its own rooms ({@value #ROOM} and up, type LockCheck), clearing them before and
+ * after; use a scratch schema all the same. It exits with status 1 if a round had more than one
+ * winner or the table holds overlapping ACTIVE stays on the room.
+ */
+public class RoomLockCheck {
+
+    private static final int ROOM = 89_000;
+    private static final long DAY = 24L * 60 * 60 * 1000;
+
+    private final int desks = Integer.getInteger("check.desks", 32);
+    private final int rounds = Integer.getInteger("check.rounds", 50);
+    private final long firstDay = Timestamp.valueOf(LocalDate.now().plusDays(1).atStartOfDay()).getTime();
+    private final AtomicInteger[] winners = new AtomicInteger[rounds];
+    private final AtomicInteger conflicts = new AtomicInteger();
+    private final AtomicInteger lockTimeouts = new AtomicInteger();
+    private final AtomicReference<Exception> firstError = new AtomicReference<>();
+
+    boolean run() throws Exception {
+        for (int r = 0; r < rounds; r++) winners[r] = new AtomicInteger();
+        ConnectionPool admin = DbConfig.newPool(1);
+        List<ConnectionPool> pools = new ArrayList<>();
+        try {
+            MigrationRunner.runAtStartup(admin);
+            clearRooms(admin, false);
+            createRooms(admin);
+
+            CyclicBarrier barrier = new CyclicBarrier(desks);
+            List<Thread> threads = new ArrayList<>();
+            for (int d = 0; d < desks; d++) {
+                ConnectionPool pool = DbConfig.newPool(1);
+                pools.add(pool);
+                int desk = d;
+                Thread t = new Thread(() -> desk(desk, pool, barrier), "desk-" + d);
+                threads.add(t);
+                t.start();
+            }
+            for (Thread t : threads) t.join();
+
+            long doubles = doubleBookings(admin);
+            int bad = 0;
+            for (int r = 0; r < rounds; r++) {
+                int won = winners[r].get();
+                if (won > 1) {
+                    System.out.println("round " + r + ": " + won + " desks booked the room");
+                    bad++;
+                }
+            }
+            System.out.printf("%d desks x %d rounds on room %d%n", desks, rounds, ROOM);
+            System.out.printf("rounds won        %d of %d%n", rounds - countEmpty(), rounds);
+            System.out.printf("conflicts         %d%n", conflicts.get());
+            System.out.printf("lock timeouts     %d%n", lockTimeouts.get());
+            System.out.printf("double bookings   %d (rounds with more than one winner: %d)%n", doubles, bad);
+            if (firstError.get() != null) System.out.println("first error       " + firstError.get());
+            clearRooms(admin, true);
+            return doubles == 0 && bad == 0 && firstError.get() == null;
+        } finally {
+            for (ConnectionPool p : pools) p.close();
+            admin.close();
+        }
+    }
+
+    private void desk(int desk, ConnectionPool pool, CyclicBarrier barrier) {
+        ReservationService service = new ReservationService(pool);
+        Random rnd = new Random(desk);
+        String guest = "Lock Desk " + desk;
+        String contact = "89000" + desk;
+        try {
+            service.loadCaches();
+            for (int r = 0; r < rounds; r++) {
+                // Every stay of round r covers its second night: [0 or 1, 2 or 3) days into the round
+                long base = firstDay + r * 4L * DAY + 14 * 60 * 60 * 1000;
+                Timestamp in = new Timestamp(base + rnd.nextInt(2) * DAY);
+                Timestamp out = new Timestamp(base + (2 + rnd.nextInt(2)) * DAY - 3 * 60 * 60 * 1000);
+                int parked = desk % 2 == 1 ? service.reserve(guest, contact, ROOM + 1 + desk, in, out).id : -1;
+
+                barrier.await();
+                try {
+                    if (parked < 0) {
+                        service.reserve(guest, contact, ROOM, in, out);
+                    } else if (service.update(parked, guest, contact, ROOM, in, out) == null) {
+                        throw new IllegalStateException("Reservation " + parked + " disappeared");
+                    }
+                    winners[r].incrementAndGet();
+                } catch (RoomConflictException e) {
+                    conflicts.incrementAndGet();
+                } catch (SQLException e) {
+                    if (!ReservationService.isLockTimeout(e)) throw e;
+                    lockTimeouts.incrementAndGet();
+                }
+            }
+        } catch (Exception e) {
+            firstError.compareAndSet(null, e);
+            barrier.reset(); // release the others instead of leaving them waiting for this desk
+        }
+    }
+
+    private int countEmpty() {
+        int n = 0;
+        for (AtomicInteger w : winners) if (w.get() == 0) n++;
+        return n;
+    }
+
+    private void createRooms(ConnectionPool admin) throws SQLException {
+        try (Connection c = admin.getConnection();
+             PreparedStatement ps = c.prepareStatement(
+                     "INSERT IGNORE INTO rooms (room_number, room_type, price_per_night) VALUES (?, 'LockCheck', 2500.00)")) {
+            for (int i = 0; i <= desks; i++) {
+                ps.setInt(1, ROOM + i);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
+    /** Deletes earlier check bookings and invoices; with {@code rooms} the check rooms too. */
+    private void clearRooms(ConnectionPool admin, boolean rooms) throws SQLException {
+        try (Connection c = admin.getConnection(); Statement st = c.createStatement()) {
+            String range = " WHERE room_number BETWEEN " + ROOM + " AND " + (ROOM + 999);
+            st.executeUpdate("DELETE FROM invoices" + range);
+            st.executeUpdate("DELETE FROM reservations" + range);
+            if (rooms) st.executeUpdate("DELETE FROM rooms" + range);
+        }
+    }
+
+    /** Pairs of ACTIVE bookings on the contested room whose stays overlap; must be 0. */
+    private static long doubleBookings(ConnectionPool admin) throws SQLException {
+        try (Connection c = admin.getConnection(); Statement st = c.createStatement();
+             ResultSet rs = st.executeQuery(
+                     "SELECT COUNT(*) FROM reservations a JOIN reservations b " +
+                     "ON b.room_number = a.room_number AND b.reservation_id > a.reservation_id " +
+                     "WHERE a.room_number = " + ROOM + " AND a.status = 'ACTIVE' AND b.status = 'ACTIVE' " +
+                     "AND a.checkout_date > b.reservation_date AND a.reservation_date < b.checkout_date")) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (!new RoomLockCheck().run()) System.exit(1);
+    }
+}
@@ -0,0 +1,147 @@
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import hotel.bench.Workloads;
+
+/**
+ * The benchmark workloads over the application's classes. Stays are spread over
+ * {@code bench.rooms} rooms (default 500) from 2020 on, and each operation cycles through 1024
+ * prepared inputs so it isn't timing one lucky cache line.
+ */
+public class HotelWorkloads implements Workloads {
+
+    private static final long DAY = 24L * 60 * 60 * 1000;
+    private static final int ROOMS = Integer.getInteger("bench.rooms", 500);
+    private static final long EPOCH = Timestamp.valueOf("2020-01-01 14:00:00").getTime();
+
+    @Override
+    public Op computeNights() {
+        Timestamp[] ins = new Timestamp[1024];
+        Timestamp[] outs = new Timestamp[1024];
+        Random rnd = new Random(1);
+        for (int i = 0; i < ins.length; i++) {
+            long start = EPOCH + rnd.nextInt(3650) * DAY;
+            ins[i] = new Timestamp(start);
+            outs[i] = new Timestamp(start + (1 + rnd.nextInt(14)) * DAY - 3 * 60 * 60 * 1000);
+        }
+        int[] i = {0};
+        return () -> {
+            int k = i[0]++ & 1023;
+            return Dates.nights(ins[k], outs[k]);
+        };
+    }
+
+    @Override
+    public Op bill() {
+        Reservation[] rows = reservations(1024, new Random(2));
+        BillingEngine billing = new BillingEngine(TaxSlabs.parse("0:0,1001:12,7501:18"));
+        RateCalendar rates = new RateCalendar(); // no overrides loaded: every night at the base price
+        int[] i = {0};
+        return () -> {
+            Reservation r = rows[i[0]++ & 1023];
+            RateCalendar.Stay stay = rates.stay("Deluxe", 250_000, Dates.epochDay(r.checkIn.getTime()),
+                    Dates.nights(r.checkIn, r.checkOut));
+            return billing.quote(r, stay).totalPaise;
+        };
+    }
+
+    @Override
+    public Op overlapCheck(int n) {
+        AvailabilityIndex index = index(n, new Random(3));
+        long span = spanDays(n) * DAY;
+        Random rnd = new Random(4);
+        long[] from = new long[1024];
+        int[] room = new int[1024];
+        for (int k = 0; k < 1024; k++) {
+            room[k] = 100 + rnd.nextInt(ROOMS);
+            from[k] = EPOCH + (long) (rnd.nextDouble() * span);
+        }
+        int[] i = {0};
+        return () -> {
+            int k = i[0]++ & 1023;
+            return index.findOverlap(room[k], from[k], from[k] + 2 * DAY, -1);
+        };
+    }
+
+    @Override
+    public Op freeRooms(int n) {
+        AvailabilityIndex index = index(n, new Random(3));
+        long span = spanDays(n) * DAY;
+        Random rnd = new Random(5);
+        long[] from = new long[1024];
+        for (int k = 0; k < 1024; k++) from[k] = EPOCH + (long) (rnd.nextDouble() * span);
+        int[] i = {0};
+        return () -> {
+            int k = i[0]++ & 1023;
+            return index.freeRooms(from[k], from[k] + 3 * DAY).length;
+        };
+    }
+
+    @Override
+    public Op populate(int n) {
+        Reservation[] rows = reservations(n, new Random(6));
+        return () -> {
+            List<Reservation> page = new ArrayList<>(rows.length);
+            AvailabilityIndex fresh = new AvailabilityIndex();
+            for (Reservation r : rows) {
+                Reservation copy = new Reservation(r.id, r.guest, r.room, r.contact, r.checkIn, r.checkOut, r.status);
+                page.add(copy);
+                if (copy.isActive()) fresh.put(copy.id, copy.room, copy.checkIn.getTime(), copy.checkOut.getTime());
+            }
+            return page.size();
+        };
+    }
+
+    @Override
+    public Op report(int n) {
+        Reservation[] rows = reservations(n, new Random(7));
+        String[] types = {"Standard", "Deluxe", "Suite"};
+        int[] capacity = {ROOMS / 2, ROOMS / 3, ROOMS - ROOMS / 2 - ROOMS / 3};
+        LocalDate from = rows[0].checkIn.toLocalDateTime().toLocalDate().withDayOfYear(1);
+        return () -> {
+            ReportEngine.Report report = new ReportEngine.Report(from, 365, types, capacity);
+            for (Reservation r : rows) {
+                report.add(r.checkIn.getTime(), r.checkOut.getTime(), r.room % 3, 250_000, 1_200);
+            }
+            return report.sold[0];
+        };
+    }
+
+    /** Days of calendar needed to fit n non-overlapping stays over all rooms (avg 3.5 nights + a gap). */
+    private static long spanDays(int n) {
+        return Math.max(30, (long) n * 5 / ROOMS);
+    }
+
+    /** n ACTIVE bookings spread over the rooms without overlaps, like a real calendar. */
+    private static AvailabilityIndex index(int n, Random rnd) {
+        AvailabilityIndex index = new AvailabilityIndex();
+        long[] next = new long[ROOMS];
+        for (int r = 0; r < ROOMS; r++) {
+            next[r] = EPOCH;
+            index.put(-1 - r, 100 + r, 0, 0); // make sure every room is known even if it gets no bookings
+            index.remove(-1 - r);
+        }
+        for (int id = 1; id <= n; id++) {
+            int r = rnd.nextInt(ROOMS);
+            long start = next[r] + rnd.nextInt(3) * DAY;
+            long end = start + (1 + rnd.nextInt(6)) * DAY;
+            index.put(id, 100 + r, start, end);
+            next[r] = end;
+        }
+        return index;
+    }
+
+    private static Reservation[] reservations(int n, Random rnd) {
+        Reservation[] rows = new Reservation[n];
+        for (int i = 0; i < n; i++) {
+            long start = EPOCH + rnd.nextInt(3650) * DAY;
+            long end = start + (1 + rnd.nextInt(14)) * DAY - 3 * 60 * 60 * 1000;
+            rows[i] = new Reservation(i + 1, "Guest " + i, 100 + rnd.nextInt(ROOMS), "98" + (10000000 + i),
+                    new Timestamp(start), new Timestamp(end), i % 4 == 0 ? "CHECKED_OUT" : "ACTIVE");
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,40 @@
+package hotel.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** The free-rooms search behind the availability screen and the API's search. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = "-Xmx2g")
+public class AvailabilityBench {
+
+    @Param({"10000", "100000", "1000000"})
+    public int reservations;
+
+    private Workloads.Op freeRooms;
+
+    @Setup
+    public void setUp() {
+        freeRooms = Workloads.load().freeRooms(reservations);
+    }
+
+    @Benchmark
+    public long freeRooms() {
+        return freeRooms.run();
+    }
+}
@@ -0,0 +1,44 @@
+package hotel.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Night counting and bill computation; neither depends on how many bookings there are. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class BillingBench {
+
+    private Workloads.Op nights;
+    private Workloads.Op bill;
+
+    @Setup
+    public void setUp() {
+        Workloads w = Workloads.load();
+        nights = w.computeNights();
+        bill = w.bill();
+    }
+
+    @Benchmark
+    public long computeNights() {
+        return nights.run();
+    }
+
+    @Benchmark
+    public long bill() {
+        return bill.run();
+    }
+}
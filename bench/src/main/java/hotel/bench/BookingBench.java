@@ -0,0 +1,48 @@
+package hotel.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** The double-booking check every reserve and update makes, and a full load of the table and index. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = "-Xmx2g")
+public class BookingBench {
+
+    @Param({"10000", "100000", "1000000"})
+    public int reservations;
+
+    private Workloads.Op overlap;
+    private Workloads.Op populate;
+
+    @Setup
+    public void setUp() {
+        Workloads w = Workloads.load();
+        overlap = w.overlapCheck(reservations);
+        populate = w.populate(reservations);
+    }
+
+    @Benchmark
+    public long overlapCheck() {
+        return overlap.run();
+    }
+
+    @Benchmark
+    public long populate() {
+        return populate.run();
+    }
+}
@@ -0,0 +1,151 @@
+package hotel.bench;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Compares two JMH result files written with {@code -rf json}. A benchmark whose average time grew
+ * by more than {@code bench.threshold} percent (default 10) is reported as a regression and the
+ * run exits with status 1.
+ *
+ * <pre>
+ * java -Dbench.threshold=5 -cp target/benchmarks.jar hotel.bench.Compare before.json after.json
+ * </pre>
+ */
+public final class Compare {
+
+    private Compare() {}
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: java -cp target/benchmarks.jar hotel.bench.Compare <before.json> <after.json>");
+            System.exit(2);
+        }
+        double threshold = Double.parseDouble(System.getProperty("bench.threshold", "10"));
+        Map<String, double[]> before = scores(args[0]);
+        Map<String, double[]> after = scores(args[1]);
+        boolean ok = true;
+        System.out.println("Compared with " + args[0] + " (threshold " + threshold + "%):");
+        for (Map.Entry<String, double[]> e : after.entrySet()) {
+            double[] old = before.get(e.getKey());
+            if (old == null) continue;
+            double change = 100 * (e.getValue()[0] - old[0]) / old[0];
+            boolean regressed = change > threshold;
+            ok &= !regressed;
+            System.out.printf(Locale.ROOT, "%-40s %14.1f -> %14.1f ns/op  %+7.1f%%  (+/- %.1f%%)%s%n",
+                    e.getKey(), old[0], e.getValue()[0], change, e.getValue()[1], regressed ? "  REGRESSION" : "");
+        }
+        if (!ok) System.exit(1);
+    }
+
+    /** Benchmark name with its parameters, e.g. {@code BookingBench.overlapCheck/100000} -> score, error %. */
+    @SuppressWarnings("unchecked")
+    private static Map<String, double[]> scores(String file) throws IOException {
+        Map<String, double[]> out = new LinkedHashMap<>();
+        String text = new String(Files.readAllBytes(Paths.get(file)), StandardCharsets.UTF_8);
+        for (Object o : (List<Object>) new Json(text).value()) {
+            Map<String, Object> run = (Map<String, Object>) o;
+            String name = (String) run.get("benchmark");
+            name = name.substring(name.lastIndexOf('.', name.lastIndexOf('.') - 1) + 1);
+            Map<String, Object> params = (Map<String, Object>) run.get("params");
+            if (params != null) {
+                for (Object v : params.values()) name += "/" + v;
+            }
+            Map<String, Object> metric = (Map<String, Object>) run.get("primaryMetric");
+            double score = number(metric.get("score"));
+            double error = number(metric.get("scoreError"));
+            out.put(name, new double[] {score, Double.isNaN(error) ? 0 : 100 * error / score});
+        }
+        return out;
+    }
+
+    /** JMH writes a missing error (a single iteration) as the string "NaN". */
+    private static double number(Object v) {
+        return v instanceof Double ? (Double) v : Double.parseDouble(String.valueOf(v));
+    }
+
+    /** Just enough JSON for JMH's result files. */
+    private static final class Json {
+        private final String s;
+        private int i;
+
+        Json(String s) {
+            this.s = s;
+        }
+
+        Object value() {
+            skipSpace();
+            char ch = s.charAt(i);
+            if (ch == '{') {
+                Map<String, Object> map = new LinkedHashMap<>();
+                i++;
+                while (next() != '}') {
+                    String key = (String) value();
+                    expect(':');
+                    map.put(key, value());
+                    if (next() == ',') i++;
+                }
+                i++;
+                return map;
+            }
+            if (ch == '[') {
+                List<Object> list = new ArrayList<>();
+                i++;
+                while (next() != ']') {
+                    list.add(value());
+                    if (next() == ',') i++;
+                }
+                i++;
+                return list;
+            }
+            if (ch == '"') {
+                StringBuilder sb = new StringBuilder();
+                for (i++; s.charAt(i) != '"'; i++) {
+                    if (s.charAt(i) == '\\') {
+                        char esc = s.charAt(++i);
+                        if (esc == 'u') {
+                            sb.append((char) Integer.parseInt(s.substring(i + 1, i + 5), 16));
+                            i += 4;
+                        } else {
+                            sb.append(esc == 'n' ? '\n' : esc == 't' ? '\t' : esc);
+                        }
+                    } else {
+                        sb.append(s.charAt(i));
+                    }
+                }
+                i++;
+                return sb.toString();
+            }
+            int start = i;
+            while (i < s.length() && ",}] \t\r\n".indexOf(s.charAt(i)) < 0) i++;
+            String word = s.substring(start, i);
+            switch (word) {
+                case "true": return Boolean.TRUE;
+                case "false": return Boolean.FALSE;
+                case "null": return null;
+                default: return Double.parseDouble(word);
+            }
+        }
+
+        private char next() {
+            skipSpace();
+            return s.charAt(i);
+        }
+
+        private void expect(char ch) {
+            if (next() != ch) throw new IllegalArgumentException("Expected '" + ch + "' at offset " + i);
+            i++;
+        }
+
+        private void skipSpace() {
+            while (i < s.length() && Character.isWhitespace(s.charAt(i))) i++;
+        }
+    }
+}
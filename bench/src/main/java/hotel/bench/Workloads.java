@@ -0,0 +1,40 @@
+package hotel.bench;
+
+/**
+ * The operations the benchmarks time, over synthetic data generated with fixed seeds so runs are
+ * comparable. Built by {@code HotelWorkloads}, which sits in the default package with the
+ * application's classes: a named package such as this one (JMH needs one) can't import them.
+ */
+public interface Workloads {
+
+    /** Runs one operation; the benchmark returns the value so JMH consumes it. */
+    interface Op {
+        long run();
+    }
+
+    /** Nights of a stay, over 1024 random stays. */
+    Op computeNights();
+
+    /** A bill at the base price with tax slabs, over 1024 random stays. */
+    Op bill();
+
+    /** One double-booking check against {@code reservations} ACTIVE bookings. */
+    Op overlapCheck(int reservations);
+
+    /** One free-rooms search for a 3-night stay against {@code reservations} ACTIVE bookings. */
+    Op freeRooms(int reservations);
+
+    /** Turning {@code reservations} rows into the table's row objects and the index (startup, reload). */
+    Op populate(int reservations);
+
+    /** Aggregating {@code reservations} stays into a year of per-day, per-type occupancy and revenue. */
+    Op report(int reservations);
+
+    static Workloads load() {
+        try {
+            return (Workloads) Class.forName("HotelWorkloads").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("HotelWorkloads is not on the classpath", e);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+-- Base schema, as originally set up from the README (no-op on existing databases)
+CREATE TABLE IF NOT EXISTS rooms (
+    room_number INT PRIMARY KEY,
+    room_type VARCHAR(50) NOT NULL,
+    price_per_night DECIMAL(10,2) NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS reservations (
+    reservation_id INT AUTO_INCREMENT PRIMARY KEY,
+    guest_name VARCHAR(100) NOT NULL,
+    room_number INT NOT NULL,
+    contact_number VARCHAR(20) NOT NULL,
+    reservation_date DATETIME NOT NULL,
+    checkout_date DATETIME NOT NULL,
+    status ENUM('ACTIVE', 'CHECKED_OUT') DEFAULT 'ACTIVE',
+    FOREIGN KEY (room_number) REFERENCES rooms(room_number)
+);
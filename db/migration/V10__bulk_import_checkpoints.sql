@@ -0,0 +1,10 @@
+-- How far BulkTool got with each import file. Updated in the same transaction as the rows of
+-- each chunk, so a rerun after a failure continues exactly after the last committed chunk.
+CREATE TABLE IF NOT EXISTS bulk_import_checkpoints (
+    source VARCHAR(255) NOT NULL PRIMARY KEY,
+    file_size BIGINT NOT NULL,
+    line BIGINT NOT NULL,
+    imported BIGINT NOT NULL,
+    rejected BIGINT NOT NULL,
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
+);
@@ -0,0 +1,37 @@
+-- Finished stays moved out of reservations by ArchiveJob, so the live table only holds what the
+-- overlap checks and desks work on. Partitioned by checkout year: reports over a date range read
+-- only the years they cover, and ArchiveJob splits pmax to add next year's partition. The key
+-- must include the partitioning column; partitioned tables can't have foreign keys.
+CREATE TABLE IF NOT EXISTS reservations_history (
+    reservation_id INT NOT NULL,
+    guest_name VARCHAR(100) NOT NULL,
+    room_number INT NOT NULL,
+    contact_number VARCHAR(20) NOT NULL,
+    reservation_date DATETIME NOT NULL,
+    checkout_date DATETIME NOT NULL,
+    status ENUM('ACTIVE', 'CHECKED_OUT') NOT NULL DEFAULT 'CHECKED_OUT',
+    client_ref CHAR(36) NULL,
+    archived_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (reservation_id, checkout_date),
+    -- "Archived Reservations" paging and the search bar, as on the live table
+    KEY idx_history_date (reservation_date, reservation_id),
+    KEY idx_history_room_dates (room_number, reservation_date, checkout_date),
+    KEY idx_history_guest (guest_name),
+    KEY idx_history_contact (contact_number)
+)
+PARTITION BY RANGE COLUMNS (checkout_date) (
+    PARTITION pold VALUES LESS THAN ('2020-01-01'),
+    PARTITION p2020 VALUES LESS THAN ('2021-01-01'),
+    PARTITION p2021 VALUES LESS THAN ('2022-01-01'),
+    PARTITION p2022 VALUES LESS THAN ('2023-01-01'),
+    PARTITION p2023 VALUES LESS THAN ('2024-01-01'),
+    PARTITION p2024 VALUES LESS THAN ('2025-01-01'),
+    PARTITION p2025 VALUES LESS THAN ('2026-01-01'),
+    PARTITION p2026 VALUES LESS THAN ('2027-01-01'),
+    PARTITION p2027 VALUES LESS THAN ('2028-01-01'),
+    PARTITION pmax VALUES LESS THAN (MAXVALUE)
+);
+
+-- ArchiveJob picks its batches by status = 'CHECKED_OUT' AND checkout_date < cutoff
+ALTER TABLE reservations
+    ADD INDEX idx_reservations_status_checkout (status, checkout_date);
@@ -0,0 +1,5 @@
+-- The change feed (V8) replaced polling on last_modified; stop paying for the column and its
+-- index on every insert and update
+ALTER TABLE reservations
+    DROP INDEX idx_reservations_last_modified,
+    DROP COLUMN last_modified;
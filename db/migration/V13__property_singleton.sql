@@ -0,0 +1,6 @@
+-- The property table holds at most one row: every row has singleton = 1 and the column is
+-- unique, so a second claim (a race between two desks, or another property id) can't insert
+ALTER TABLE property
+    ADD COLUMN singleton TINYINT NOT NULL DEFAULT 1,
+    ADD CONSTRAINT chk_property_singleton CHECK (singleton = 1),
+    ADD UNIQUE KEY uq_property_singleton (singleton);
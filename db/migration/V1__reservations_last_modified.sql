@@ -0,0 +1,5 @@
+-- Stamp every insert/update so desks can poll for rows changed by other desks
+ALTER TABLE reservations
+    ADD COLUMN last_modified TIMESTAMP(3) NOT NULL
+        DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3),
+    ADD INDEX idx_reservations_last_modified (last_modified);
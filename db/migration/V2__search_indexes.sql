@@ -0,0 +1,11 @@
+-- Indexes behind the reservations search bar (see ReservationFilter)
+
+-- Room / status / stay-date searches and the overlap check; also serves the room_number foreign key
+ALTER TABLE reservations
+    ADD INDEX idx_reservations_room_status_dates (room_number, status, reservation_date, checkout_date),
+-- Contact number prefix search
+    ADD INDEX idx_reservations_contact (contact_number),
+-- Guest name prefix search (LIKE 'abc%')
+    ADD INDEX idx_reservations_guest (guest_name),
+-- "Current Reservations" paging: status = 'ACTIVE' ORDER BY reservation_date DESC, reservation_id DESC
+    ADD INDEX idx_reservations_status_date (status, reservation_date);
@@ -0,0 +1,4 @@
+-- Covering index for loading every ACTIVE booking into the availability index at startup
+-- (SELECT reservation_id, room_number, reservation_date, checkout_date ... WHERE status = 'ACTIVE')
+ALTER TABLE reservations
+    ADD INDEX idx_reservations_status_room_dates (status, room_number, reservation_date, checkout_date);
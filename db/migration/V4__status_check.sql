@@ -0,0 +1,8 @@
+-- Every reservation has a known status and a stay of positive length
+UPDATE reservations SET status = 'ACTIVE' WHERE status IS NULL;
+
+ALTER TABLE reservations
+    MODIFY status ENUM('ACTIVE', 'CHECKED_OUT') NOT NULL DEFAULT 'ACTIVE';
+
+ALTER TABLE reservations
+    ADD CONSTRAINT chk_reservations_stay CHECK (checkout_date > reservation_date);
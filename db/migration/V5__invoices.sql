@@ -0,0 +1,21 @@
+-- One immutable invoice per checked-out reservation; reprints and reports read it back.
+-- Amounts are paise, tax_rate_bp is basis points (1800 = 18%). No foreign key: the invoice
+-- outlives a deleted reservation.
+CREATE TABLE IF NOT EXISTS invoices (
+    invoice_id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    reservation_id INT NOT NULL,
+    guest_name VARCHAR(100) NOT NULL,
+    contact_number VARCHAR(20) NOT NULL,
+    room_number INT NOT NULL,
+    check_in DATETIME NOT NULL,
+    check_out DATETIME NOT NULL,
+    nights INT NOT NULL,
+    price_per_night_paise BIGINT NOT NULL,
+    subtotal_paise BIGINT NOT NULL,
+    tax_rate_bp INT NOT NULL,
+    gst_paise BIGINT NOT NULL,
+    total_paise BIGINT NOT NULL,
+    issued_at TIMESTAMP(3) NOT NULL,
+    UNIQUE KEY uq_invoices_reservation (reservation_id),
+    KEY idx_invoices_issued_at (issued_at)
+);
@@ -0,0 +1,4 @@
+-- Client-generated reference for bookings made offline, so a replayed journal entry is applied once
+ALTER TABLE reservations
+    ADD COLUMN client_ref CHAR(36) NULL,
+    ADD UNIQUE KEY uq_reservations_client_ref (client_ref);
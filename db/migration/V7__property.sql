@@ -0,0 +1,7 @@
+-- Which property (hotel) this schema holds. Each property has its own schema; PropertyRouter
+-- writes the one row on first use and refuses to route another property here.
+CREATE TABLE IF NOT EXISTS property (
+    property_id INT NOT NULL PRIMARY KEY,
+    name VARCHAR(100) NOT NULL,
+    claimed_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
@@ -0,0 +1,20 @@
+-- Change feed: one row per insert/update/delete of a reservation, written by triggers in the
+-- same transaction, so every writer (desks, API, imports) feeds it. Desks read it by seq to
+-- apply other desks' changes, deletions included. Creating triggers needs the TRIGGER privilege
+-- (and SUPER, or log_bin_trust_function_creators=1, when binary logging is on).
+CREATE TABLE IF NOT EXISTS reservation_changes (
+    seq BIGINT AUTO_INCREMENT PRIMARY KEY,
+    reservation_id INT NOT NULL,
+    op CHAR(1) NOT NULL,
+    changed_at TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+    KEY idx_reservation_changes_changed_at (changed_at)
+);
+
+CREATE TRIGGER trg_reservations_changes_ins AFTER INSERT ON reservations
+    FOR EACH ROW INSERT INTO reservation_changes (reservation_id, op) VALUES (NEW.reservation_id, 'U');
+
+CREATE TRIGGER trg_reservations_changes_upd AFTER UPDATE ON reservations
+    FOR EACH ROW INSERT INTO reservation_changes (reservation_id, op) VALUES (NEW.reservation_id, 'U');
+
+CREATE TRIGGER trg_reservations_changes_del AFTER DELETE ON reservations
+    FOR EACH ROW INSERT INTO reservation_changes (reservation_id, op) VALUES (OLD.reservation_id, 'D');
@@ -0,0 +1,10 @@
+-- Nightly rate per room type and date (revenue management). A row overrides rooms.price_per_night
+-- for every room of that type on that night; nights without one keep the room's own price.
+-- Amounts are paise. Loaded whole into RateCalendar, so the primary key is the only index needed.
+CREATE TABLE IF NOT EXISTS room_rates (
+    room_type VARCHAR(50) NOT NULL,
+    stay_date DATE NOT NULL,
+    price_paise BIGINT NOT NULL,
+    PRIMARY KEY (room_type, stay_date),
+    CONSTRAINT chk_room_rates_price CHECK (price_paise >= 0)
+);
@@ -0,0 +1,126 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * Moves finished stays out of the live {@code reservations} table into {@code reservations_history}
+ * (V11), so the table every overlap check, availability load and desk page reads stays small.
+ *
+ * A reservation is archived once it is CHECKED_OUT and its checkout is older than the configured
+ * age. Rows move {@value #BATCH} at a time, each batch in its own transaction (copy, then delete),
+ * so the job can be stopped and rerun at any point and never holds many locks. Invoices stay
+ * where they are; {@link ReservationService#bill} still reprints them for archived stays.
+ *
+ * Run it from cron / Task Scheduler with {@code java ArchiveJob [age in days]} (default
+ * {@code -Dhotel.archive.days}, else {@value #DEFAULT_AGE_DAYS}).
+ */
+public class ArchiveJob {
+
+    static final int DEFAULT_AGE_DAYS = 365;
+    private static final int BATCH = 1_000;
+
+    private static final String COLUMNS =
+            "reservation_id, guest_name, room_number, contact_number, reservation_date, checkout_date, status, client_ref";
+
+    private final ReservationService service;
+
+    public ArchiveJob(ReservationService service) {
+        this.service = service;
+    }
+
+    /** Archives CHECKED_OUT stays that ended more than {@code ageDays} days ago; returns how many moved. */
+    public long run(int ageDays) throws SQLException {
+        if (ageDays < 1) throw new IllegalArgumentException("Archive age must be at least one day.");
+        ensurePartitions();
+        Timestamp cutoff = Timestamp.valueOf(LocalDate.now().minusDays(ageDays).atStartOfDay());
+        long moved = 0;
+        int n;
+        do {
+            n = service.inTransaction(c -> moveBatch(c, cutoff));
+            moved += n;
+        } while (n == BATCH);
+        return moved;
+    }
+
+    private static int moveBatch(Connection c, Timestamp cutoff) throws SQLException {
+        int[] ids = new int[BATCH];
+        int n = 0;
+        try (PreparedStatement ps = c.prepareStatement(
+                "/* archiveBatch */ SELECT reservation_id FROM reservations WHERE status = 'CHECKED_OUT' AND checkout_date < ? " +
+                "ORDER BY checkout_date LIMIT " + BATCH + " FOR UPDATE")) {
+            ps.setTimestamp(1, cutoff);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) ids[n++] = rs.getInt(1);
+            }
+        }
+        if (n == 0) return 0;
+        ids = Arrays.copyOf(ids, n);
+        String in = String.join(",", java.util.Collections.nCopies(n, "?"));
+        try (PreparedStatement copy = c.prepareStatement(
+                "/* archiveCopy */ INSERT INTO reservations_history (" + COLUMNS + ") " +
+                "SELECT " + COLUMNS + " FROM reservations WHERE reservation_id IN (" + in + ")");
+             PreparedStatement delete = c.prepareStatement(
+                "/* archiveDelete */ DELETE FROM reservations WHERE reservation_id IN (" + in + ")")) {
+            for (int i = 0; i < n; i++) {
+                copy.setInt(i + 1, ids[i]);
+                delete.setInt(i + 1, ids[i]);
+            }
+            int copied = copy.executeUpdate();
+            int deleted = delete.executeUpdate();
+            if (copied != n || deleted != n) {
+                throw new SQLException("Archive batch moved " + copied + "/" + deleted + " of " + n + " rows; rolled back.");
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Makes sure reservations_history has a partition for every year up to next year, splitting
+     * them off the catch-all pmax partition. No-op when the table isn't partitioned.
+     */
+    void ensurePartitions() throws SQLException {
+        int lastYear = LocalDate.now().getYear() + 1;
+        service.withConnection(c -> {
+            int bound = 0; // partitions hold checkouts before Jan 1 of this year
+            try (Statement st = c.createStatement();
+                 ResultSet rs = st.executeQuery(
+                         "SELECT PARTITION_DESCRIPTION FROM information_schema.PARTITIONS " +
+                         "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'reservations_history' " +
+                         "AND PARTITION_NAME IS NOT NULL AND PARTITION_NAME <> 'pmax'")) {
+                while (rs.next()) {
+                    String d = rs.getString(1).replace("'", "").trim(); // '2028-01-01 00:00:00'
+                    bound = Math.max(bound, Integer.parseInt(d.substring(0, 4)));
+                }
+            }
+            if (bound == 0) return null;
+            try (Statement st = c.createStatement()) {
+                for (int year = bound; year <= lastYear; year++) {
+                    st.execute("ALTER TABLE reservations_history REORGANIZE PARTITION pmax INTO (" +
+                               "PARTITION p" + year + " VALUES LESS THAN ('" + (year + 1) + "-01-01'), " +
+                               "PARTITION pmax VALUES LESS THAN (MAXVALUE))");
+                }
+            }
+            return null;
+        });
+    }
+
+    /** {@code java ArchiveJob [age in days]} */
+    public static void main(String[] args) throws Exception {
+        int ageDays = args.length > 0 ? Integer.parseInt(args[0]) : Integer.getInteger("hotel.archive.days", DEFAULT_AGE_DAYS);
+        ConnectionPool pool = DbConfig.newPool(1);
+        try {
+            MigrationRunner.runAtStartup(pool);
+            long t0 = System.nanoTime();
+            long moved = new ArchiveJob(new ReservationService(pool)).run(ageDays);
+            System.out.printf("Archived %d reservation(s) checked out more than %d day(s) ago in %d ms%n",
+                    moved, ageDays, (System.nanoTime() - t0) / 1_000_000);
+        } finally {
+            pool.close();
+        }
+    }
+}
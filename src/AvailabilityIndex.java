@@ -0,0 +1,304 @@
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * In-memory view of ACTIVE reservations, one sorted interval set per room.
+ *
+ * Intervals are half-open [checkIn, checkOut) in epoch millis, matching the SQL overlap test
+ * {@code checkout_date > ? AND reservation_date < ?}. Each room keeps its bookings ordered by
+ * start plus the longest stay it has ever held, so an overlap query only has to look at starts in
+ * (from - longest, to) — correct even if legacy data already contains overlapping bookings.
+ *
+ * The index is a fast pre-check; the database stays authoritative when a booking is committed.
+ * All methods are synchronized: the index is read on the EDT and updated from db workers.
+ *
+ * A reload reads the table without holding the lock, so {@link #put}/{@link #remove} calls made
+ * while it runs are logged and replayed over the fresh rows, and offline placeholders (negative
+ * ids, never in the table) are carried over. A reload never forgets a booking made meanwhile.
+ */
+public class AvailabilityIndex {
+
+    static final class Booking {
+        final int id;
+        final int room;
+        final long start;
+        final long end;
+
+        Booking(int id, int room, long start, long end) {
+            this.id = id;
+            this.room = room;
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    private static final class RoomIntervals {
+        // start -> bookings starting at that instant (usually exactly one)
+        final TreeMap<Long, Booking[]> byStart = new TreeMap<>();
+        long longest;
+
+        void add(Booking b) {
+            Booking[] same = byStart.get(b.start);
+            if (same == null) {
+                byStart.put(b.start, new Booking[]{b});
+            } else {
+                Booking[] grown = java.util.Arrays.copyOf(same, same.length + 1);
+                grown[same.length] = b;
+                byStart.put(b.start, grown);
+            }
+            longest = Math.max(longest, b.end - b.start); // never shrinks; only widens the scan
+        }
+
+        void remove(Booking b) {
+            Booking[] same = byStart.get(b.start);
+            if (same == null) return;
+            if (same.length == 1) {
+                byStart.remove(b.start);
+                return;
+            }
+            Booking[] kept = new Booking[same.length - 1];
+            int k = 0;
+            for (Booking x : same) if (x.id != b.id && k < kept.length) kept[k++] = x;
+            byStart.put(b.start, kept);
+        }
+
+        Booking firstOverlap(long from, long to, int excludeId) {
+            NavigableMap<Long, Booking[]> candidates = byStart.subMap(from - longest, false, to, false);
+            for (Booking[] same : candidates.values()) {
+                for (Booking b : same) {
+                    if (b.end > from && b.id != excludeId) return b;
+                }
+            }
+            return null;
+        }
+    }
+
+    private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+    private final Map<Integer, RoomIntervals> rooms = new TreeMap<>();
+    private final Map<Integer, Booking> byId = new HashMap<>();
+    private boolean loaded;
+
+    /** A put (booking) or remove (null) made while a reload was reading the table. */
+    private static final class Change {
+        final long seq;
+        final Booking booking;
+
+        Change(long seq, Booking booking) {
+            this.seq = seq;
+            this.booking = booking;
+        }
+    }
+
+    private final Map<Integer, Change> changedDuringLoad = new HashMap<>();
+    private long changeSeq;
+    private int loadsRunning;
+
+    /**
+     * Replaces the index with the given rooms and the ACTIVE reservations currently in the DB,
+     * then replays changes made since the read began and keeps the offline placeholders.
+     */
+    public void load(Connection c, int[] roomNumbers) throws SQLException {
+        long since;
+        synchronized (this) {
+            loadsRunning++;
+            since = changeSeq;
+        }
+        try {
+            Map<Integer, RoomIntervals> freshRooms = new TreeMap<>();
+            Map<Integer, Booking> freshIds = new HashMap<>();
+            select(c, roomNumbers, freshRooms, freshIds);
+            synchronized (this) {
+                for (Booking b : byId.values()) {
+                    if (b.id < 0) add(freshRooms, freshIds, b);
+                }
+                for (Map.Entry<Integer, Change> e : changedDuringLoad.entrySet()) {
+                    if (e.getValue().seq <= since) continue; // made before the read began: already in it
+                    Booking old = freshIds.remove(e.getKey());
+                    if (old != null) freshRooms.get(old.room).remove(old);
+                    if (e.getValue().booking != null) add(freshRooms, freshIds, e.getValue().booking);
+                }
+                replace(freshRooms, freshIds);
+            }
+        } finally {
+            synchronized (this) {
+                if (--loadsRunning == 0) changedDuringLoad.clear();
+            }
+        }
+    }
+
+    private static void add(Map<Integer, RoomIntervals> toRooms, Map<Integer, Booking> toIds, Booking b) {
+        toRooms.computeIfAbsent(b.room, r -> new RoomIntervals()).add(b);
+        toIds.put(b.id, b);
+    }
+
+    private static void select(Connection c, int[] roomNumbers,
+                               Map<Integer, RoomIntervals> freshRooms, Map<Integer, Booking> freshIds) throws SQLException {
+        for (int room : roomNumbers) freshRooms.put(room, new RoomIntervals());
+        try (Statement st = c.createStatement()) {
+            try (ResultSet rs = st.executeQuery(
+                    "SELECT reservation_id, room_number, reservation_date, checkout_date " +
+                    "FROM reservations WHERE status = 'ACTIVE'")) {
+                while (rs.next()) {
+                    Timestamp in = rs.getTimestamp(3);
+                    Timestamp out = rs.getTimestamp(4);
+                    if (in == null || out == null) continue;
+                    add(freshRooms, freshIds, new Booking(rs.getInt(1), rs.getInt(2), in.getTime(), out.getTime()));
+                }
+            }
+        }
+    }
+
+    private synchronized void replace(Map<Integer, RoomIntervals> freshRooms, Map<Integer, Booking> freshIds) {
+        rooms.clear();
+        rooms.putAll(freshRooms);
+        byId.clear();
+        byId.putAll(freshIds);
+        loaded = true;
+    }
+
+    // ---------------- Snapshot file (see CacheSnapshot) ----------------
+
+    /** Writes the rooms and the bookings that came from the database; offline placeholders (negative ids) are left out. */
+    synchronized void write(DataOutputStream out) throws IOException {
+        if (!loaded) throw new IllegalStateException("Availability index is not loaded.");
+        out.writeInt(rooms.size());
+        for (int room : rooms.keySet()) out.writeInt(room);
+        int n = 0;
+        for (int id : byId.keySet()) if (id > 0) n++;
+        out.writeInt(n);
+        for (Booking b : byId.values()) {
+            if (b.id <= 0) continue;
+            out.writeInt(b.id);
+            out.writeInt(b.room);
+            out.writeLong(b.start);
+            out.writeLong(b.end);
+        }
+    }
+
+    /** Replaces the whole index with one written by {@link #write}. */
+    void read(ByteBuffer in) {
+        Map<Integer, RoomIntervals> freshRooms = new TreeMap<>();
+        Map<Integer, Booking> freshIds = new HashMap<>();
+        for (int i = in.getInt(); i > 0; i--) freshRooms.put(in.getInt(), new RoomIntervals());
+        for (int i = in.getInt(); i > 0; i--) {
+            add(freshRooms, freshIds, new Booking(in.getInt(), in.getInt(), in.getLong(), in.getLong()));
+        }
+        replace(freshRooms, freshIds);
+    }
+
+    public synchronized boolean isLoaded() {
+        return loaded;
+    }
+
+    /** Adds or moves an ACTIVE reservation (used after insert and update). */
+    public synchronized void put(int id, int room, long start, long end) {
+        forget(id);
+        Booking b = new Booking(id, room, start, end);
+        add(rooms, byId, b);
+        logChange(id, b);
+    }
+
+    /** Moves a reservation that is already indexed; ids not in the index (e.g. CHECKED_OUT) are ignored. */
+    public synchronized void update(int id, int room, long start, long end) {
+        if (byId.containsKey(id)) put(id, room, start, end);
+    }
+
+    /** Forgets a reservation (used after delete and checkout). */
+    public synchronized void remove(int id) {
+        forget(id);
+        logChange(id, null);
+    }
+
+    private void forget(int id) {
+        Booking old = byId.remove(id);
+        if (old == null) return;
+        RoomIntervals ri = rooms.get(old.room);
+        if (ri != null) ri.remove(old);
+    }
+
+    private void logChange(int id, Booking b) {
+        changeSeq++;
+        if (loadsRunning > 0) changedDuringLoad.put(id, new Change(changeSeq, b));
+    }
+
+    /** Id of an ACTIVE reservation on {@code room} overlapping [from, to), ignoring {@code excludeId}; -1 if none. */
+    public synchronized int findOverlap(int room, long from, long to, int excludeId) {
+        RoomIntervals ri = rooms.get(room);
+        if (ri == null) return -1;
+        Booking b = ri.firstOverlap(from, to, excludeId);
+        return (b == null) ? -1 : b.id;
+    }
+
+    /**
+     * How many of {@code roomNumbers} are free on each of {@code days} nights from {@code fromDay}
+     * (an epoch day, see {@link Dates#epochDay}). A booking takes the nights from its check-in day
+     * up to its checkout day, at least one. Each room marks its taken nights in a bitset first,
+     * so overlapping legacy bookings on one room are not counted twice.
+     */
+    public synchronized int[] freeByNight(int[] roomNumbers, long fromDay, int days) {
+        int[] free = new int[days];
+        java.util.Arrays.fill(free, roomNumbers.length);
+        java.util.BitSet taken = new java.util.BitSet(days);
+        // Starts a day either side of the window cover any zone offset between millis and days
+        long from = (fromDay - 1) * MILLIS_PER_DAY;
+        long to = (fromDay + days + 1) * MILLIS_PER_DAY;
+        for (int room : roomNumbers) {
+            RoomIntervals ri = rooms.get(room);
+            if (ri == null) continue;
+            taken.clear();
+            for (Booking[] same : ri.byStart.subMap(from - ri.longest, true, to, false).values()) {
+                for (Booking b : same) {
+                    long in = Dates.epochDay(b.start);
+                    long out = Math.max(Dates.epochDay(b.end), in + 1);
+                    int a = (int) Math.max(0, in - fromDay);
+                    int z = (int) Math.min(days, out - fromDay);
+                    if (a < z) taken.set(a, z);
+                }
+            }
+            for (int i = taken.nextSetBit(0); i >= 0; i = taken.nextSetBit(i + 1)) free[i]--;
+        }
+        return free;
+    }
+
+    /**
+     * The free gap on {@code room} around [from, to): {end of the nearest booking before it, start
+     * of the nearest booking after it}, with Long.MIN_VALUE / Long.MAX_VALUE where there is none;
+     * null if a booking overlaps [from, to). Used by {@link RoomAssigner} to pick the best fit.
+     */
+    public synchronized long[] gapAround(int room, long from, long to) {
+        RoomIntervals ri = rooms.get(room);
+        if (ri == null) return new long[]{Long.MIN_VALUE, Long.MAX_VALUE};
+        if (ri.firstOverlap(from, to, -1) != null) return null;
+        long before = Long.MIN_VALUE;
+        Map.Entry<Long, Booking[]> prev = ri.byStart.lowerEntry(from);
+        if (prev != null) for (Booking b : prev.getValue()) before = Math.max(before, b.end);
+        Long next = ri.byStart.ceilingKey(to);
+        return new long[]{before, next == null ? Long.MAX_VALUE : next};
+    }
+
+    /** A copy of every indexed booking, in no particular order. */
+    public synchronized java.util.List<Booking> bookings() {
+        return new java.util.ArrayList<>(byId.values());
+    }
+
+    /** Room numbers, ascending, with no ACTIVE reservation overlapping [from, to). */
+    public synchronized int[] freeRooms(long from, long to) {
+        int[] out = new int[rooms.size()];
+        int n = 0;
+        for (Map.Entry<Integer, RoomIntervals> e : rooms.entrySet()) {
+            if (e.getValue().firstOverlap(from, to, -1) == null) out[n++] = e.getKey();
+        }
+        return java.util.Arrays.copyOf(out, n);
+    }
+}
@@ -0,0 +1,92 @@
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+
+/**
+ * Checkout bill for one reservation, in paise. Before checkout it is a quote
+ * ({@code invoiceNo == 0}); at checkout it is stored in the invoices table and never recomputed.
+ */
+public final class Bill {
+
+    final long invoiceNo;       // 0 for a quote
+    final Timestamp issuedAt;   // null for a quote
+    final int reservationId;
+    final String guest;
+    final String contact;
+    final int room;
+    final Timestamp checkIn;
+    final Timestamp checkOut;
+    final long nights;
+    final long pricePerNightPaise;  // the average when nightly rates vary
+    final long subtotalPaise;
+    final int taxRateBp;
+    final long gstPaise;
+    final long totalPaise;
+
+    /** A quote for {@code r} at the given total of its nightly rates and tax rate. */
+    Bill(Reservation r, long nights, long subtotalPaise, int taxRateBp) {
+        this(0, null, r.id, r.guest, r.contact, r.room, r.checkIn, r.checkOut, nights, (subtotalPaise + nights / 2) / nights,
+                subtotalPaise, taxRateBp, TaxSlabs.tax(subtotalPaise, taxRateBp));
+    }
+
+    /** A stored invoice row. */
+    Bill(ResultSet rs) throws SQLException {
+        this(rs.getLong("invoice_id"), rs.getTimestamp("issued_at"), rs.getInt("reservation_id"),
+                rs.getString("guest_name"), rs.getString("contact_number"), rs.getInt("room_number"),
+                rs.getTimestamp("check_in"), rs.getTimestamp("check_out"), rs.getLong("nights"),
+                rs.getLong("price_per_night_paise"), rs.getLong("subtotal_paise"), rs.getInt("tax_rate_bp"),
+                rs.getLong("gst_paise"));
+    }
+
+    private Bill(long invoiceNo, Timestamp issuedAt, int reservationId, String guest, String contact, int room,
+                 Timestamp checkIn, Timestamp checkOut, long nights, long pricePerNightPaise,
+                 long subtotalPaise, int taxRateBp, long gstPaise) {
+        this.invoiceNo = invoiceNo;
+        this.issuedAt = issuedAt;
+        this.reservationId = reservationId;
+        this.guest = guest;
+        this.contact = contact;
+        this.room = room;
+        this.checkIn = checkIn;
+        this.checkOut = checkOut;
+        this.nights = nights;
+        this.pricePerNightPaise = pricePerNightPaise;
+        this.subtotalPaise = subtotalPaise;
+        this.taxRateBp = taxRateBp;
+        this.gstPaise = gstPaise;
+        this.totalPaise = subtotalPaise + gstPaise;
+    }
+
+    /** This quote as issued under {@code invoiceNo}. */
+    Bill issued(long invoiceNo, Timestamp issuedAt) {
+        return new Bill(invoiceNo, issuedAt, reservationId, guest, contact, room, checkIn, checkOut, nights,
+                pricePerNightPaise, subtotalPaise, taxRateBp, gstPaise);
+    }
+
+    boolean isIssued() {
+        return invoiceNo != 0;
+    }
+
+    /** Paise as rupees with two decimals, e.g. 590000 -> "5900.00". */
+    static String rupees(long paise) {
+        return java.math.BigDecimal.valueOf(paise, 2).toPlainString();
+    }
+
+    /** The printable summary shown at checkout. */
+    String toText() {
+        return (isIssued() ? "Invoice #" + invoiceNo + " (" + Dates.format(issuedAt) + ")\n" : "Checkout Summary\n") +
+               "----------------\n" +
+               "Reservation ID : " + reservationId + "\n" +
+               "Guest          : " + guest + "\n" +
+               "Contact        : " + contact + "\n" +
+               "Room           : " + room + "\n" +
+               "Check-in       : " + Dates.format(checkIn) + "\n" +
+               "Checkout       : " + Dates.format(checkOut) + "\n" +
+               "Nights         : " + nights + "\n" +
+               (subtotalPaise == pricePerNightPaise * nights ? "Price/Night    " : "Avg Price/Night") +
+               " : ₹" + rupees(pricePerNightPaise) + "\n" +
+               "Subtotal       : ₹" + rupees(subtotalPaise) + "\n" +
+               String.format("%-15s", "GST (" + TaxSlabs.percent(taxRateBp) + ")") + ": ₹" + rupees(gstPaise) + "\n" +
+               "Grand Total    : ₹" + rupees(totalPaise);
+    }
+}
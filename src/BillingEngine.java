@@ -0,0 +1,93 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Prices stays and keeps the invoices issued at checkout.
+ *
+ * All arithmetic is in paise ({@code long}). A stay is priced night by night from the
+ * {@link RateCalendar}; GST comes from {@link TaxSlabs} at the slab of the dearest night (an
+ * invoice carries one rate) and is rounded half up once per invoice. An issued invoice is an
+ * immutable row in {@code invoices}: reprints read it back (through a small in-memory cache)
+ * instead of pricing the stay again.
+ */
+public class BillingEngine {
+
+    private static final int CACHE_SIZE = 1_024;
+
+    private static final String INSERT =
+            "INSERT INTO invoices (reservation_id, guest_name, contact_number, room_number, check_in, check_out, " +
+            "nights, price_per_night_paise, subtotal_paise, tax_rate_bp, gst_paise, total_paise, issued_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final TaxSlabs slabs;
+
+    // reservation id -> issued invoice; invoices never change, so entries never go stale
+    private final Map<Integer, Bill> cache = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override protected boolean removeEldestEntry(Map.Entry<Integer, Bill> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    public BillingEngine(TaxSlabs slabs) {
+        this.slabs = slabs;
+    }
+
+    /** What {@code r} costs at the nightly rates of {@code stay}, not yet issued. */
+    public Bill quote(Reservation r, RateCalendar.Stay stay) {
+        return new Bill(r, stay.nights, stay.totalPaise, slabs.rateBp(stay.maxPaise));
+    }
+
+    /** Stores {@code quote} as an invoice; call inside the checkout transaction, then {@link #remember}. */
+    public Bill issue(Connection c, Bill quote) throws SQLException {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        try (PreparedStatement ps = c.prepareStatement(INSERT, Statement.RETURN_GENERATED_KEYS)) {
+            int i = 1;
+            ps.setInt(i++, quote.reservationId);
+            ps.setString(i++, quote.guest);
+            ps.setString(i++, quote.contact);
+            ps.setInt(i++, quote.room);
+            ps.setTimestamp(i++, quote.checkIn);
+            ps.setTimestamp(i++, quote.checkOut);
+            ps.setLong(i++, quote.nights);
+            ps.setLong(i++, quote.pricePerNightPaise);
+            ps.setLong(i++, quote.subtotalPaise);
+            ps.setInt(i++, quote.taxRateBp);
+            ps.setLong(i++, quote.gstPaise);
+            ps.setLong(i++, quote.totalPaise);
+            ps.setTimestamp(i, now);
+            ps.executeUpdate();
+            try (ResultSet keys = ps.getGeneratedKeys()) {
+                if (!keys.next()) throw new SQLException("Failed to save invoice.");
+                return quote.issued(keys.getLong(1), now);
+            }
+        }
+    }
+
+    /** Caches an invoice once its transaction has committed. */
+    public synchronized void remember(Bill invoice) {
+        cache.put(invoice.reservationId, invoice);
+    }
+
+    /** The invoice issued for a reservation, or null if it was never checked out with one. */
+    public Bill find(Connection c, int reservationId) throws SQLException {
+        synchronized (this) {
+            Bill b = cache.get(reservationId);
+            if (b != null) return b;
+        }
+        try (PreparedStatement ps = c.prepareStatement("SELECT * FROM invoices WHERE reservation_id = ?")) {
+            ps.setInt(1, reservationId);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) return null;
+                Bill b = new Bill(rs);
+                remember(b);
+                return b;
+            }
+        }
+    }
+}
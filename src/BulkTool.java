@@ -0,0 +1,660 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Command-line bulk loader and exporter for the rooms and reservations tables, e.g. to bring in
+ * the history of another PMS.
+ *
+ * <pre>
+ * java BulkTool import-rooms rooms.csv              room_number,room_type,price_per_night (insert or update)
+ * java BulkTool import-reservations history.csv     [reservation_id,]guest_name,contact_number,room_number,check_in,checkout[,status]
+ * java BulkTool export-rooms rooms.csv
+ * java BulkTool export-reservations history.csv
+ * </pre>
+ *
+ * Import reads the file in chunks of {@value #CHUNK_LINES} lines and parses them on a pool of
+ * threads ({@code -Dbulk.threads}, default one per CPU). Then, in file order, ACTIVE stays are
+ * checked against an {@link AvailabilityIndex} of what is already booked plus what this file
+ * added so far, and each chunk is written as multi-row INSERTs in one transaction together with
+ * its checkpoint row (V10). That transaction locks the chunk's rooms and checks ids and overlaps
+ * again against the table, so desks can keep booking while an import runs. Running the same
+ * command again after a failure continues after the last committed chunk. Rows that fail a check
+ * go to {@code <file>.rejects} with their line number and reason and do not stop the import.
+ *
+ * Export streams rows through a server-side cursor, so memory stays flat however big the table
+ * is; an exported file can be imported as is.
+ */
+public class BulkTool {
+
+    private static final int CHUNK_LINES = 5_000;
+    private static final int ROWS_PER_INSERT = 500;
+    private static final int PROGRESS_EVERY_CHUNKS = 20;
+    private static final int MAX_GUEST = 100;      // column sizes in V0
+    private static final int MAX_CONTACT = 20;
+    private static final int MAX_SOURCE = 255;
+
+    private static final String RESERVATIONS_HEADER = "reservation_id,guest_name,contact_number,room_number,check_in,checkout,status";
+    private static final String ROOMS_HEADER = "room_number,room_type,price_per_night";
+
+    /** One parsed reservation line. */
+    private static final class Row {
+        final long line;
+        final String text;       // as read, for the rejects file
+        final int id;            // 0: AUTO_INCREMENT picks one
+        final String guest;
+        final String contact;
+        final int room;
+        final Timestamp checkIn;
+        final Timestamp checkOut;
+        final String status;
+
+        Row(long line, String text, int id, String guest, String contact, int room, Timestamp checkIn,
+            Timestamp checkOut, String status) {
+            this.line = line;
+            this.text = text;
+            this.id = id;
+            this.guest = guest;
+            this.contact = contact;
+            this.room = room;
+            this.checkIn = checkIn;
+            this.checkOut = checkOut;
+            this.status = status;
+        }
+
+        boolean isActive() {
+            return "ACTIVE".equals(status);
+        }
+    }
+
+    /** A run of lines and what parsing made of them. */
+    private static final class Chunk {
+        final long firstLine;
+        final List<String> lines;
+        final List<Row> rows = new ArrayList<>();
+        final List<String> rejects = new ArrayList<>();
+
+        Chunk(long firstLine, List<String> lines) {
+            this.firstLine = firstLine;
+            this.lines = lines;
+        }
+
+        long lastLine() {
+            return firstLine + lines.size() - 1;
+        }
+    }
+
+    /** Where each field is, from the header line or the default order. */
+    private static final class Columns {
+        int id = -1;
+        int guest = 0;
+        int contact = 1;
+        int room = 2;
+        int checkIn = 3;
+        int checkOut = 4;
+        int status = 5;
+
+        /** Positions named by {@code header}, or null if the line is data rather than a header. */
+        static Columns of(String header) {
+            String[] names = GroupBooking.splitCsv(header.trim().toLowerCase(Locale.ROOT));
+            if (!List.of(RESERVATIONS_HEADER.split(",")).contains(names[0].trim()) &&
+                !names[0].trim().equals("reservation_date")) return null;
+            Columns c = new Columns();
+            c.id = c.guest = c.contact = c.room = c.checkIn = c.checkOut = c.status = -1;
+            for (int i = 0; i < names.length; i++) {
+                switch (names[i].trim()) {
+                    case "reservation_id": c.id = i; break;
+                    case "guest_name": c.guest = i; break;
+                    case "contact_number": c.contact = i; break;
+                    case "room_number": c.room = i; break;
+                    case "check_in": case "reservation_date": c.checkIn = i; break;
+                    case "checkout": case "checkout_date": c.checkOut = i; break;
+                    case "status": c.status = i; break;
+                    default: throw new IllegalArgumentException("Unknown column '" + names[i].trim() + "' in header.");
+                }
+            }
+            if (c.guest < 0 || c.contact < 0 || c.room < 0 || c.checkIn < 0 || c.checkOut < 0) {
+                throw new IllegalArgumentException("Header must name guest_name, contact_number, room_number, check_in and checkout.");
+            }
+            return c;
+        }
+    }
+
+    private final ReservationService service;
+    private final int threads;
+
+    public BulkTool(ReservationService service, int threads) {
+        this.service = service;
+        this.threads = threads;
+    }
+
+    // ---------------- Reservations ----------------
+
+    /** Imports (or continues importing) a reservations file; returns a one-line summary. */
+    public String importReservations(Path file) throws SQLException, IOException {
+        service.loadCaches();
+        String source = source(file);
+        long size = Files.size(file);
+        if (size == 0) return "Empty file, nothing imported.";
+        long[] done = readCheckpoint(source, size); // line, imported, rejected
+        if (done[0] > 0) System.out.println("Continuing " + file + " after line " + done[0]);
+
+        Path rejectsFile = Paths.get(file + ".rejects");
+        ExecutorService parsers = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "bulk-parse");
+            t.setDaemon(true);
+            return t;
+        });
+        long t0 = System.nanoTime();
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+             Writer rejects = Files.newBufferedWriter(rejectsFile, StandardCharsets.UTF_8,
+                     StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            String first = in.readLine();
+            Columns header = Columns.of(first);
+            Columns cols = header == null ? new Columns() : header;
+            long lineNo = 1;
+            List<String> lines = new ArrayList<>(CHUNK_LINES);
+            if (header == null && lineNo > done[0]) lines.add(first);
+
+            // Parsing runs ahead on the pool; chunks are applied strictly in file order
+            Deque<Future<Chunk>> inFlight = new ArrayDeque<>();
+            int applied = 0;
+            for (String line; ; ) {
+                line = in.readLine();
+                if (line != null && ++lineNo <= done[0]) continue; // committed by an earlier run
+                if (line != null) lines.add(line);
+                if (lines.size() == CHUNK_LINES || (line == null && !lines.isEmpty())) {
+                    Chunk chunk = new Chunk(lineNo - lines.size() + 1, lines);
+                    inFlight.add(parsers.submit(() -> parse(chunk, cols)));
+                    lines = new ArrayList<>(CHUNK_LINES);
+                }
+                while (!inFlight.isEmpty() && (inFlight.size() > threads * 2 || line == null)) {
+                    apply(join(inFlight.poll()), source, size, done, rejects);
+                    if (++applied % PROGRESS_EVERY_CHUNKS == 0) progress(done, t0);
+                }
+                if (line == null) break;
+            }
+        } finally {
+            parsers.shutdownNow();
+        }
+        if (Files.size(rejectsFile) == 0) Files.delete(rejectsFile);
+        return String.format("%d reservation(s) imported, %d rejected%s, in %d ms", done[1], done[2],
+                done[2] > 0 ? " (see " + rejectsFile + ")" : "", (System.nanoTime() - t0) / 1_000_000);
+    }
+
+    /** Field checks that need nothing but the row itself and the room catalog; runs on the pool. */
+    private Chunk parse(Chunk chunk, Columns cols) {
+        RoomCatalog catalog = service.catalog();
+        for (int i = 0; i < chunk.lines.size(); i++) {
+            String text = chunk.lines.get(i);
+            long line = chunk.firstLine + i;
+            if (text.isBlank()) continue;
+            try {
+                String[] f = GroupBooking.splitCsv(text);
+                int id = cols.id >= 0 && !field(f, cols.id).isEmpty() ? number(field(f, cols.id), "reservation id") : 0;
+                String guest = field(f, cols.guest);
+                String contact = field(f, cols.contact);
+                int room = number(field(f, cols.room), "room number");
+                Timestamp checkIn = date(field(f, cols.checkIn));
+                Timestamp checkOut = date(field(f, cols.checkOut));
+                String status = cols.status >= 0 && !field(f, cols.status).isEmpty()
+                        ? field(f, cols.status).toUpperCase(Locale.ROOT) : "ACTIVE";
+                if (guest.isEmpty() || contact.isEmpty()) throw new IllegalArgumentException("guest name and contact are required");
+                if (guest.length() > MAX_GUEST) throw new IllegalArgumentException("guest name longer than " + MAX_GUEST);
+                if (contact.length() > MAX_CONTACT) throw new IllegalArgumentException("contact longer than " + MAX_CONTACT);
+                if (!checkOut.after(checkIn)) throw new IllegalArgumentException("checkout must be after check-in");
+                if (!status.equals("ACTIVE") && !status.equals("CHECKED_OUT")) {
+                    throw new IllegalArgumentException("status must be ACTIVE or CHECKED_OUT");
+                }
+                if (!catalog.contains(room)) throw new IllegalArgumentException("no such room " + room);
+                chunk.rows.add(new Row(line, text, id, guest, contact, room, checkIn, checkOut, status));
+            } catch (IllegalArgumentException e) {
+                chunk.rejects.add(reject(line, e.getMessage(), text));
+            }
+        }
+        return chunk;
+    }
+
+    /**
+     * Overlap checks in file order against the index, then one transaction that re-checks the rows
+     * against the table (see {@link #recheck}), inserts those that pass and saves the checkpoint.
+     */
+    private void apply(Chunk chunk, String source, long size, long[] done, Writer rejects) throws SQLException, IOException {
+        AvailabilityIndex index = service.availability();
+        List<Row> candidates = new ArrayList<>(chunk.rows.size());
+        List<String> rejected = new ArrayList<>(chunk.rejects);
+        for (Row r : chunk.rows) {
+            if (r.isActive()) {
+                // Rows of this file go in under -(line + 1), so -1 still means "no overlap"
+                int clash = index.findOverlap(r.room, r.checkIn.getTime(), r.checkOut.getTime(), -1);
+                if (clash != -1) {
+                    rejected.add(reject(r.line, clash < 0 ? "overlaps line " + (-clash - 1) + " of this file"
+                                                          : "overlaps reservation " + clash, r.text));
+                    continue;
+                }
+                index.put((int) -(r.line + 1), r.room, r.checkIn.getTime(), r.checkOut.getTime());
+            }
+            candidates.add(r);
+        }
+        List<Row> ok = new ArrayList<>(candidates.size());
+        long[] totals = new long[2]; // imported, rejected
+        try {
+            service.inTransaction(c -> {
+                recheck(c, candidates, ok, rejected);
+                totals[0] = done[1] + ok.size();
+                totals[1] = done[2] + rejected.size();
+                insert(c, ok);
+                saveCheckpoint(c, source, size, chunk.lastLine(), totals[0], totals[1]);
+                return null;
+            });
+        } catch (SQLException e) {
+            throw new SQLException("Lines " + chunk.firstLine + "-" + chunk.lastLine() + " not imported: " + e.getMessage(),
+                    e.getSQLState(), e.getErrorCode(), e);
+        }
+        if (ok.size() < candidates.size()) {
+            // Rejected by the table after all: later lines may use their rooms
+            Set<Row> kept = new HashSet<>(ok);
+            for (Row r : candidates) if (!kept.contains(r)) index.remove((int) -(r.line + 1));
+        }
+        done[0] = chunk.lastLine();
+        done[1] = totals[0];
+        done[2] = totals[1];
+        for (String r : rejected) rejects.write(r);
+        rejects.flush();
+    }
+
+    /**
+     * Checks {@code rows} against the table inside the chunk's transaction; those that pass go to
+     * {@code ok}, the others to {@code rejected}. The rooms of ACTIVE rows are locked in ascending
+     * order first (as {@link GroupBooking#commit} does), so a desk can't book one of them between
+     * this check and the insert, and a booking made since the index was loaded is caught here. A
+     * reservation_id already in use, live or archived, is a per-row reject too.
+     */
+    private static void recheck(Connection c, List<Row> rows, List<Row> ok, List<String> rejected) throws SQLException {
+        Set<Integer> usedIds = existingIds(c, rows);
+        TreeSet<Integer> rooms = new TreeSet<>();
+        long from = Long.MAX_VALUE, to = Long.MIN_VALUE;
+        for (Row r : rows) {
+            if (!r.isActive()) continue;
+            rooms.add(r.room);
+            from = Math.min(from, r.checkIn.getTime());
+            to = Math.max(to, r.checkOut.getTime());
+        }
+        Set<Integer> locked = new HashSet<>();
+        Map<Integer, List<long[]>> booked = new HashMap<>(); // room -> {reservation id, check-in, checkout}
+        if (!rooms.isEmpty()) {
+            String inList = String.join(",", Collections.nCopies(rooms.size(), "?"));
+            try (PreparedStatement ps = c.prepareStatement(
+                    "/* bulkLockRooms */ SELECT room_number FROM rooms WHERE room_number IN (" + inList + ") " +
+                    "ORDER BY room_number FOR UPDATE")) {
+                int i = 1;
+                for (int room : rooms) ps.setInt(i++, room);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) locked.add(rs.getInt(1));
+                }
+            }
+            try (PreparedStatement ps = c.prepareStatement(
+                    "/* bulkOverlapCheck */ SELECT reservation_id, room_number, reservation_date, checkout_date FROM reservations " +
+                    "WHERE status = 'ACTIVE' AND room_number IN (" + inList + ") AND checkout_date > ? AND reservation_date < ?")) {
+                int i = 1;
+                for (int room : rooms) ps.setInt(i++, room);
+                ps.setTimestamp(i++, new Timestamp(from));
+                ps.setTimestamp(i, new Timestamp(to));
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        booked.computeIfAbsent(rs.getInt(2), k -> new ArrayList<>())
+                              .add(new long[]{rs.getInt(1), rs.getTimestamp(3).getTime(), rs.getTimestamp(4).getTime()});
+                    }
+                }
+            }
+        }
+        for (Row r : rows) {
+            if (r.id > 0 && !usedIds.add(r.id)) {
+                rejected.add(reject(r.line, "reservation " + r.id + " already exists", r.text));
+                continue;
+            }
+            if (r.isActive()) {
+                if (!locked.contains(r.room)) {
+                    rejected.add(reject(r.line, "no such room " + r.room, r.text));
+                    continue;
+                }
+                long[] clash = null;
+                for (long[] b : booked.getOrDefault(r.room, List.of())) {
+                    if (b[2] > r.checkIn.getTime() && b[1] < r.checkOut.getTime()) {
+                        clash = b;
+                        break;
+                    }
+                }
+                if (clash != null) {
+                    rejected.add(reject(r.line, "overlaps reservation " + clash[0], r.text));
+                    continue;
+                }
+            }
+            ok.add(r);
+        }
+    }
+
+    /** Those of the rows' explicit ids that are taken in reservations or reservations_history. */
+    private static Set<Integer> existingIds(Connection c, List<Row> rows) throws SQLException {
+        List<Integer> ids = new ArrayList<>();
+        for (Row r : rows) if (r.id > 0) ids.add(r.id);
+        Set<Integer> taken = new HashSet<>();
+        if (ids.isEmpty()) return taken;
+        String inList = String.join(",", Collections.nCopies(ids.size(), "?"));
+        try (PreparedStatement ps = c.prepareStatement(
+                "/* bulkIdCheck */ SELECT reservation_id FROM reservations WHERE reservation_id IN (" + inList + ") " +
+                "UNION ALL SELECT reservation_id FROM reservations_history WHERE reservation_id IN (" + inList + ")")) {
+            int i = 1;
+            for (int pass = 0; pass < 2; pass++) {
+                for (int id : ids) ps.setInt(i++, id);
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) taken.add(rs.getInt(1));
+            }
+        }
+        return taken;
+    }
+
+    private static void insert(Connection c, List<Row> rows) throws SQLException {
+        PreparedStatement full = null;
+        try {
+            for (int from = 0; from < rows.size(); from += ROWS_PER_INSERT) {
+                int n = Math.min(ROWS_PER_INSERT, rows.size() - from);
+                if (n == ROWS_PER_INSERT && full == null) full = c.prepareStatement(insertSql(n));
+                PreparedStatement ps = (n == ROWS_PER_INSERT) ? full : c.prepareStatement(insertSql(n));
+                try {
+                    int p = 1;
+                    for (Row r : rows.subList(from, from + n)) {
+                        if (r.id > 0) ps.setInt(p++, r.id); else ps.setNull(p++, Types.INTEGER);
+                        ps.setString(p++, r.guest);
+                        ps.setString(p++, r.contact);
+                        ps.setInt(p++, r.room);
+                        ps.setTimestamp(p++, r.checkIn);
+                        ps.setTimestamp(p++, r.checkOut);
+                        ps.setString(p++, r.status);
+                    }
+                    ps.executeUpdate();
+                } finally {
+                    if (ps != full) ps.close();
+                }
+            }
+        } finally {
+            if (full != null) full.close();
+        }
+    }
+
+    private static String insertSql(int rows) {
+        StringBuilder sb = new StringBuilder("/* bulkInsert */ INSERT INTO reservations (reservation_id, guest_name, " +
+                "contact_number, room_number, reservation_date, checkout_date, status) VALUES ");
+        for (int i = 0; i < rows; i++) sb.append(i == 0 ? "" : ",").append("(?, ?, ?, ?, ?, ?, ?)");
+        return sb.toString();
+    }
+
+    /** Streams every reservation to {@code file}, oldest id first; returns how many. */
+    public long exportReservations(Path file) throws SQLException, IOException {
+        try (Writer w = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            w.write(RESERVATIONS_HEADER + "\n");
+            return service.withConnection(c -> {
+                try (PreparedStatement ps = c.prepareStatement(
+                        "/* bulkExport */ SELECT reservation_id, guest_name, contact_number, room_number, reservation_date, " +
+                        "checkout_date, status FROM reservations ORDER BY reservation_id",
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                    // MySQL streams rows one by one only with this exact fetch size
+                    ps.setFetchSize(Integer.MIN_VALUE);
+                    long n = 0;
+                    StringBuilder line = new StringBuilder(128);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            line.setLength(0);
+                            line.append(rs.getInt(1)).append(',')
+                                .append(ReportEngine.csv(rs.getString(2))).append(',')
+                                .append(ReportEngine.csv(rs.getString(3))).append(',')
+                                .append(rs.getInt(4)).append(',')
+                                .append(Dates.format(rs.getTimestamp(5))).append(',')
+                                .append(Dates.format(rs.getTimestamp(6))).append(',')
+                                .append(rs.getString(7)).append('\n');
+                            write(w, line);
+                            n++;
+                        }
+                    }
+                    return n;
+                }
+            });
+        }
+    }
+
+    // ---------------- Rooms ----------------
+
+    /** Inserts new rooms and updates existing ones, all in one transaction; returns how many. */
+    public int importRooms(Path file) throws SQLException, IOException {
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        List<Object[]> rooms = new ArrayList<>();
+        for (int i = 0; i < lines.size(); i++) {
+            String text = lines.get(i);
+            if (text.isBlank() || (i == 0 && text.trim().toLowerCase(Locale.ROOT).startsWith("room"))) continue;
+            String[] f = GroupBooking.splitCsv(text);
+            String at = "Line " + (i + 1) + ": ";
+            try {
+                int room = number(field(f, 0), "room number");
+                String type = field(f, 1);
+                if (type.isEmpty()) throw new IllegalArgumentException("room type is required");
+                BigDecimal price = new BigDecimal(field(f, 2));
+                if (price.signum() < 0 || price.scale() > 2) throw new NumberFormatException();
+                rooms.add(new Object[]{room, type, price});
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(at + "invalid price '" + field(f, 2) + "'");
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException(at + e.getMessage());
+            }
+        }
+        return service.inTransaction(c -> {
+            try (PreparedStatement ps = c.prepareStatement(
+                    "INSERT INTO rooms (room_number, room_type, price_per_night) VALUES (?, ?, ?) " +
+                    "ON DUPLICATE KEY UPDATE room_type = VALUES(room_type), price_per_night = VALUES(price_per_night)")) {
+                for (Object[] r : rooms) {
+                    ps.setInt(1, (Integer) r[0]);
+                    ps.setString(2, (String) r[1]);
+                    ps.setBigDecimal(3, (BigDecimal) r[2]);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+            return rooms.size();
+        });
+    }
+
+    /** Streams the rooms table to {@code file}; returns how many. */
+    public long exportRooms(Path file) throws SQLException, IOException {
+        try (Writer w = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            w.write(ROOMS_HEADER + "\n");
+            return service.withConnection(c -> {
+                try (PreparedStatement ps = c.prepareStatement(
+                        "SELECT room_number, room_type, price_per_night FROM rooms ORDER BY room_number",
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                    ps.setFetchSize(Integer.MIN_VALUE);
+                    long n = 0;
+                    StringBuilder line = new StringBuilder(64);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            line.setLength(0);
+                            line.append(rs.getInt(1)).append(',').append(ReportEngine.csv(rs.getString(2))).append(',')
+                                .append(rs.getBigDecimal(3).toPlainString()).append('\n');
+                            write(w, line);
+                            n++;
+                        }
+                    }
+                    return n;
+                }
+            });
+        }
+    }
+
+    // ---------------- Checkpoints ----------------
+
+    /** {line, imported, rejected} committed so far for {@code source}; zeros for a new file. */
+    private long[] readCheckpoint(String source, long size) throws SQLException {
+        boolean restart = Boolean.getBoolean("bulk.restart");
+        return service.withConnection(c -> {
+            if (restart) {
+                try (PreparedStatement ps = c.prepareStatement("DELETE FROM bulk_import_checkpoints WHERE source = ?")) {
+                    ps.setString(1, source);
+                    ps.executeUpdate();
+                }
+                return new long[3];
+            }
+            try (PreparedStatement ps = c.prepareStatement(
+                    "SELECT file_size, line, imported, rejected FROM bulk_import_checkpoints WHERE source = ?")) {
+                ps.setString(1, source);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (!rs.next()) return new long[3];
+                    if (rs.getLong(1) != size) {
+                        throw new IllegalStateException(source + " changed since it was partly imported (up to line " +
+                                rs.getLong(2) + "); run with -Dbulk.restart=true to start it from the top.");
+                    }
+                    return new long[]{rs.getLong(2), rs.getLong(3), rs.getLong(4)};
+                }
+            }
+        });
+    }
+
+    private static void saveCheckpoint(Connection c, String source, long size, long line, long imported, long rejected)
+            throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement(
+                "INSERT INTO bulk_import_checkpoints (source, file_size, line, imported, rejected) VALUES (?, ?, ?, ?, ?) " +
+                "ON DUPLICATE KEY UPDATE file_size = VALUES(file_size), line = VALUES(line), " +
+                "imported = VALUES(imported), rejected = VALUES(rejected)")) {
+            ps.setString(1, source);
+            ps.setLong(2, size);
+            ps.setLong(3, line);
+            ps.setLong(4, imported);
+            ps.setLong(5, rejected);
+            ps.executeUpdate();
+        }
+    }
+
+    // ---------------- Helpers ----------------
+
+    private static String source(Path file) {
+        String s = file.toAbsolutePath().normalize().toString();
+        return s.length() > MAX_SOURCE ? s.substring(s.length() - MAX_SOURCE) : s;
+    }
+
+    private static String field(String[] f, int i) {
+        return i < f.length ? f[i].trim() : "";
+    }
+
+    private static int number(String s, String what) {
+        try {
+            return Integer.parseInt(s);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid " + what + " '" + s + "'");
+        }
+    }
+
+    private static Timestamp date(String s) {
+        try {
+            return Dates.parse(s);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("invalid date '" + s + "'");
+        }
+    }
+
+    /** A rejects-file line: line number, reason, then the original row. */
+    private static String reject(long line, String reason, String text) {
+        return line + "," + ReportEngine.csv(reason) + "," + text + "\n";
+    }
+
+    private static Chunk join(Future<Chunk> f) throws SQLException {
+        try {
+            return f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while importing", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw new SQLException(e.getCause());
+        }
+    }
+
+    private static void progress(long[] done, long t0) {
+        long ms = Math.max(1, (System.nanoTime() - t0) / 1_000_000);
+        System.out.printf("... line %d: %d imported, %d rejected (%d rows/s)%n", done[0], done[1], done[2],
+                (done[1] + done[2]) * 1000 / ms);
+    }
+
+    private static void write(Writer w, CharSequence line) throws SQLException {
+        try {
+            w.append(line);
+        } catch (IOException e) {
+            throw new SQLException("Could not write export file: " + e.getMessage(), e);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 2) {
+            System.err.println("Usage: java BulkTool import-rooms|import-reservations|export-rooms|export-reservations <file.csv>");
+            System.exit(2);
+        }
+        Path file = Paths.get(args[1]);
+        ConnectionPool pool = DbConfig.newPool(2);
+        int status = 0;
+        try {
+            MigrationRunner.runAtStartup(pool);
+            BulkTool tool = new BulkTool(new ReservationService(pool),
+                    Integer.getInteger("bulk.threads", Runtime.getRuntime().availableProcessors()));
+            long t0 = System.nanoTime();
+            switch (args[0]) {
+                case "import-rooms":
+                    System.out.println(tool.importRooms(file) + " room(s) imported");
+                    break;
+                case "import-reservations":
+                    System.out.println(tool.importReservations(file));
+                    break;
+                case "export-rooms":
+                    System.out.printf("%d room(s) written to %s in %d ms%n", tool.exportRooms(file), file, (System.nanoTime() - t0) / 1_000_000);
+                    break;
+                case "export-reservations":
+                    System.out.printf("%d reservation(s) written to %s in %d ms%n", tool.exportReservations(file), file, (System.nanoTime() - t0) / 1_000_000);
+                    break;
+                default:
+                    System.err.println("Unknown command '" + args[0] + "'");
+                    status = 2;
+            }
+        } catch (SQLException | IllegalArgumentException | IllegalStateException e) {
+            System.err.println("Stopped: " + e.getMessage());
+            if (args[0].equals("import-reservations")) System.err.println("Run the same command again to continue where it stopped.");
+            status = 1;
+        } finally {
+            pool.close();
+        }
+        System.exit(status);
+    }
+}
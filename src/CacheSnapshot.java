@@ -0,0 +1,113 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Local copy of the room catalog and the ACTIVE bookings, so a desk has rooms to offer and
+ * overlaps to check the moment its window opens, before (or without) the database answering.
+ *
+ * Saved after every successful cache refresh and read once at startup by memory-mapping the
+ * file. The layout is {@code [magic][format][saved at][source url][body length][crc32][body]};
+ * a snapshot that fails its CRC, is older than {@value #MAX_AGE_HOURS} h or was taken from
+ * another database is ignored. It is only a head start: the catalog keeps the checksum it was
+ * loaded with, so the first refresh against the database re-reads rooms only if they changed.
+ */
+final class CacheSnapshot {
+
+    private static final int MAGIC = 0x484D5343; // "HMSC"
+    private static final int FORMAT = 1;
+    static final int MAX_AGE_HOURS = 48;
+
+    private final Path file;
+    private final String source;
+
+    /** {@code source} identifies the database the caches come from (its JDBC url). */
+    CacheSnapshot(Path file, String source) {
+        this.file = file;
+        this.source = source;
+    }
+
+    /**
+     * Writes the caches to a temporary file and moves it over the old snapshot, so a reader never
+     * sees half of one. Returns false if that failed (disk full, or on Windows the old file still
+     * mapped by this process); the previous snapshot then stays until the next save.
+     */
+    boolean save(RoomCatalog catalog, AvailabilityIndex availability) {
+        try {
+            ByteArrayOutputStream body = new ByteArrayOutputStream(64 * 1024);
+            try (DataOutputStream out = new DataOutputStream(body)) {
+                availability.write(out);
+                catalog.write(out);
+            }
+            CRC32 crc = new CRC32();
+            crc.update(body.toByteArray());
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(body.size() + 256);
+            try (DataOutputStream out = new DataOutputStream(bytes)) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT);
+                out.writeLong(System.currentTimeMillis());
+                putString(out, source);
+                out.writeInt(body.size());
+                out.writeLong(crc.getValue());
+                body.writeTo(out);
+            }
+            if (file.getParent() != null) Files.createDirectories(file.getParent());
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            Files.write(tmp, bytes.toByteArray());
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Loads the availability index and then the catalog from the snapshot; false if there is no
+     * usable one. A catalog that fails to load after the index did is left unloaded, so nothing is
+     * offered from a half-read snapshot.
+     */
+    boolean restore(RoomCatalog catalog, AvailabilityIndex availability) {
+        if (!Files.isRegularFile(file)) return false;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (in.getInt() != MAGIC || in.getInt() != FORMAT) return false;
+            long savedAt = in.getLong();
+            if (System.currentTimeMillis() - savedAt > MAX_AGE_HOURS * 60L * 60 * 1000) return false;
+            if (!source.equals(getString(in))) return false;
+            int length = in.getInt();
+            long expected = in.getLong();
+            if (length != in.remaining()) return false;
+            ByteBuffer body = in.slice();
+            CRC32 crc = new CRC32();
+            crc.update(body.duplicate());
+            if (crc.getValue() != expected) return false;
+            availability.read(body);
+            catalog.read(body);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            return false; // truncated or from another version: start cold
+        }
+    }
+
+    // Strings as [length][UTF-8 bytes], readable straight from the mapped buffer
+    static void putString(DataOutputStream out, String s) throws IOException {
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(b.length);
+        out.write(b);
+    }
+
+    static String getString(ByteBuffer in) {
+        byte[] b = new byte[in.getInt()];
+        in.get(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,224 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Reads the {@code reservation_changes} outbox that triggers fill on every reservation insert,
+ * update and delete (V8). A reader keeps the sequence number it has seen up to and asks only for
+ * what came after, so following other desks costs one primary-key range read.
+ *
+ * Sequence numbers are handed out at insert time but become visible at commit, so a hole in the
+ * sequence may be a transaction still running: a bulk import chunk, a group booking or a writer
+ * stuck in a lock wait. {@link #read} stops in front of a hole and notes the database time it first
+ * saw it; the hole's owner had taken its sequence number by then. Once no writing transaction that
+ * started before that time is still open (InnoDB's {@code information_schema.innodb_trx}), the
+ * owner rolled back and the hole is stepped over. Without the PROCESS privilege that list can't be
+ * read: {@link #checkTransactionList} warns at startup, and a hole is then held for
+ * {@code hotel.feed.holeTimeoutSeconds} (30 s by default) after it was first seen. Readers that keep
+ * a cache also reload it from the table now and then (see {@link ReservationService#refreshCaches})
+ * in case a hole was skipped wrongly anyway.
+ */
+final class ChangeFeed {
+
+    static final int SETTLE_SECONDS = 3;          // younger holes are simply waited for
+    // When running transactions can't be listed; a little over the default innodb_lock_wait_timeout
+    static final int HOLE_TIMEOUT_SECONDS = Integer.getInteger("hotel.feed.holeTimeoutSeconds", 30);
+    private static final int RETAIN_DAYS = 7;
+    // Open transactions that have written something (only those can own a hole), other than ours
+    private static final String OPEN_WRITERS =
+            " FROM information_schema.innodb_trx WHERE trx_rows_modified > 0 AND trx_mysql_thread_id <> CONNECTION_ID()";
+    // Per schema: the seq after each hole still waited for -> database time it was first seen
+    private static final Map<String, NavigableMap<Long, Timestamp>> holesSeen = new ConcurrentHashMap<>();
+    private static final AtomicBoolean warnedBlind = new AtomicBoolean();
+
+    static final class Change {
+        final long seq;
+        final int reservationId;
+        final boolean deleted;
+
+        Change(long seq, int reservationId, boolean deleted) {
+            this.seq = seq;
+            this.reservationId = reservationId;
+            this.deleted = deleted;
+        }
+    }
+
+    /** Changes after a position, and the position to ask from next time. */
+    static final class Batch {
+        final List<Change> changes;
+        final long next;
+        final boolean full; // hit the limit: there is more, or it's cheaper to reload
+
+        Batch(List<Change> changes, long next, boolean full) {
+            this.changes = changes;
+            this.next = next;
+            this.full = full;
+        }
+
+        /** Ids changed (not deleted) in this batch, in order, each once; a later delete wins. */
+        int[] upsertedIds() {
+            Set<Integer> ids = new LinkedHashSet<>();
+            for (Change c : changes) {
+                if (c.deleted) ids.remove(c.reservationId); else ids.add(c.reservationId);
+            }
+            return ids.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        /** Ids whose last change in this batch was a delete. */
+        int[] deletedIds() {
+            Set<Integer> ids = new LinkedHashSet<>();
+            for (Change c : changes) {
+                if (c.deleted) ids.add(c.reservationId); else ids.remove(c.reservationId);
+            }
+            return ids.stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    private ChangeFeed() {}
+
+    /**
+     * Warns once, loudly, if this login can't list running transactions (no PROCESS privilege):
+     * every hole in the feed is then held for {@link #HOLE_TIMEOUT_SECONDS} s instead of only as
+     * long as its transaction runs.
+     */
+    static void checkTransactionList(Connection c) {
+        try {
+            queryLong(c, "/* feedTrxCheck */ SELECT COUNT(*)" + OPEN_WRITERS);
+        } catch (SQLException e) {
+            if (warnedBlind.compareAndSet(false, true)) {
+                System.err.println(LocalDateTime.now().format(Dates.DATE_TIME) + " WARNING: can't read " +
+                        "information_schema.innodb_trx (" + e.getMessage() + "); grant PROCESS to the hotel " +
+                        "login, or every rolled-back reservation write stalls the change feed for " +
+                        HOLE_TIMEOUT_SECONDS + " s (-Dhotel.feed.holeTimeoutSeconds)");
+            }
+        }
+    }
+
+    /**
+     * Where a new reader should start: the newest settled change written before the oldest open
+     * writing transaction began, so a change that transaction commits later is not behind the
+     * reader. The changes after it are read (again) on the first poll, which is harmless since
+     * applying a change is idempotent.
+     */
+    static long start(Connection c) throws SQLException {
+        String settled = "NOW(3) - INTERVAL " + SETTLE_SECONDS + " SECOND";
+        try {
+            return queryLong(c, "/* feedStart */ SELECT COALESCE(MAX(seq), 0) FROM reservation_changes " +
+                                "WHERE changed_at < LEAST(" + settled + ", COALESCE((SELECT MIN(trx_started)" + OPEN_WRITERS + "), " + settled + "))");
+        } catch (SQLException noProcessPrivilege) {
+            return queryLong(c, "/* feedStart */ SELECT COALESCE(MAX(seq), 0) FROM reservation_changes WHERE changed_at < " + settled);
+        }
+    }
+
+    private static long queryLong(Connection c, String sql) throws SQLException {
+        try (Statement st = c.createStatement(); ResultSet rs = st.executeQuery(sql)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    /** The newest sequence number written so far (settled or not), or 0. */
+    static long latest(Connection c) throws SQLException {
+        try (Statement st = c.createStatement();
+             ResultSet rs = st.executeQuery("/* feedLatest */ SELECT COALESCE(MAX(seq), 0) FROM reservation_changes")) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    /** Up to {@code limit} changes after {@code after}, stopping in front of a hole that may still be filled. */
+    static Batch read(Connection c, long after, int limit) throws SQLException {
+        NavigableMap<Long, Timestamp> seen = holesSeen.computeIfAbsent(String.valueOf(c.getCatalog()),
+                                                                        k -> new ConcurrentSkipListMap<>());
+        long[] heldBy = new long[1];
+        Batch batch = scan(c, after, limit, 0, heldBy);
+        if (heldBy[0] != 0 && ownersGone(c, seen, heldBy[0])) {
+            // Read again: a transaction that committed since the first read fills its hole now
+            batch = scan(c, after, limit, heldBy[0], heldBy);
+        }
+        seen.headMap(batch.next, true).clear(); // holes behind us were filled or skipped
+        return batch;
+    }
+
+    /**
+     * Reads changes in order, stepping over holes in front of rows up to {@code skipThrough}. At
+     * any other hole it stops; if the row after that hole is settled, its seq goes to heldBy[0].
+     */
+    private static Batch scan(Connection c, long after, int limit, long skipThrough, long[] heldBy) throws SQLException {
+        List<Change> out = new ArrayList<>();
+        long next = after;
+        int rows = 0;
+        heldBy[0] = 0;
+        try (PreparedStatement ps = c.prepareStatement(
+                "/* feedRead */ SELECT seq, reservation_id, op, changed_at < NOW(3) - INTERVAL " + SETTLE_SECONDS + " SECOND " +
+                "FROM reservation_changes WHERE seq > ? ORDER BY seq LIMIT ?")) {
+            ps.setLong(1, after);
+            ps.setInt(2, limit);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    rows++;
+                    long seq = rs.getLong(1);
+                    if (seq != next + 1 && seq > skipThrough) {
+                        if (rs.getBoolean(4)) heldBy[0] = seq;
+                        break;
+                    }
+                    out.add(new Change(seq, rs.getInt(2), "D".equals(rs.getString(3))));
+                    next = seq;
+                }
+            }
+        }
+        return new Batch(out, next, rows == limit);
+    }
+
+    /**
+     * True once no open writing transaction started before the hole in front of {@code seq} was
+     * first seen, i.e. whatever took those sequence numbers has rolled back. The first call for a
+     * hole only records when that was.
+     */
+    private static boolean ownersGone(Connection c, NavigableMap<Long, Timestamp> seen, long seq) throws SQLException {
+        Timestamp since = seen.get(seq);
+        if (since == null) {
+            try (Statement st = c.createStatement(); ResultSet rs = st.executeQuery("/* feedNow */ SELECT NOW(3)")) {
+                rs.next();
+                seen.putIfAbsent(seq, rs.getTimestamp(1));
+            }
+            since = seen.get(seq);
+        }
+        try (PreparedStatement ps = c.prepareStatement("/* feedHoleOwners */ SELECT COUNT(*)" + OPEN_WRITERS + " AND trx_started <= ?")) {
+            ps.setTimestamp(1, since);
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                return rs.getLong(1) == 0;
+            }
+        } catch (SQLException noProcessPrivilege) {
+            try (PreparedStatement ps = c.prepareStatement("/* feedHoleAge */ SELECT ? < NOW(3) - INTERVAL " + HOLE_TIMEOUT_SECONDS + " SECOND")) {
+                ps.setTimestamp(1, since);
+                try (ResultSet rs = ps.executeQuery()) {
+                    rs.next();
+                    return rs.getBoolean(1);
+                }
+            }
+        }
+    }
+
+    /** Deletes changes older than {@value #RETAIN_DAYS} days, a chunk at a time; returns how many. */
+    static int purge(Connection c) throws SQLException {
+        try (Statement st = c.createStatement()) {
+            return st.executeUpdate("/* feedPurge */ DELETE FROM reservation_changes " +
+                                    "WHERE changed_at < NOW() - INTERVAL " + RETAIN_DAYS + " DAY LIMIT 10000");
+        }
+    }
+}
@@ -0,0 +1,290 @@
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Small JDBC connection pool.
+ *
+ * Connections handed out by {@link #getConnection()} are proxies: calling close() returns the
+ * physical connection to the pool. Idle connections are validated before reuse, closed after
+ * sitting idle too long, and recycled once they reach their maximum lifetime, so a dropped
+ * MySQL session is replaced instead of poisoning the app. With {@link #metrics} set, statements
+ * created through those proxies are timed as well (see {@link InstrumentedStatement}).
+ */
+public class ConnectionPool implements AutoCloseable {
+
+    private final String url;
+    private final String user;
+    private final String pass;
+    private final int maxSize;
+
+    private String validationQuery = "SELECT 1";
+    private int validationTimeoutSeconds = 2;
+    private long validateAfterIdleMs = 1_000;
+    private long idleTimeoutMs = 10 * 60_000;
+    private long maxLifetimeMs = 30 * 60_000;
+    private long acquireTimeoutMs = 10_000;
+
+    private final Semaphore permits;
+    private final Deque<PooledConnection> idle = new ArrayDeque<>();
+    private final ScheduledExecutorService evictor;
+    private volatile boolean closed;
+    private Metrics metrics;
+
+    // Wait-time metrics (nanoseconds) for getConnection()
+    private final AtomicLong acquireCount = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong acquireTimeouts = new AtomicLong();
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong discarded = new AtomicLong();
+
+    public ConnectionPool(String url, String user, String pass, int maxSize) {
+        this.url = url;
+        this.user = user;
+        this.pass = pass;
+        this.maxSize = maxSize;
+        this.permits = new Semaphore(maxSize, true);
+        this.evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "pool-evictor");
+            t.setDaemon(true);
+            return t;
+        });
+        evictor.scheduleWithFixedDelay(this::evictIdle, 30, 30, TimeUnit.SECONDS);
+    }
+
+    // ----- Settings (call before first use) -----
+
+    public ConnectionPool validationQuery(String sql) { this.validationQuery = sql; return this; }
+    public ConnectionPool idleTimeout(long ms) { this.idleTimeoutMs = ms; return this; }
+    public ConnectionPool maxLifetime(long ms) { this.maxLifetimeMs = ms; return this; }
+    public ConnectionPool acquireTimeout(long ms) { this.acquireTimeoutMs = ms; return this; }
+    public ConnectionPool validateAfterIdle(long ms) { this.validateAfterIdleMs = ms; return this; }
+
+    /** Times every statement and connection wait, and publishes the pool's state as gauges. */
+    public ConnectionPool metrics(Metrics m) {
+        this.metrics = m;
+        m.gauge("pool.inUse", () -> maxSize - permits.availablePermits());
+        m.gauge("pool.waiting", permits::getQueueLength);
+        m.gauge("pool.acquireTimeouts", acquireTimeouts::get);
+        m.gauge("pool.created", created::get);
+        m.gauge("pool.discarded", discarded::get);
+        return this;
+    }
+
+    public int getMaxSize() { return maxSize; }
+
+    /** Borrows a connection; close() on the returned object gives it back. */
+    public Connection getConnection() throws SQLException {
+        if (closed) throw new SQLException("Connection pool is closed");
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS)) {
+                acquireTimeouts.incrementAndGet();
+                if (metrics != null) metrics.record("pool.acquire", System.nanoTime() - start);
+                throw new SQLTimeoutException("Timed out after " + acquireTimeoutMs + " ms waiting for a database connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        }
+        recordWait(System.nanoTime() - start);
+
+        try {
+            PooledConnection pc;
+            while ((pc = pollIdle()) != null) {
+                if (isUsable(pc)) return pc.lease();
+                discard(pc);
+            }
+            pc = new PooledConnection(DriverManager.getConnection(url, user, pass));
+            created.incrementAndGet();
+            return pc.lease();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /** Snapshot of pool counters, e.g. for a status line or the log. */
+    public String getStats() {
+        long n = acquireCount.get();
+        long avgMicros = n == 0 ? 0 : totalWaitNanos.get() / n / 1_000;
+        synchronized (idle) {
+            return "pool[max=" + maxSize +
+                   ", inUse=" + (maxSize - permits.availablePermits()) +
+                   ", idle=" + idle.size() +
+                   ", acquired=" + n +
+                   ", avgWait=" + avgMicros + "us" +
+                   ", maxWait=" + (maxWaitNanos.get() / 1_000) + "us" +
+                   ", timeouts=" + acquireTimeouts.get() +
+                   ", created=" + created.get() +
+                   ", discarded=" + discarded.get() + "]";
+        }
+    }
+
+    public long getAcquireCount() { return acquireCount.get(); }
+    public long getTotalWaitNanos() { return totalWaitNanos.get(); }
+    public long getMaxWaitNanos() { return maxWaitNanos.get(); }
+    public long getAcquireTimeouts() { return acquireTimeouts.get(); }
+
+    @Override
+    public void close() {
+        closed = true;
+        evictor.shutdownNow();
+        synchronized (idle) {
+            for (PooledConnection pc : idle) pc.closeQuietly();
+            idle.clear();
+        }
+    }
+
+    // ---------------- Internals ----------------
+
+    private PooledConnection pollIdle() {
+        synchronized (idle) {
+            return idle.pollFirst(); // LIFO keeps the warmest connections in use
+        }
+    }
+
+    private boolean isUsable(PooledConnection pc) {
+        long now = System.currentTimeMillis();
+        if (now - pc.createdAt >= maxLifetimeMs) return false;
+        if (now - pc.lastReturned < validateAfterIdleMs) return true;
+        try (Statement st = pc.raw.createStatement()) {
+            st.setQueryTimeout(validationTimeoutSeconds);
+            try (ResultSet rs = st.executeQuery(validationQuery)) {
+                return rs.next();
+            }
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void giveBack(PooledConnection pc) {
+        try {
+            boolean reusable = !closed && !pc.raw.isClosed()
+                    && System.currentTimeMillis() - pc.createdAt < maxLifetimeMs;
+            if (reusable) {
+                // Don't leak an open transaction or session state to the next borrower
+                if (!pc.raw.getAutoCommit()) {
+                    pc.raw.rollback();
+                    pc.raw.setAutoCommit(true);
+                }
+                pc.raw.clearWarnings();
+                pc.lastReturned = System.currentTimeMillis();
+                synchronized (idle) {
+                    idle.addFirst(pc);
+                }
+            } else {
+                discard(pc);
+            }
+        } catch (SQLException e) {
+            discard(pc);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /** One eviction pass; runs every 30 s on the evictor thread. */
+    void evictIdle() {
+        long now = System.currentTimeMillis();
+        synchronized (idle) {
+            Iterator<PooledConnection> it = idle.iterator();
+            while (it.hasNext()) {
+                PooledConnection pc = it.next();
+                if (now - pc.lastReturned >= idleTimeoutMs || now - pc.createdAt >= maxLifetimeMs) {
+                    it.remove();
+                    discard(pc);
+                }
+            }
+        }
+    }
+
+    private void discard(PooledConnection pc) {
+        discarded.incrementAndGet();
+        pc.closeQuietly();
+    }
+
+    private void recordWait(long nanos) {
+        if (metrics != null) metrics.record("pool.acquire", nanos);
+        acquireCount.incrementAndGet();
+        totalWaitNanos.addAndGet(nanos);
+        maxWaitNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    private final class PooledConnection {
+        final Connection raw;
+        final long createdAt = System.currentTimeMillis();
+        volatile long lastReturned = createdAt;
+
+        PooledConnection(Connection raw) {
+            this.raw = raw;
+        }
+
+        Connection lease() {
+            Handler h = new Handler(this);
+            return (Connection) Proxy.newProxyInstance(
+                    ConnectionPool.class.getClassLoader(), new Class<?>[]{Connection.class}, h);
+        }
+
+        void closeQuietly() {
+            try { raw.close(); } catch (SQLException ignore) {}
+        }
+    }
+
+    /** Routes calls to the physical connection until the borrower closes it. */
+    private final class Handler implements InvocationHandler {
+        private final PooledConnection pc;
+        private boolean returned;
+
+        Handler(PooledConnection pc) {
+            this.pc = pc;
+        }
+
+        @Override
+        public synchronized Object invoke(Object proxy, java.lang.reflect.Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!returned) {
+                        returned = true;
+                        giveBack(pc);
+                    }
+                    return null;
+                case "isClosed":
+                    return returned || pc.raw.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled" + pc.raw;
+                default:
+                    if (returned) throw new SQLException("Connection has been returned to the pool");
+                    Object result;
+                    try {
+                        result = method.invoke(pc.raw, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                    if (metrics != null && InstrumentedStatement.isStatementFactory(method.getName())) {
+                        String sql = (args != null && args.length > 0 && args[0] instanceof String) ? (String) args[0] : null;
+                        result = InstrumentedStatement.wrap((Statement) result, sql, method.getReturnType(), metrics);
+                    }
+                    return result;
+            }
+        }
+    }
+}
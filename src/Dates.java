@@ -0,0 +1,86 @@
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.zone.ZoneRules;
+import java.util.Date;
+
+/**
+ * Date helpers shared by the UI, the service and the API. Formatters are immutable and cached, so
+ * everything here is safe to call from any thread (unlike SimpleDateFormat).
+ *
+ * Nights are counted on local calendar days: {@code epochDay(checkOut) - epochDay(checkIn)}, at
+ * least 1. The zone is the JVM default, the same one JDBC uses to read the DATETIME columns.
+ */
+final class Dates {
+
+    static final DateTimeFormatter DATE = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    static final DateTimeFormatter DATE_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+    private static final ZoneRules RULES = ZoneId.systemDefault().getRules();
+
+    /** A formatted date that still sorts by time; used for typed table cells. */
+    static final class Cell implements Comparable<Cell> {
+        final long millis;
+        final String text;
+
+        Cell(long millis, String text) {
+            this.millis = millis;
+            this.text = text;
+        }
+
+        @Override
+        public int compareTo(Cell o) {
+            return Long.compare(millis, o.millis);
+        }
+
+        @Override
+        public String toString() {
+            return text;
+        }
+    }
+
+    private Dates() {}
+
+    /** Local calendar day of an instant, as days since 1970-01-01. */
+    static long epochDay(long millis) {
+        int offsetSeconds = RULES.isFixedOffset()
+                ? RULES.getOffset(Instant.EPOCH).getTotalSeconds()
+                : RULES.getOffset(Instant.ofEpochMilli(millis)).getTotalSeconds();
+        return Math.floorDiv(millis + offsetSeconds * 1000L, MILLIS_PER_DAY);
+    }
+
+    /** Nights between check-in and checkout days; a same-day stay counts as one night. */
+    static long nights(Timestamp checkIn, Timestamp checkOut) {
+        return Math.max(epochDay(checkOut.getTime()) - epochDay(checkIn.getTime()), 1);
+    }
+
+    /** yyyy-MM-dd HH:mm:ss, or "" for null. */
+    static String format(Timestamp t) {
+        return t == null ? "" : DATE_TIME.format(t.toLocalDateTime());
+    }
+
+    /** yyyy-MM-dd in the local zone. */
+    static String formatDate(Date d) {
+        return DATE.format(LocalDate.ofInstant(d.toInstant(), ZoneId.systemDefault()));
+    }
+
+    static Cell cell(Timestamp t) {
+        return t == null ? null : new Cell(t.getTime(), format(t));
+    }
+
+    /**
+     * Parses yyyy-MM-dd (start of day), yyyy-MM-dd HH:mm:ss or yyyy-MM-ddTHH:mm:ss.
+     *
+     * @throws DateTimeParseException if the text is none of these
+     */
+    static Timestamp parse(String text) {
+        String t = text.trim();
+        if (t.length() <= 10) return Timestamp.valueOf(LocalDate.parse(t, DATE).atStartOfDay());
+        return Timestamp.valueOf(LocalDateTime.parse(t.replace(' ', 'T')));
+    }
+}
@@ -0,0 +1,24 @@
+/**
+ * Database connection settings shared by the desktop app and the headless tools.
+ * Each value can be overridden with a system property, e.g. {@code -Dhotel.db.url=...}.
+ */
+final class DbConfig {
+
+    // rewriteBatchedStatements turns JDBC batches (group bookings) into multi-row INSERTs
+    static final String URL = System.getProperty("hotel.db.url",
+            "jdbc:mysql://localhost:3310/hotel_db?serverTimezone=UTC&rewriteBatchedStatements=true");
+    static final String USER = System.getProperty("hotel.db.user", "root");
+    static final String PASS = System.getProperty("hotel.db.pass", "root");
+
+    private DbConfig() {}
+
+    static ConnectionPool newPool(int size) {
+        return newPool(URL, USER, PASS, size);
+    }
+
+    /** A pool for another database, e.g. one property's schema (see PropertyRouter). */
+    static ConnectionPool newPool(String url, String user, String pass, int size) {
+        ConnectionPool pool = new ConnectionPool(url, user, pass, size);
+        return Metrics.ENABLED ? pool.metrics(Metrics.shared()) : pool;
+    }
+}
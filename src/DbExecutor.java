@@ -0,0 +1,107 @@
+import javax.swing.SwingUtilities;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Runs database work off the Swing event dispatch thread and hands the result back on the EDT.
+ *
+ * Work submitted under a key (e.g. "table") supersedes any earlier work under the same key:
+ * a superseded task that has not started yet is skipped, and the result of one that is already
+ * running is dropped instead of being delivered.
+ * The busy listener is told (on the EDT) whenever the executor goes from idle to busy and back.
+ * Queue wait and run time of every task are recorded in {@link Metrics} ({@code task.queued},
+ * {@code task:<key>}).
+ */
+public class DbExecutor {
+
+    /** A unit of background work; may throw anything, which is then routed to the error callback. */
+    public interface Task<T> {
+        T call() throws Exception;
+    }
+
+    private final ExecutorService workers;
+    private final Map<String, AtomicLong> generations = new ConcurrentHashMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Consumer<Boolean> busyListener;
+    private final Metrics metrics = Metrics.shared();
+
+    public DbExecutor(int threads, Consumer<Boolean> busyListener) {
+        // Java 17 target: no virtual threads, so a small pool of daemon platform threads
+        AtomicInteger n = new AtomicInteger();
+        ThreadFactory tf = r -> {
+            Thread t = new Thread(r, "db-worker-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+        this.workers = Executors.newFixedThreadPool(threads, tf);
+        this.busyListener = busyListener;
+    }
+
+    /** Runs {@code task} in the background; exactly one of the callbacks runs later on the EDT. */
+    public <T> void submit(Task<T> task, Consumer<T> onSuccess, Consumer<Exception> onError) {
+        submit(null, task, onSuccess, onError);
+    }
+
+    /**
+     * Same as {@link #submit(Task, Consumer, Consumer)} but supersedes any earlier task with the
+     * same key. Callbacks of a superseded task are never invoked.
+     */
+    public <T> void submit(String key, Task<T> task, Consumer<T> onSuccess, Consumer<Exception> onError) {
+        final long gen = (key == null) ? 0 : generations.computeIfAbsent(key, k -> new AtomicLong()).incrementAndGet();
+        if (inFlight.getAndIncrement() == 0) notifyBusy(true);
+        final long queuedAt = System.nanoTime();
+
+        workers.execute(() -> {
+            T result = null;
+            Exception failure = null;
+            long started = System.nanoTime();
+            metrics.record("task.queued", started - queuedAt);
+            try {
+                if (!isStale(key, gen)) result = task.call();
+            } catch (Exception e) {
+                failure = e;
+            } finally {
+                metrics.record(key == null ? "task" : "task:" + key, System.nanoTime() - started);
+            }
+            final T r = result;
+            final Exception ex = failure;
+            SwingUtilities.invokeLater(() -> {
+                try {
+                    if (isStale(key, gen)) return;
+                    if (ex != null) {
+                        if (onError != null) onError.accept(ex);
+                    } else if (onSuccess != null) {
+                        onSuccess.accept(r);
+                    }
+                } finally {
+                    if (inFlight.decrementAndGet() == 0) notifyBusy(false);
+                }
+            });
+        });
+    }
+
+    /** Drops the pending result (if any) of the task submitted under {@code key}. */
+    public void cancel(String key) {
+        AtomicLong g = generations.get(key);
+        if (g != null) g.incrementAndGet();
+    }
+
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    private boolean isStale(String key, long gen) {
+        return key != null && generations.get(key).get() != gen;
+    }
+
+    private void notifyBusy(boolean busy) {
+        if (busyListener == null) return;
+        SwingUtilities.invokeLater(() -> busyListener.accept(busy));
+    }
+}
@@ -0,0 +1,237 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Group / tour bookings: many reservations checked and inserted together, all or nothing.
+ *
+ * {@link #validate} does the cheap in-memory pass (fields, known rooms, the availability index and
+ * clashes inside the group itself). {@link #commit} must run inside a transaction: it locks every
+ * room involved, re-checks all entries against the DB with one query, and inserts them with a
+ * single JDBC batch. If anything clashes nothing is inserted.
+ */
+public class GroupBooking {
+
+    public static final class Entry {
+        final int line;          // 1-based source line/row, for messages
+        final String guest;
+        final String contact;
+        final int room;
+        final Timestamp checkIn;
+        final Timestamp checkOut;
+
+        public Entry(int line, String guest, String contact, int room, Timestamp checkIn, Timestamp checkOut) {
+            this.line = line;
+            this.guest = guest;
+            this.contact = contact;
+            this.room = room;
+            this.checkIn = checkIn;
+            this.checkOut = checkOut;
+        }
+
+        boolean overlaps(long from, long to) {
+            return checkOut.getTime() > from && checkIn.getTime() < to;
+        }
+    }
+
+    /** Outcome of {@link #commit}: generated ids on success, otherwise the clashes found. */
+    public static final class Result {
+        final int[] ids;
+        final List<String> conflicts;
+
+        Result(int[] ids, List<String> conflicts) {
+            this.ids = ids;
+            this.conflicts = conflicts;
+        }
+
+        boolean ok() {
+            return conflicts.isEmpty();
+        }
+    }
+
+    // ---------------- Parsing ----------------
+
+    /**
+     * Reads {@code guest_name,contact_number,room_number,check_in,checkout} lines. Dates are
+     * yyyy-MM-dd or yyyy-MM-dd HH:mm:ss; a first line starting with "guest" is taken as a header.
+     */
+    public static List<Entry> parseCsv(Reader in) throws IOException {
+        List<Entry> out = new ArrayList<>();
+        BufferedReader r = new BufferedReader(in);
+        String line;
+        int n = 0;
+        while ((line = r.readLine()) != null) {
+            n++;
+            if (line.isBlank()) continue;
+            if (n == 1 && line.trim().toLowerCase().startsWith("guest")) continue;
+            String[] f = splitCsv(line);
+            if (f.length < 5) throw new IllegalArgumentException("Line " + n + ": expected 5 fields, found " + f.length);
+            out.add(parseEntry(n, f[0], f[1], f[2], f[3], f[4]));
+        }
+        return out;
+    }
+
+    /** Builds an entry from text fields (CSV columns or dialog cells). */
+    public static Entry parseEntry(int line, String guest, String contact, String room, String in, String out) {
+        int roomNo;
+        try {
+            roomNo = Integer.parseInt(room.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Line " + line + ": invalid room number '" + room + "'");
+        }
+        return new Entry(line, guest.trim(), contact.trim(), roomNo, parseDate(line, in), parseDate(line, out));
+    }
+
+    private static Timestamp parseDate(int line, String s) {
+        try {
+            return Dates.parse(s);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Line " + line + ": invalid date '" + s + "'");
+        }
+    }
+
+    static String[] splitCsv(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder cur = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                if (quoted && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    cur.append('"');
+                    i++;
+                } else {
+                    quoted = !quoted;
+                }
+            } else if (c == ',' && !quoted) {
+                fields.add(cur.toString());
+                cur.setLength(0);
+            } else {
+                cur.append(c);
+            }
+        }
+        fields.add(cur.toString());
+        return fields.toArray(new String[0]);
+    }
+
+    // ---------------- Checking ----------------
+
+    /** In-memory checks; returns one message per problem (empty list = looks bookable). */
+    public static List<String> validate(List<Entry> entries, RoomCatalog catalog, AvailabilityIndex index) {
+        List<String> problems = new ArrayList<>();
+        for (int i = 0; i < entries.size(); i++) {
+            Entry e = entries.get(i);
+            String at = "Line " + e.line + " (room " + e.room + "): ";
+            if (e.guest.isEmpty() || e.contact.isEmpty()) {
+                problems.add(at + "guest name and contact are required");
+            }
+            if (!e.checkOut.after(e.checkIn)) {
+                problems.add(at + "checkout must be after check-in");
+                continue;
+            }
+            if (catalog.isLoaded() && !catalog.contains(e.room)) {
+                problems.add(at + "no such room");
+                continue;
+            }
+            if (index.findOverlap(e.room, e.checkIn.getTime(), e.checkOut.getTime(), -1) >= 0) {
+                problems.add(at + "already booked for those dates");
+            }
+            for (int j = 0; j < i; j++) {
+                Entry o = entries.get(j);
+                if (o.room == e.room && o.overlaps(e.checkIn.getTime(), e.checkOut.getTime())) {
+                    problems.add(at + "clashes with line " + o.line + " of this group");
+                }
+            }
+        }
+        return problems;
+    }
+
+    // ---------------- Commit ----------------
+
+    /** Locks, re-checks and batch-inserts every entry. Call inside a transaction. */
+    public static Result commit(Connection c, List<Entry> entries) throws SQLException {
+        TreeSet<Integer> rooms = new TreeSet<>();
+        long from = Long.MAX_VALUE, to = Long.MIN_VALUE;
+        for (Entry e : entries) {
+            rooms.add(e.room);
+            from = Math.min(from, e.checkIn.getTime());
+            to = Math.max(to, e.checkOut.getTime());
+        }
+        String inList = String.join(",", java.util.Collections.nCopies(rooms.size(), "?"));
+
+        // Lock rooms in ascending order so two overlapping groups can't deadlock each other
+        try (PreparedStatement ps = c.prepareStatement(
+                "SELECT room_number FROM rooms WHERE room_number IN (" + inList + ") ORDER BY room_number FOR UPDATE")) {
+            int i = 1;
+            for (int room : rooms) ps.setInt(i++, room);
+            int locked = 0;
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) locked++;
+            }
+            if (locked != rooms.size()) {
+                return new Result(new int[0], List.of("One or more rooms in the group do not exist."));
+            }
+        }
+
+        // One query for every ACTIVE booking that could clash with any entry
+        List<String> conflicts = new ArrayList<>();
+        try (PreparedStatement ps = c.prepareStatement(
+                "SELECT reservation_id, room_number, reservation_date, checkout_date FROM reservations " +
+                "WHERE status = 'ACTIVE' AND room_number IN (" + inList + ") " +
+                "AND checkout_date > ? AND reservation_date < ?")) {
+            int i = 1;
+            for (int room : rooms) ps.setInt(i++, room);
+            ps.setTimestamp(i++, new Timestamp(from));
+            ps.setTimestamp(i, new Timestamp(to));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    int existingId = rs.getInt(1);
+                    int room = rs.getInt(2);
+                    long in = rs.getTimestamp(3).getTime();
+                    long out = rs.getTimestamp(4).getTime();
+                    for (Entry e : entries) {
+                        if (e.room == room && e.overlaps(in, out)) {
+                            conflicts.add("Line " + e.line + " (room " + room + "): clashes with reservation " + existingId);
+                        }
+                    }
+                }
+            }
+        }
+        if (!conflicts.isEmpty()) return new Result(new int[0], conflicts);
+
+        String insert = "INSERT INTO reservations (guest_name, room_number, contact_number, reservation_date, checkout_date, status) " +
+                        "VALUES (?, ?, ?, ?, ?, 'ACTIVE')";
+        int[] ids = new int[entries.size()];
+        try (PreparedStatement ps = c.prepareStatement(insert, Statement.RETURN_GENERATED_KEYS)) {
+            for (Entry e : entries) {
+                ps.setString(1, e.guest);
+                ps.setInt(2, e.room);
+                ps.setString(3, e.contact);
+                ps.setTimestamp(4, e.checkIn);
+                ps.setTimestamp(5, e.checkOut);
+                ps.addBatch();
+            }
+            int[] counts = ps.executeBatch();
+            for (int n : counts) {
+                if (n == 0) throw new SQLException("Failed to save group reservation.");
+            }
+            try (ResultSet keys = ps.getGeneratedKeys()) {
+                int k = 0;
+                while (keys.next() && k < ids.length) ids[k++] = keys.getInt(1);
+                if (k != ids.length) Arrays.fill(ids, k, ids.length, -1);
+            }
+        }
+        return new Result(ids, List.of());
+    }
+}
@@ -0,0 +1,135 @@
+import javax.swing.*;
+import javax.swing.border.EmptyBorder;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Form for entering a group booking by hand or from a CSV file.
+ *
+ * The dialog only collects and pre-checks entries; "Book All" hands them to the owner, which runs
+ * the database transaction and closes the dialog when it succeeds.
+ */
+public class GroupBookingDialog extends JDialog {
+
+    private final RoomCatalog catalog;
+    private final AvailabilityIndex availability;
+    private final BiConsumer<GroupBookingDialog, List<GroupBooking.Entry>> onBook;
+
+    private final DefaultTableModel model = new DefaultTableModel(
+            new Object[]{"Guest Name", "Contact", "Room", "Check-in (yyyy-MM-dd)", "Checkout (yyyy-MM-dd)"}, 0);
+    private final JTable table = new JTable(model);
+    private final JButton bookBtn = new JButton("Book All");
+
+    public GroupBookingDialog(Frame owner, RoomCatalog catalog, AvailabilityIndex availability,
+                              BiConsumer<GroupBookingDialog, List<GroupBooking.Entry>> onBook) {
+        super(owner, "Group Booking", true);
+        this.catalog = catalog;
+        this.availability = availability;
+        this.onBook = onBook;
+
+        JPanel root = new JPanel(new BorderLayout(10, 10));
+        root.setBorder(new EmptyBorder(12, 12, 12, 12));
+        setContentPane(root);
+
+        JLabel hint = new JLabel("One row per room. Import CSV columns: guest_name, contact_number, room_number, check_in, checkout");
+        hint.setFont(new Font("Segoe UI", Font.ITALIC, 12));
+        root.add(hint, BorderLayout.NORTH);
+
+        table.setRowHeight(24);
+        table.setFont(new Font("Segoe UI", Font.PLAIN, 13));
+        table.putClientProperty("terminateEditOnFocusLost", Boolean.TRUE);
+        root.add(new JScrollPane(table), BorderLayout.CENTER);
+
+        JButton addBtn = new JButton("Add Row");
+        JButton removeBtn = new JButton("Remove Row");
+        JButton importBtn = new JButton("Import CSV…");
+        JButton cancelBtn = new JButton("Cancel");
+        JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT, 8, 0));
+        buttons.add(addBtn);
+        buttons.add(removeBtn);
+        buttons.add(importBtn);
+        buttons.add(bookBtn);
+        buttons.add(cancelBtn);
+        root.add(buttons, BorderLayout.SOUTH);
+
+        addBtn.addActionListener(e -> addRow("", "", "", LocalDate.now().toString(), LocalDate.now().plusDays(1).toString()));
+        removeBtn.addActionListener(e -> {
+            int r = table.getSelectedRow();
+            if (r >= 0) model.removeRow(r);
+        });
+        importBtn.addActionListener(e -> importCsv());
+        bookBtn.addActionListener(e -> bookAll());
+        cancelBtn.addActionListener(e -> dispose());
+
+        setSize(820, 460);
+        setLocationRelativeTo(owner);
+    }
+
+    /** Re-enables "Book All" after the owner reports a failure. */
+    public void bookingFailed() {
+        bookBtn.setEnabled(true);
+    }
+
+    private void addRow(String guest, String contact, String room, String in, String out) {
+        model.addRow(new Object[]{guest, contact, room, in, out});
+    }
+
+    private void importCsv() {
+        JFileChooser chooser = new JFileChooser();
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        try (FileReader in = new FileReader(chooser.getSelectedFile(), StandardCharsets.UTF_8)) {
+            List<GroupBooking.Entry> entries = GroupBooking.parseCsv(in);
+            for (GroupBooking.Entry e : entries) {
+                addRow(e.guest, e.contact, String.valueOf(e.room),
+                        Dates.format(e.checkIn), Dates.format(e.checkOut));
+            }
+        } catch (IOException | IllegalArgumentException ex) {
+            JOptionPane.showMessageDialog(this, "Could not import CSV: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    private void bookAll() {
+        if (table.isEditing()) table.getCellEditor().stopCellEditing();
+        if (model.getRowCount() == 0) {
+            JOptionPane.showMessageDialog(this, "Add at least one row.", "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        List<GroupBooking.Entry> entries = new ArrayList<>();
+        try {
+            for (int r = 0; r < model.getRowCount(); r++) {
+                entries.add(GroupBooking.parseEntry(r + 1, cell(r, 0), cell(r, 1), cell(r, 2), cell(r, 3), cell(r, 4)));
+            }
+        } catch (IllegalArgumentException ex) {
+            JOptionPane.showMessageDialog(this, ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+
+        List<String> problems = GroupBooking.validate(entries, catalog, availability);
+        if (!problems.isEmpty()) {
+            showProblems(this, problems);
+            return;
+        }
+        bookBtn.setEnabled(false);
+        onBook.accept(this, entries);
+    }
+
+    private String cell(int r, int c) {
+        Object v = model.getValueAt(r, c);
+        return v == null ? "" : v.toString();
+    }
+
+    /** Shows a scrollable list of problems (a 40-room group can produce many). */
+    static void showProblems(Component parent, List<String> problems) {
+        JTextArea text = new JTextArea(String.join("\n", problems), Math.min(problems.size(), 15), 60);
+        text.setEditable(false);
+        JOptionPane.showMessageDialog(parent, new JScrollPane(text),
+                "Group booking not possible (" + problems.size() + " problem(s))", JOptionPane.ERROR_MESSAGE);
+    }
+}
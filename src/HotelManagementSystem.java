@@ -4,50 +4,159 @@ import javax.swing.table.*;
 import java.awt.*;
 import java.awt.event.*;
 import java.sql.*;
-import java.text.SimpleDateFormat;
+import java.time.LocalDate;
 import java.util.Date;
 
 public class HotelManagementSystem extends JFrame {
-    // ----- DB Config -----
-    private static final String DB_URL = "jdbc:mysql://localhost:3310/hotel_db?serverTimezone=UTC";
-    private static final String DB_USER = "root";
-    private static final String DB_PASS = "root";
-
-    private Connection connection;
+    // ----- DB Config (see DbConfig) -----
+    private static final int POOL_SIZE = 4;
+
+    private ConnectionPool pool;
+    private ReservationService service;
+    // Which hotel this desk serves (-Dhotel.property); PropertyRouter maps it to its database
+    private static final int PROPERTY = Integer.getInteger("hotel.property", PropertyRouter.DEFAULT_PROPERTY);
+    private PropertyRouter router;
+
+    // One worker per pooled connection so independent queries can run side by side
+    private final DbExecutor db = new DbExecutor(POOL_SIZE, this::setBusy);
+
+    // Owned by the service: rooms (type, price) cached until the table's checksum changes, and
+    // ACTIVE bookings per room for instant overlap/availability answers
+    private RoomCatalog catalog;
+    private AvailabilityIndex availability;
+    private ReportEngine reports;
+    // Bookings made while MySQL is unreachable: fsync'd here, replayed once it is back
+    private OfflineJournal journal;
+    private JournalReplayer replayer;
+    // Appends to the journal in order, off the EDT: each one waits for an fsync
+    private final DbExecutor journalIo = new DbExecutor(1, busy -> { });
+    private static final int JOURNAL_REPLAY_MS = 5_000;
+    // Room and rate edits are checked, and the availability index follows the feed, every minute
+    private static final int CACHE_REFRESH_MS = 60_000;
+    // Other desks' edits reach the table through the change feed: one primary-key range read
+    private static final int CHANGE_POLL_MS = 1_000;
+    // Rooms and ACTIVE bookings saved locally, so the window has them before the database answers
+    private CacheSnapshot snapshot;
+    private boolean opened;                             // database connected and migrated (EDT only)
+    private String dbStatus = "Connecting to the database…";
 
     // UI components
     private JTextField guestNameField;
     private JComboBox<Integer> roomCombo;
+    private JComboBox<String> roomTypeCombo;            // Type for Auto-Assign
+    private static final String ANY_TYPE = "Any type";
     private JTextField contactField;
     private JSpinner dateSpinner;        // Check-in
     private JSpinner checkOutSpinner;    // Checkout
     private JTextField idField;
 
     private JTable reservationsTable;
-    private DefaultTableModel tableModel;
+    private ReservationTableModel tableModel;
 
     private JButton reserveBtn, updateBtn, deleteBtn, getRoomBtn;
     private JButton checkoutBtn, showAvailableRoomsBtn; // New
+    private JButton groupBookingBtn, reportBtn;
     private JComboBox<String> viewSelector;             // New (Current vs All)
-
-    private final SimpleDateFormat dateOnlyFormat = new SimpleDateFormat("yyyy-MM-dd");
+    private JLabel offlineLabel;                        // Journaled changes not yet in the database
+    private JTextField searchGuestField, searchContactField, searchRoomField, searchFromField, searchToField;
+    private Timer searchDebounce;
+    private static final int SEARCH_DEBOUNCE_MS = 300;
+    private JProgressBar busyBar;                       // Shown while db work is running
 
     public HotelManagementSystem() {
         try {
-            Class.forName("com.mysql.cj.jdbc.Driver");
-            connection = DriverManager.getConnection(DB_URL, DB_USER, DB_PASS);
+            router = PropertyRouter.fromConfig(POOL_SIZE);
+            service = router.prepare(PROPERTY); // no connection yet: openDatabase() does that off the EDT
+            pool = service.pool();
+            catalog = service.catalog();
+            availability = service.availability();
+            reports = new ReportEngine(pool, catalog, service.rates(), TaxSlabs.fromConfig());
+            journal = new OfflineJournal(java.nio.file.Paths.get(System.getProperty("hotel.journal", "offline-journal.bin")));
         } catch (Exception e) {
-            showErrorAndExit("Database connection failed: " + e.getMessage());
+            showErrorAndExit("Startup failed: " + e.getMessage());
             return;
         }
+        snapshot = new CacheSnapshot(java.nio.file.Paths.get(System.getProperty("hotel.snapshot", "cache-snapshot.bin")),
+                router.url(PROPERTY));
+        if (snapshot.restore(catalog, availability)) reapplyJournal();
 
         initUI();
-        loadRoomsIntoCombo();
-        loadReservationsToTable(); // Will respect selector if already built
+        fillRoomCombo(catalog.roomNumbers());
+        setBookingEnabled(false);
+        startMetrics();
+        openDatabase();
+    }
+
+    /**
+     * Connects, migrates and claims the schema, then checks the caches restored from the snapshot
+     * against the database (see {@link #refreshCaches}). The booking buttons wait for the first
+     * attempt; if the database can't be reached they work offline and the attempt is repeated.
+     */
+    private void openDatabase() {
+        db.submit("open", () -> {
+            router.service(PROPERTY);
+            boolean roomsChanged = service.refreshCaches();
+            snapshot.save(catalog, availability);
+            reapplyJournal();
+            return roomsChanged;
+        }, roomsChanged -> {
+            opened = true;
+            dbStatus = "";
+            updateOfflineLabel();
+            setBookingEnabled(true);
+            if (roomsChanged) fillRoomCombo(catalog.roomNumbers());
+            if (roomCombo.getItemCount() == 0) {
+                JOptionPane.showMessageDialog(this,
+                        "No rooms found in 'rooms' table. Please insert rooms.",
+                        "No rooms", JOptionPane.WARNING_MESSAGE);
+            }
+            loadReservationsToTable();
+            new Timer(CACHE_REFRESH_MS, e -> refreshCaches()).start();
+            new Timer(CHANGE_POLL_MS, e -> tableModel.pollChanges(service::applyChanges)).start();
+            startApiIfConfigured();
+            startReplayer();
+        }, e -> {
+            if (!OfflineJournal.isConnectivityFailure(e)) {
+                showErrorAndExit("Database connection failed: " + e.getMessage());
+                return;
+            }
+            dbStatus = "Database unreachable - working offline";
+            updateOfflineLabel();
+            setBookingEnabled(true);
+            Timer retry = new Timer(JOURNAL_REPLAY_MS, ev -> openDatabase());
+            retry.setRepeats(false);
+            retry.start();
+        });
+    }
+
+    private void setBookingEnabled(boolean enabled) {
+        for (JButton b : new JButton[]{reserveBtn, updateBtn, deleteBtn, checkoutBtn, groupBookingBtn}) b.setEnabled(enabled);
+    }
+
+    // EDT timing always; -Dhotel.metrics.port=9404 also serves them at http://127.0.0.1:9404/metrics
+    private void startMetrics() {
+        Metrics metrics = Metrics.shared();
+        metrics.installEdtTimer();
+        try {
+            metrics.serveIfConfigured();
+        } catch (java.io.IOException e) {
+            showError("Could not start metrics endpoint: " + e.getMessage());
+        }
+    }
+
+    // Web/kiosk channels: -Dhotel.api.port=8080 serves ReservationService over HTTP from this process
+    private void startApiIfConfigured() {
+        Integer port = Integer.getInteger("hotel.api.port");
+        if (port == null) return;
+        try {
+            new ReservationApiServer(router, PROPERTY, port, POOL_SIZE * 2).start();
+        } catch (java.io.IOException e) {
+            showError("Could not start reservation API on port " + port + ": " + e.getMessage());
+        }
     }
 
     private void initUI() {
-        setTitle("Hotel Reservation System");
+        setTitle("Hotel Reservation System" + (router.propertyIds().size() > 1 ? " - " + router.name(PROPERTY) : ""));
         setSize(1080, 680);
         setLocationRelativeTo(null);
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
@@ -72,12 +181,27 @@ public class HotelManagementSystem extends JFrame {
         JLabel viewLbl = new JLabel("View:");
         viewLbl.setForeground(new Color(230, 240, 255));
         viewLbl.setFont(new Font("Segoe UI", Font.PLAIN, 12));
-        viewSelector = new JComboBox<>(new String[]{"Current Reservations", "All Reservations"});
+        viewSelector = new JComboBox<>(new String[]{"Current Reservations", "All Reservations", "Archived Reservations"});
         viewSelector.setFont(new Font("Segoe UI", Font.PLAIN, 12));
         viewSelector.addActionListener(e -> loadReservationsToTable());
 
+        JButton refreshBtn = new JButton("Refresh");
+        refreshBtn.setFont(new Font("Segoe UI", Font.PLAIN, 12));
+        refreshBtn.setFocusPainted(false);
+        refreshBtn.addActionListener(e -> {
+            loadRoomsIntoCombo();
+            loadReservationsToTable();
+        });
+
+        offlineLabel = new JLabel();
+        offlineLabel.setForeground(new Color(255, 236, 179));
+        offlineLabel.setFont(new Font("Segoe UI", Font.BOLD, 12));
+        updateOfflineLabel();
+
+        rightHeader.add(offlineLabel);
         rightHeader.add(viewLbl);
         rightHeader.add(viewSelector);
+        rightHeader.add(refreshBtn);
 
         header.add(title, BorderLayout.WEST);
         header.add(rightHeader, BorderLayout.EAST);
@@ -103,7 +227,17 @@ public class HotelManagementSystem extends JFrame {
         JPanel footP = new JPanel(new FlowLayout(FlowLayout.LEFT));
         footP.setBackground(new Color(245, 247, 250));
         footP.add(footer);
-        root.add(footP, BorderLayout.SOUTH);
+
+        busyBar = new JProgressBar();
+        busyBar.setIndeterminate(true);
+        busyBar.setString("Working…");
+        busyBar.setStringPainted(true);
+        busyBar.setVisible(false);
+        JPanel footBar = new JPanel(new BorderLayout());
+        footBar.setBackground(new Color(245, 247, 250));
+        footBar.add(footP, BorderLayout.CENTER);
+        footBar.add(busyBar, BorderLayout.EAST);
+        root.add(footBar, BorderLayout.SOUTH);
 
         setVisible(true);
     }
@@ -141,8 +275,22 @@ public class HotelManagementSystem extends JFrame {
         grid.add(new JLabel("Room Number:"), gbc);
         roomCombo = new JComboBox<>();
         roomCombo.setFont(new Font("Segoe UI", Font.PLAIN, 14));
+        roomTypeCombo = new JComboBox<>(new String[]{ANY_TYPE});
+        roomTypeCombo.setFont(new Font("Segoe UI", Font.PLAIN, 12));
+        JButton autoAssignBtn = new JButton("Auto");
+        autoAssignBtn.setFocusPainted(false);
+        autoAssignBtn.setToolTipText("Pick the free room of this type that best fits around existing bookings");
+        autoAssignBtn.addActionListener(e -> autoAssignRoom());
+        JPanel roomRow = new JPanel(new BorderLayout(6, 0));
+        roomRow.setOpaque(false);
+        JPanel autoPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, 4, 0));
+        autoPanel.setOpaque(false);
+        autoPanel.add(roomTypeCombo);
+        autoPanel.add(autoAssignBtn);
+        roomRow.add(roomCombo, BorderLayout.CENTER);
+        roomRow.add(autoPanel, BorderLayout.EAST);
         gbc.gridx = 1; gbc.gridy = y++; gbc.weightx = 1.0;
-        grid.add(roomCombo, gbc);
+        grid.add(roomRow, gbc);
 
         // Contact
         gbc.gridx = 0; gbc.gridy = y; gbc.weightx = 0.0;
@@ -181,7 +329,7 @@ public class HotelManagementSystem extends JFrame {
         p.add(grid, BorderLayout.CENTER);
 
         // Buttons panel
-        JPanel buttons = new JPanel(new GridLayout(3, 2, 12, 12));
+        JPanel buttons = new JPanel(new GridLayout(4, 2, 12, 12));
         buttons.setBackground(new Color(245, 247, 250));
         reserveBtn = styledButton("Reserve", new Color(46, 204, 113));
         updateBtn  = styledButton("Update", new Color(241, 196, 15));
@@ -189,6 +337,8 @@ public class HotelManagementSystem extends JFrame {
         getRoomBtn = styledButton("Get Room No.", new Color(149, 165, 166));
         checkoutBtn = styledButton("Checkout", new Color(155, 89, 182));               // New
         showAvailableRoomsBtn = styledButton("Show Available Rooms", new Color(52, 73, 94)); // New
+        groupBookingBtn = styledButton("Group Booking", new Color(22, 160, 133));
+        reportBtn = styledButton("Export Report", new Color(41, 128, 185));
 
         buttons.add(reserveBtn);
         buttons.add(updateBtn);
@@ -196,6 +346,8 @@ public class HotelManagementSystem extends JFrame {
         buttons.add(getRoomBtn);
         buttons.add(checkoutBtn);
         buttons.add(showAvailableRoomsBtn);
+        buttons.add(groupBookingBtn);
+        buttons.add(reportBtn);
 
         p.add(buttons, BorderLayout.SOUTH);
 
@@ -206,6 +358,9 @@ public class HotelManagementSystem extends JFrame {
         getRoomBtn.addActionListener(e -> getRoomNumber());
         checkoutBtn.addActionListener(e -> checkoutReservation());
         showAvailableRoomsBtn.addActionListener(e -> showAvailableRooms());
+        groupBookingBtn.addActionListener(e ->
+                new GroupBookingDialog(this, catalog, availability, this::bookGroup).setVisible(true));
+        reportBtn.addActionListener(e -> exportReport());
 
         return p;
     }
@@ -218,13 +373,14 @@ public class HotelManagementSystem extends JFrame {
         JLabel ttitle = new JLabel("Reservations");
         ttitle.setFont(new Font("Segoe UI", Font.BOLD, 16));
         ttitle.setBorder(new EmptyBorder(8, 8, 8, 8));
-        p.add(ttitle, BorderLayout.NORTH);
+        JPanel top = new JPanel(new BorderLayout());
+        top.setOpaque(false);
+        top.add(ttitle, BorderLayout.NORTH);
+        top.add(createSearchBar(), BorderLayout.SOUTH);
+        p.add(top, BorderLayout.NORTH);
 
-        // Table model includes checkout_date & status
-        tableModel = new DefaultTableModel(
-                new Object[]{"ID", "Guest Name", "Room", "Contact", "Check-in", "Checkout", "Status"}, 0) {
-            @Override public boolean isCellEditable(int row, int column) { return false; }
-        };
+        // Paged model: rows are fetched from the DB as the table scrolls
+        tableModel = new ReservationTableModel(pool, db, e -> showError("Error loading reservations: " + e.getMessage()));
 
         reservationsTable = new JTable(tableModel);
         reservationsTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
@@ -238,37 +394,14 @@ public class HotelManagementSystem extends JFrame {
         reservationsTable.getSelectionModel().addListSelectionListener(e -> {
             if (!e.getValueIsAdjusting()) {
                 int r = reservationsTable.getSelectedRow();
-                if (r >= 0) {
-                    idField.setText(String.valueOf(tableModel.getValueAt(r, 0)));
-                    guestNameField.setText(String.valueOf(tableModel.getValueAt(r, 1)));
-                    Object roomObj = tableModel.getValueAt(r, 2);
-                    if (roomObj instanceof Integer) {
-                        roomCombo.setSelectedItem((Integer) roomObj);
-                    } else {
-                        try { roomCombo.setSelectedItem(Integer.parseInt(roomObj.toString())); } catch (Exception ignore) {}
-                    }
-                    contactField.setText(String.valueOf(tableModel.getValueAt(r, 3)));
-                    String inStr = String.valueOf(tableModel.getValueAt(r, 4));
-                    String outStr = String.valueOf(tableModel.getValueAt(r, 5));
-                    try {
-                        // Try full timestamp first
-                        Date inD = java.sql.Timestamp.valueOf(inStr);
-                        dateSpinner.setValue(inD);
-                    } catch (Exception ex1) {
-                        try {
-                            Date inD = new SimpleDateFormat("yyyy-MM-dd").parse(inStr);
-                            dateSpinner.setValue(inD);
-                        } catch (Exception ignore) {}
-                    }
-                    try {
-                        Date outD = java.sql.Timestamp.valueOf(outStr);
-                        checkOutSpinner.setValue(outD);
-                    } catch (Exception ex2) {
-                        try {
-                            Date outD = new SimpleDateFormat("yyyy-MM-dd").parse(outStr);
-                            checkOutSpinner.setValue(outD);
-                        } catch (Exception ignore) {}
-                    }
+                Reservation row = (r >= 0) ? tableModel.getRow(r) : null;
+                if (row != null) {
+                    idField.setText(String.valueOf(row.id));
+                    guestNameField.setText(row.guest);
+                    roomCombo.setSelectedItem(row.room);
+                    contactField.setText(row.contact);
+                    if (row.checkIn != null) dateSpinner.setValue(new Date(row.checkIn.getTime()));
+                    if (row.checkOut != null) checkOutSpinner.setValue(new Date(row.checkOut.getTime()));
                 }
             }
         });
@@ -281,6 +414,96 @@ public class HotelManagementSystem extends JFrame {
         return p;
     }
 
+    // Search bar: guest name prefix, contact prefix, room, stay dates (yyyy-MM-dd)
+    private JPanel createSearchBar() {
+        searchGuestField = new JTextField(10);
+        searchContactField = new JTextField(9);
+        searchRoomField = new JTextField(4);
+        searchFromField = new JTextField(7);
+        searchToField = new JTextField(7);
+        JButton clearBtn = new JButton("Clear");
+        clearBtn.setFocusPainted(false);
+
+        // Type-ahead: query once typing pauses; a newer search supersedes and cancels the older one
+        searchDebounce = new Timer(SEARCH_DEBOUNCE_MS, e -> loadReservationsToTable());
+        searchDebounce.setRepeats(false);
+        javax.swing.event.DocumentListener onType = new javax.swing.event.DocumentListener() {
+            public void insertUpdate(javax.swing.event.DocumentEvent e) { searchDebounce.restart(); }
+            public void removeUpdate(javax.swing.event.DocumentEvent e) { searchDebounce.restart(); }
+            public void changedUpdate(javax.swing.event.DocumentEvent e) { searchDebounce.restart(); }
+        };
+
+        JPanel bar = new JPanel(new FlowLayout(FlowLayout.LEFT, 6, 2));
+        bar.setOpaque(false);
+        Object[][] fields = {
+                {"Guest:", searchGuestField}, {"Contact:", searchContactField}, {"Room:", searchRoomField},
+                {"From:", searchFromField}, {"To:", searchToField}};
+        for (Object[] f : fields) {
+            JLabel l = new JLabel((String) f[0]);
+            l.setFont(new Font("Segoe UI", Font.PLAIN, 12));
+            JTextField t = (JTextField) f[1];
+            t.setFont(new Font("Segoe UI", Font.PLAIN, 12));
+            t.getDocument().addDocumentListener(onType);
+            bar.add(l);
+            bar.add(t);
+        }
+        searchFromField.setToolTipText("Stays overlapping this date onwards (yyyy-MM-dd)");
+        searchToField.setToolTipText("Stays starting before this date (yyyy-MM-dd)");
+        clearBtn.addActionListener(e -> {
+            for (Object[] f : fields) ((JTextField) f[1]).setText("");
+        });
+        bar.add(clearBtn);
+        return bar;
+    }
+
+    /**
+     * The filter for the current view and search bar, or null while an entry can't be parsed
+     * (the offending field is outlined red and the table keeps its previous rows).
+     */
+    private ReservationFilter currentFilter() {
+        boolean showCurrent = viewSelector != null && "Current Reservations".equals(viewSelector.getSelectedItem());
+        // The archive is only read when asked for; it holds stays ArchiveJob moved out of the live table
+        boolean showArchived = viewSelector != null && "Archived Reservations".equals(viewSelector.getSelectedItem());
+        if (searchGuestField == null) return ReservationFilter.ALL.withActiveOnly(showCurrent).withArchived(showArchived);
+
+        boolean ok = true;
+        Integer room = null;
+        String roomTxt = searchRoomField.getText().trim();
+        if (!roomTxt.isEmpty()) {
+            try {
+                room = Integer.parseInt(roomTxt);
+            } catch (NumberFormatException nfe) {
+                ok = false;
+            }
+        }
+        markInvalid(searchRoomField, room == null && !roomTxt.isEmpty());
+        Timestamp from = searchDate(searchFromField);
+        Timestamp to = searchDate(searchToField);
+        ok &= from != null || searchFromField.getText().isBlank();
+        ok &= to != null || searchToField.getText().isBlank();
+        if (!ok) return null;
+        return new ReservationFilter(showCurrent, searchGuestField.getText(), searchContactField.getText(), room, from, to)
+                .withArchived(showArchived);
+    }
+
+    private Timestamp searchDate(JTextField field) {
+        String txt = field.getText().trim();
+        Timestamp t = null;
+        if (!txt.isEmpty()) {
+            try {
+                t = Dates.parse(txt);
+            } catch (java.time.format.DateTimeParseException ignore) {
+                // left null; flagged below
+            }
+        }
+        markInvalid(field, t == null && !txt.isEmpty());
+        return t;
+    }
+
+    private static void markInvalid(JTextField field, boolean invalid) {
+        field.setBorder(invalid ? new LineBorder(new Color(192, 57, 43), 1) : UIManager.getBorder("TextField.border"));
+    }
+
     private JButton styledButton(String text, Color color) {
         JButton b = new JButton(text);
         b.setBackground(color);
@@ -292,27 +515,45 @@ public class HotelManagementSystem extends JFrame {
     }
 
     // ---------------- DB Operations ----------------
+    // The UI is one client of ReservationService. Calls run on the db executor; UI fields are
+    // read before submitting and dialogs are shown from the callbacks, back on the EDT.
 
     private void loadRoomsIntoCombo() {
-        SwingUtilities.invokeLater(() -> {
-            roomCombo.removeAllItems();
-            String sql = "SELECT room_number FROM rooms ORDER BY room_number";
-            try (Statement st = connection.createStatement();
-                 ResultSet rs = st.executeQuery(sql)) {
-                boolean any = false;
-                while (rs.next()) {
-                    roomCombo.addItem(rs.getInt("room_number"));
-                    any = true;
-                }
-                if (!any) {
-                    JOptionPane.showMessageDialog(this,
-                            "No rooms found in 'rooms' table. Please insert rooms.",
-                            "No rooms", JOptionPane.WARNING_MESSAGE);
-                }
-            } catch (SQLException e) {
-                showError("Error loading rooms: " + e.getMessage());
+        if (!opened) return; // openDatabase() loads them
+        db.submit("rooms", () -> {
+            service.loadCaches();
+            return catalog.roomNumbers();
+        }, rooms -> {
+            fillRoomCombo(rooms);
+            if (rooms.length == 0) {
+                JOptionPane.showMessageDialog(this,
+                        "No rooms found in 'rooms' table. Please insert rooms.",
+                        "No rooms", JOptionPane.WARNING_MESSAGE);
             }
-        });
+        }, e -> showError("Error loading rooms: " + e.getMessage()));
+    }
+
+    private void fillRoomCombo(int[] rooms) {
+        Object selected = roomCombo.getSelectedItem();
+        roomCombo.removeAllItems();
+        for (int r : rooms) roomCombo.addItem(r);
+        if (selected != null) roomCombo.setSelectedItem(selected);
+
+        Object type = roomTypeCombo.getSelectedItem();
+        roomTypeCombo.removeAllItems();
+        roomTypeCombo.addItem(ANY_TYPE);
+        for (String t : catalog.types()) roomTypeCombo.addItem(t);
+        if (type != null) roomTypeCombo.setSelectedItem(type);
+    }
+
+    // Best fit from the cached index, so it works offline too; Reserve still checks the room
+    private void autoAssignRoom() {
+        String type = ANY_TYPE.equals(roomTypeCombo.getSelectedItem()) ? null : (String) roomTypeCombo.getSelectedItem();
+        Timestamp in = new Timestamp(((Date) dateSpinner.getValue()).getTime());
+        Timestamp out = new Timestamp(((Date) checkOutSpinner.getValue()).getTime());
+        db.submit(() -> service.assignRoom(type, in, out),
+                room -> roomCombo.setSelectedItem(room),
+                e -> showFailure("Error assigning a room", e));
     }
 
     private void reserveRoom() {
@@ -322,94 +563,36 @@ public class HotelManagementSystem extends JFrame {
         Date checkIn = (Date) dateSpinner.getValue();
         Date checkOut = (Date) checkOutSpinner.getValue();
 
-        String inDateOnly = dateOnlyFormat.format(checkIn);
-        String outDateOnly = dateOnlyFormat.format(checkOut);
+        String inDateOnly = Dates.formatDate(checkIn);
+        String outDateOnly = Dates.formatDate(checkOut);
 
-        if (guest.isEmpty() || contact.isEmpty() || room == null) {
+        if (room == null) {
             showError("Please fill Guest name, contact and choose a room.");
             return;
         }
-        if (!checkOut.after(checkIn)) {
-            showError("Checkout date must be after Check-in date.");
-            return;
-        }
-
-        // Check overlapping booking for the room (only against ACTIVE reservations)
-        String overlapSql =
-                "SELECT reservation_id FROM reservations " +
-                "WHERE room_number = ? AND status = 'ACTIVE' " +
-                "AND (checkout_date > ? AND reservation_date < ?)"; // overlap condition
-        try (PreparedStatement ps = connection.prepareStatement(overlapSql)) {
-            ps.setTimestamp(1, new java.sql.Timestamp(checkIn.getTime())); // we will reset params right below, fix order:
-        } catch (SQLException ignore) {}
-
-        try (PreparedStatement ps = connection.prepareStatement(overlapSql)) {
-            ps.setInt(1, room);
-            ps.setTimestamp(2, new java.sql.Timestamp(checkIn.getTime()));
-            ps.setTimestamp(3, new java.sql.Timestamp(checkOut.getTime()));
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    showError("Room " + room + " is not available between " + inDateOnly + " and " + outDateOnly + ".");
-                    return;
-                }
-            }
-        } catch (SQLException e) {
-            showError("Error checking availability: " + e.getMessage());
-            return;
-        }
 
-        String insert = "INSERT INTO reservations (guest_name, room_number, contact_number, reservation_date, checkout_date, status) " +
-                        "VALUES (?, ?, ?, ?, ?, 'ACTIVE')";
-        try (PreparedStatement ps = connection.prepareStatement(insert)) {
-            ps.setString(1, guest);
-            ps.setInt(2, room);
-            ps.setString(3, contact);
-            ps.setTimestamp(4, new java.sql.Timestamp(checkIn.getTime()));
-            ps.setTimestamp(5, new java.sql.Timestamp(checkOut.getTime()));
-            int rows = ps.executeUpdate();
-            if (rows > 0) {
-                JOptionPane.showMessageDialog(this, "Reservation successful for room " + room + " from " + inDateOnly + " to " + outDateOnly + "!");
-                clearForm();
-                loadReservationsToTable();
+        Timestamp in = new Timestamp(checkIn.getTime());
+        Timestamp out = new Timestamp(checkOut.getTime());
+        reserveBtn.setEnabled(false);
+        db.submit(() -> service.reserve(guest, contact, room, in, out), row -> {
+            reserveBtn.setEnabled(true);
+            JOptionPane.showMessageDialog(this, "Reservation successful for room " + room + " from " + inDateOnly + " to " + outDateOnly + "!");
+            clearForm();
+            tableModel.upsert(row);
+        }, e -> {
+            reserveBtn.setEnabled(true);
+            if (OfflineJournal.isConnectivityFailure(e)) {
+                reserveOffline(guest, contact, room, in, out);
             } else {
-                showError("Failed to save reservation.");
+                showFailure("Error creating reservation", e);
             }
-        } catch (SQLException e) {
-            showError("Error creating reservation: " + e.getMessage());
-        }
+        });
     }
 
     private void loadReservationsToTable() {
-        SwingUtilities.invokeLater(() -> {
-            tableModel.setRowCount(0);
-
-            boolean showCurrent = viewSelector != null && "Current Reservations".equals(viewSelector.getSelectedItem());
-            String sql = "SELECT reservation_id, guest_name, room_number, contact_number, reservation_date, checkout_date, status " +
-                         "FROM reservations ";
-            if (showCurrent) {
-                sql += "WHERE status = 'ACTIVE' ";
-            }
-            sql += "ORDER BY reservation_date DESC";
-
-            try (Statement st = connection.createStatement();
-                 ResultSet rs = st.executeQuery(sql)) {
-                while (rs.next()) {
-                    int id = rs.getInt("reservation_id");
-                    String guest = rs.getString("guest_name");
-                    int room = rs.getInt("room_number");
-                    String contact = rs.getString("contact_number");
-                    Timestamp inTs = rs.getTimestamp("reservation_date");
-                    Timestamp outTs = rs.getTimestamp("checkout_date");
-                    String status = rs.getString("status");
-
-                    String inStr  = (inTs  != null) ? inTs.toString().replace(".0", "") : "";
-                    String outStr = (outTs != null) ? outTs.toString().replace(".0", "") : "";
-                    tableModel.addRow(new Object[]{id, guest, room, contact, inStr, outStr, status});
-                }
-            } catch (SQLException e) {
-                showError("Error loading reservations: " + e.getMessage());
-            }
-        });
+        if (!opened) return; // openDatabase() loads the first page
+        ReservationFilter filter = currentFilter();
+        if (filter != null) tableModel.reload(filter);
     }
 
     private void getRoomNumber() {
@@ -418,35 +601,25 @@ public class HotelManagementSystem extends JFrame {
             showError("Enter Reservation ID first.");
             return;
         }
+        int id;
         try {
-            int id = Integer.parseInt(idTxt);
-            String sql = "SELECT room_number, guest_name, reservation_date, checkout_date FROM reservations WHERE reservation_id = ?";
-            try (PreparedStatement ps = connection.prepareStatement(sql)) {
-                ps.setInt(1, id);
-                try (ResultSet rs = ps.executeQuery()) {
-                    if (rs.next()) {
-                        int room = rs.getInt("room_number");
-                        String guest = rs.getString("guest_name");
-                        Timestamp inTs = rs.getTimestamp("reservation_date");
-                        Timestamp outTs = rs.getTimestamp("checkout_date");
-                        String inStr = (inTs != null) ? inTs.toString().replace(".0", "") : "";
-                        String outStr = (outTs != null) ? outTs.toString().replace(".0", "") : "";
-                        JOptionPane.showMessageDialog(this,
-                                "Reservation ID: " + id +
-                                "\nGuest: " + guest +
-                                "\nRoom: " + room +
-                                "\nCheck-in: " + inStr +
-                                "\nCheckout: " + outStr);
-                    } else {
-                        showError("No reservation found for ID " + id);
-                    }
-                }
-            }
+            id = Integer.parseInt(idTxt);
         } catch (NumberFormatException nfe) {
             showError("Invalid Reservation ID.");
-        } catch (SQLException e) {
-            showError("Error fetching room: " + e.getMessage());
+            return;
         }
+        db.submit(() -> service.find(id), r -> {
+            if (r == null) {
+                showError("No reservation found for ID " + id);
+                return;
+            }
+            JOptionPane.showMessageDialog(this,
+                    "Reservation ID: " + id +
+                    "\nGuest: " + r.guest +
+                    "\nRoom: " + r.room +
+                    "\nCheck-in: " + Dates.format(r.checkIn) +
+                    "\nCheckout: " + Dates.format(r.checkOut));
+        }, e -> showError("Error fetching room: " + e.getMessage()));
     }
 
     private void updateReservation() {
@@ -455,63 +628,49 @@ public class HotelManagementSystem extends JFrame {
             showError("Enter Reservation ID to update.");
             return;
         }
+        int id;
         try {
-            int id = Integer.parseInt(idTxt);
-            String guest = guestNameField.getText().trim();
-            Integer room = (Integer) roomCombo.getSelectedItem();
-            String contact = contactField.getText().trim();
-            Date checkIn = (Date) dateSpinner.getValue();
-            Date checkOut = (Date) checkOutSpinner.getValue();
-
-            if (guest.isEmpty() || contact.isEmpty() || room == null) {
-                showError("Please fill Guest name, contact and choose a room.");
-                return;
-            }
-            if (!checkOut.after(checkIn)) {
-                showError("Checkout date must be after Check-in date.");
-                return;
-            }
-
-            // Prevent overlapping with other ACTIVE reservations
-            String checkSql =
-                    "SELECT reservation_id FROM reservations " +
-                    "WHERE room_number = ? AND status = 'ACTIVE' AND reservation_id <> ? " +
-                    "AND (checkout_date > ? AND reservation_date < ?)";
-            try (PreparedStatement ps = connection.prepareStatement(checkSql)) {
-                ps.setInt(1, room);
-                ps.setInt(2, id);
-                ps.setTimestamp(3, new java.sql.Timestamp(checkIn.getTime()));
-                ps.setTimestamp(4, new java.sql.Timestamp(checkOut.getTime()));
-                try (ResultSet rs = ps.executeQuery()) {
-                    if (rs.next()) {
-                        showError("Room " + room + " is already booked in the given date range.");
-                        return;
-                    }
-                }
-            }
-
-            String sql = "UPDATE reservations SET guest_name = ?, room_number = ?, contact_number = ?, reservation_date = ?, checkout_date = ? WHERE reservation_id = ?";
-            try (PreparedStatement ps = connection.prepareStatement(sql)) {
-                ps.setString(1, guest);
-                ps.setInt(2, room);
-                ps.setString(3, contact);
-                ps.setTimestamp(4, new java.sql.Timestamp(checkIn.getTime()));
-                ps.setTimestamp(5, new java.sql.Timestamp(checkOut.getTime()));
-                ps.setInt(6, id);
-                int rows = ps.executeUpdate();
-                if (rows > 0) {
-                    JOptionPane.showMessageDialog(this, "Reservation updated.");
-                    clearForm();
-                    loadReservationsToTable();
-                } else {
-                    showError("No reservation found with ID " + id);
-                }
-            }
+            id = Integer.parseInt(idTxt);
         } catch (NumberFormatException nfe) {
             showError("Invalid Reservation ID.");
-        } catch (SQLException e) {
-            showError("Error updating reservation: " + e.getMessage());
+            return;
         }
+        String guest = guestNameField.getText().trim();
+        Integer room = (Integer) roomCombo.getSelectedItem();
+        String contact = contactField.getText().trim();
+        Date checkIn = (Date) dateSpinner.getValue();
+        Date checkOut = (Date) checkOutSpinner.getValue();
+
+        if (room == null) {
+            showError("Please fill Guest name, contact and choose a room.");
+            return;
+        }
+
+        Timestamp in = new Timestamp(checkIn.getTime());
+        Timestamp out = new Timestamp(checkOut.getTime());
+        if (id < 0) {
+            // Booked offline and not placed yet: the change joins it in the journal
+            updateOffline(id, guest, contact, room, in, out);
+            return;
+        }
+        updateBtn.setEnabled(false);
+        db.submit(() -> service.update(id, guest, contact, room, in, out), row -> {
+            updateBtn.setEnabled(true);
+            if (row == null) {
+                showError("No reservation found with ID " + id);
+                return;
+            }
+            JOptionPane.showMessageDialog(this, "Reservation updated.");
+            clearForm();
+            tableModel.upsert(row);
+        }, e -> {
+            updateBtn.setEnabled(true);
+            if (OfflineJournal.isConnectivityFailure(e)) {
+                updateOffline(id, guest, contact, room, in, out);
+            } else {
+                showFailure("Error updating reservation", e);
+            }
+        });
     }
 
     private void deleteReservation() {
@@ -520,29 +679,37 @@ public class HotelManagementSystem extends JFrame {
             showError("Enter Reservation ID to delete.");
             return;
         }
+        int id;
         try {
-            int id = Integer.parseInt(idTxt);
-            int confirm = JOptionPane.showConfirmDialog(this,
-                    "Delete reservation " + id + " ? This cannot be undone.",
-                    "Confirm Delete", JOptionPane.YES_NO_OPTION);
-            if (confirm != JOptionPane.YES_OPTION) return;
-            String sql = "DELETE FROM reservations WHERE reservation_id = ?";
-            try (PreparedStatement ps = connection.prepareStatement(sql)) {
-                ps.setInt(1, id);
-                int rows = ps.executeUpdate();
-                if (rows > 0) {
-                    JOptionPane.showMessageDialog(this, "Reservation deleted.");
-                    clearForm();
-                    loadReservationsToTable();
-                } else {
-                    showError("No reservation found with ID " + id);
-                }
-            }
+            id = Integer.parseInt(idTxt);
         } catch (NumberFormatException nfe) {
             showError("Invalid Reservation ID.");
-        } catch (SQLException e) {
-            showError("Error deleting reservation: " + e.getMessage());
+            return;
+        }
+        int confirm = JOptionPane.showConfirmDialog(this,
+                "Delete reservation " + id + " ? This cannot be undone.",
+                "Confirm Delete", JOptionPane.YES_NO_OPTION);
+        if (confirm != JOptionPane.YES_OPTION) return;
+
+        if (id < 0) {
+            cancelOffline(id);
+            return;
         }
+        db.submit(() -> service.cancel(id), deleted -> {
+            if (deleted) {
+                JOptionPane.showMessageDialog(this, "Reservation deleted.");
+                clearForm();
+                tableModel.remove(id);
+            } else {
+                showError("No reservation found with ID " + id);
+            }
+        }, e -> {
+            if (OfflineJournal.isConnectivityFailure(e)) {
+                cancelOffline(id);
+            } else {
+                showError("Error deleting reservation: " + e.getMessage());
+            }
+        });
     }
 
     // ---------------- New Features ----------------
@@ -556,42 +723,27 @@ public class HotelManagementSystem extends JFrame {
             showError("Checkout date must be after check-in date.");
             return;
         }
-
-        String sql =
-                "SELECT r.room_number, r.room_type, r.price_per_night " +
-                "FROM rooms r " +
-                "WHERE r.room_number NOT IN ( " +
-                "  SELECT room_number FROM reservations " +
-                "  WHERE status = 'ACTIVE' AND (checkout_date > ? AND reservation_date < ?) " +
-                ") " +
-                "ORDER BY r.room_number";
-
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
-            ps.setTimestamp(1, new java.sql.Timestamp(checkIn.getTime()));
-            ps.setTimestamp(2, new java.sql.Timestamp(checkOut.getTime()));
-            try (ResultSet rs = ps.executeQuery()) {
-                StringBuilder sb = new StringBuilder("Available Rooms (")
-                        .append(dateOnlyFormat.format(checkIn))
-                        .append(" to ")
-                        .append(dateOnlyFormat.format(checkOut))
-                        .append(")\n\n");
-                boolean any = false;
-                while (rs.next()) {
-                    any = true;
-                    int roomNo = rs.getInt("room_number");
-                    String type = rs.getString("room_type");
-                    double price = rs.getDouble("price_per_night");
-                    sb.append("Room: ").append(roomNo)
-                      .append(" | Type: ").append(type)
-                      .append(" | Price/Night: ₹").append(String.format("%.2f", price))
-                      .append("\n");
-                }
-                if (!any) sb.append("(No rooms available for the selected dates)");
-                JOptionPane.showMessageDialog(this, sb.toString(), "Available Rooms", JOptionPane.INFORMATION_MESSAGE);
+        String header = "Available Rooms (" + Dates.formatDate(checkIn) + " to " + Dates.formatDate(checkOut) + ")\n\n";
+        Timestamp in = new Timestamp(checkIn.getTime());
+        Timestamp out = new Timestamp(checkOut.getTime());
+
+        db.submit(() -> service.availableRooms(in, out), free -> {
+            StringBuilder sb = new StringBuilder(header);
+            for (int roomNo : free) {
+                // Nightly rates from the rate calendar: a range when they vary over the stay
+                RateCalendar.Stay stay = service.stayRates(roomNo, in, out);
+                if (stay == null) continue;
+                sb.append("Room: ").append(roomNo)
+                  .append(" | Type: ").append(catalog.type(roomNo))
+                  .append(" | Price/Night: ₹").append(Bill.rupees(stay.minPaise));
+                if (stay.maxPaise != stay.minPaise) sb.append(" - ₹").append(Bill.rupees(stay.maxPaise));
+                sb.append(" | ").append(stay.nights).append(stay.nights == 1 ? " night" : " nights")
+                  .append(": ₹").append(Bill.rupees(stay.totalPaise))
+                  .append("\n");
             }
-        } catch (SQLException e) {
-            showError("Error fetching available rooms: " + e.getMessage());
-        }
+            if (free.length == 0) sb.append("(No rooms available for the selected dates)");
+            JOptionPane.showMessageDialog(this, sb.toString(), "Available Rooms", JOptionPane.INFORMATION_MESSAGE);
+        }, e -> showFailure("Error fetching available rooms", e));
     }
 
     // 2) Checkout with bill popup (18% GST) and mark as CHECKED_OUT
@@ -601,97 +753,320 @@ public class HotelManagementSystem extends JFrame {
             showError("Enter Reservation ID to checkout.");
             return;
         }
+        int id;
         try {
-            int id = Integer.parseInt(idTxt);
-
-            String sql =
-                    "SELECT r.guest_name, r.room_number, r.contact_number, r.reservation_date, r.checkout_date, r.status, rm.price_per_night " +
-                    "FROM reservations r " +
-                    "JOIN rooms rm ON r.room_number = rm.room_number " +
-                    "WHERE r.reservation_id = ?";
-
-            try (PreparedStatement ps = connection.prepareStatement(sql)) {
-                ps.setInt(1, id);
-                try (ResultSet rs = ps.executeQuery()) {
-                    if (!rs.next()) {
-                        showError("No reservation found for ID " + id);
-                        return;
-                    }
-                    String status = rs.getString("status");
-                    if (!"ACTIVE".equalsIgnoreCase(status)) {
-                        showError("Reservation " + id + " is not ACTIVE (current status: " + status + ").");
-                        return;
-                    }
+            id = Integer.parseInt(idTxt);
+        } catch (NumberFormatException nfe) {
+            showError("Invalid Reservation ID.");
+            return;
+        }
 
-                    String guest = rs.getString("guest_name");
-                    String contact = rs.getString("contact_number");
-                    int room = rs.getInt("room_number");
-                    Timestamp inTs = rs.getTimestamp("reservation_date");
-                    Timestamp outTs = rs.getTimestamp("checkout_date");
-                    double price = rs.getDouble("price_per_night");
+        if (id < 0) {
+            checkoutOffline(id);
+            return;
+        }
 
-                    if (inTs == null || outTs == null || !outTs.after(inTs)) {
-                        showError("Invalid check-in/checkout dates for this reservation.");
-                        return;
-                    }
+        // Step 1 (background): build the bill (a checked-out reservation shows its stored invoice)
+        db.submit(() -> service.bill(id), bill -> {
+            if (bill.isIssued()) {
+                JOptionPane.showMessageDialog(this, bill.toText(), "Invoice (already checked out)", JOptionPane.INFORMATION_MESSAGE);
+                return;
+            }
+            int confirm = JOptionPane.showConfirmDialog(this, bill.toText() + "\n\nConfirm checkout?",
+                    "Checkout", JOptionPane.YES_NO_OPTION);
+            if (confirm != JOptionPane.YES_OPTION) return;
+
+            // Step 2 (background): mark as checked out and store the invoice
+            db.submit(() -> service.checkout(id), done -> {
+                JOptionPane.showMessageDialog(this, "Checkout successful! Invoice #" + done.invoice.invoiceNo + " saved.");
+                clearForm();
+                tableModel.upsert(done.row);
+            }, e -> showFailure("Error during checkout", e));
+        }, e -> {
+            if (OfflineJournal.isConnectivityFailure(e)) {
+                checkoutOffline(id);
+            } else {
+                showFailure("Error during checkout", e);
+            }
+        });
+    }
+
+    // 4) Occupancy / revenue report (per day and room type) for a date range, saved as CSV
+    private void exportReport() {
+        LocalDate today = LocalDate.now();
+        JTextField fromField = new JTextField(today.minusYears(1).withDayOfMonth(1).toString(), 10);
+        JTextField toField = new JTextField(today.withDayOfMonth(1).toString(), 10);
+        JPanel form = new JPanel(new GridLayout(2, 2, 6, 6));
+        form.add(new JLabel("From (yyyy-MM-dd):"));
+        form.add(fromField);
+        form.add(new JLabel("To, exclusive (yyyy-MM-dd):"));
+        form.add(toField);
+        if (JOptionPane.showConfirmDialog(this, form, "Occupancy & Revenue Report", JOptionPane.OK_CANCEL_OPTION)
+                != JOptionPane.OK_OPTION) return;
+
+        LocalDate from, to;
+        try {
+            from = LocalDate.parse(fromField.getText().trim(), Dates.DATE);
+            to = LocalDate.parse(toField.getText().trim(), Dates.DATE);
+        } catch (java.time.format.DateTimeParseException ex) {
+            showError("Invalid date: " + ex.getParsedString());
+            return;
+        }
+        JFileChooser chooser = new JFileChooser();
+        chooser.setSelectedFile(new java.io.File("report_" + from + "_" + to + ".csv"));
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        java.io.File file = chooser.getSelectedFile();
+
+        reportBtn.setEnabled(false);
+        db.submit(() -> {
+            ReportEngine.Report report = reports.run(from, to);
+            try (java.io.Writer w = java.nio.file.Files.newBufferedWriter(file.toPath(), java.nio.charset.StandardCharsets.UTF_8)) {
+                report.writeCsv(w);
+            }
+            return report.days;
+        }, days -> {
+            reportBtn.setEnabled(true);
+            JOptionPane.showMessageDialog(this, "Report for " + days + " day(s) saved to " + file.getAbsolutePath());
+        }, e -> {
+            reportBtn.setEnabled(true);
+            showFailure("Error building report", e);
+        });
+    }
+
+    // 3) Group booking: all entries checked in one pass and inserted in one batch, all or nothing
+    private void bookGroup(GroupBookingDialog dialog, java.util.List<GroupBooking.Entry> entries) {
+        db.submit(() -> service.bookGroup(entries), result -> {
+            if (!result.ok()) {
+                dialog.bookingFailed();
+                refreshCaches(); // the index missed bookings from another desk
+                GroupBookingDialog.showProblems(dialog, result.conflicts);
+                return;
+            }
+            dialog.dispose();
+            JOptionPane.showMessageDialog(this, "Group booking successful: " + entries.size() + " reservation(s) created.");
+            db.submit(() -> service.findAll(result.ids),
+                    rows -> rows.forEach(tableModel::upsert),
+                    e -> loadReservationsToTable());
+        }, e -> {
+            dialog.bookingFailed();
+            if (ReservationService.isLockTimeout(e)) {
+                showError("Some of these rooms are being booked at another desk right now. Please try again.");
+            } else {
+                showError("Error creating group booking: " + e.getMessage());
+            }
+        });
+    }
+
+    // ---------------- Offline mode ----------------
+    // When MySQL can't be reached, bookings, changes, checkouts and deletions are checked against
+    // the in-memory availability index, fsync'd to the journal (on journalIo, one at a time, so two
+    // offline bookings can't both pass the check for the same room) and shown as PENDING rows; the
+    // replayer applies them in order once the connection is back.
+
+    private void reserveOffline(String guest, String contact, int room, Timestamp in, Timestamp out) {
+        journalIo.submit(() -> {
+            service.precheck(-1, guest, contact, room, in, out);
+            OfflineJournal.Entry e = journal.append(OfflineJournal.Op.RESERVE, java.util.UUID.randomUUID().toString(), 0,
+                    guest, contact, room, in, out);
+            availability.put(e.offlineId(), room, in.getTime(), out.getTime());
+            return e;
+        }, e -> {
+            tableModel.upsert(new Reservation(e.offlineId(), guest, room, contact, in, out, "PENDING"));
+            clearForm();
+            updateOfflineLabel();
+            JOptionPane.showMessageDialog(this, "Database unreachable: room " + room + " is held offline as reservation " +
+                    e.offlineId() + ".\nIt will be saved automatically when the connection returns.");
+            replaySoon();
+        }, ex -> showFailure("Error saving booking offline", ex));
+    }
+
+    private void updateOffline(int id, String guest, String contact, int room, Timestamp in, Timestamp out) {
+        OfflineJournal.Entry booking = null;
+        if (id < 0) {
+            booking = journal.pendingReserve(id);
+            if (booking == null) {
+                showError("No reservation found with ID " + id);
+                return;
+            }
+        }
+        OfflineJournal.Entry target = booking;
+        journalIo.submit(() -> {
+            service.precheck(id, guest, contact, room, in, out);
+            journal.append(OfflineJournal.Op.UPDATE, target == null ? null : target.ref, target == null ? id : 0,
+                    guest, contact, room, in, out);
+            availability.update(id, room, in.getTime(), out.getTime());
+            return null;
+        }, done -> {
+            tableModel.upsert(new Reservation(id, guest, room, contact, in, out, "PENDING"));
+            clearForm();
+            updateOfflineLabel();
+            JOptionPane.showMessageDialog(this, "Database unreachable: the change to reservation " + id +
+                    " is saved offline and will be applied when the connection returns.");
+            replaySoon();
+        }, ex -> showFailure("Error saving change offline", ex));
+    }
 
-                    long nights = computeNights(inTs, outTs);
-                    if (nights <= 0) nights = 1;
-
-                    double subtotal = price * nights;
-                    double gst = subtotal * 0.18;
-                    double total = subtotal + gst;
-
-                    String bill =
-                            "Checkout Summary\n" +
-                            "----------------\n" +
-                            "Reservation ID : " + id + "\n" +
-                            "Guest          : " + guest + "\n" +
-                            "Contact        : " + contact + "\n" +
-                            "Room           : " + room + "\n" +
-                            "Check-in       : " + inTs.toString().replace(".0", "") + "\n" +
-                            "Checkout       : " + outTs.toString().replace(".0", "") + "\n" +
-                            "Nights         : " + nights + "\n" +
-                            "Price/Night    : ₹" + String.format("%.2f", price) + "\n" +
-                            "Subtotal       : ₹" + String.format("%.2f", subtotal) + "\n" +
-                            "GST (18%)      : ₹" + String.format("%.2f", gst) + "\n" +
-                            "Grand Total    : ₹" + String.format("%.2f", total);
-
-                    int confirm = JOptionPane.showConfirmDialog(this, bill + "\n\nConfirm checkout?",
-                            "Checkout", JOptionPane.YES_NO_OPTION);
-                    if (confirm == JOptionPane.YES_OPTION) {
-                        try (PreparedStatement upd = connection.prepareStatement(
-                                "UPDATE reservations SET status = 'CHECKED_OUT' WHERE reservation_id = ?")) {
-                            upd.setInt(1, id);
-                            upd.executeUpdate();
-                            JOptionPane.showMessageDialog(this, "Checkout successful!");
-                            clearForm();
-                            loadReservationsToTable();
-                        }
+    // Priced from the cached catalog; the invoice itself is issued when the checkout is replayed
+    private void checkoutOffline(int id) {
+        Reservation row = tableModel.findLoaded(id);
+        if (row == null) {
+            showError("Database unreachable and reservation " + id + " is not loaded here; it can't be checked out offline.");
+            return;
+        }
+        if (!row.isActive() && !"PENDING".equals(row.status)) {
+            showError("Reservation " + id + " is not ACTIVE (current status: " + row.status + ").");
+            return;
+        }
+        Bill estimate = service.estimate(row);
+        if (estimate == null) {
+            showError("Room " + row.room + " not found in rooms table.");
+            return;
+        }
+        int confirm = JOptionPane.showConfirmDialog(this, "Database unreachable - provisional bill.\n\n" + estimate.toText() +
+                "\n\nThe invoice is issued when the connection returns. Confirm checkout?", "Checkout (offline)", JOptionPane.YES_NO_OPTION);
+        if (confirm != JOptionPane.YES_OPTION) return;
+
+        OfflineJournal.Entry booking = id < 0 ? journal.pendingReserve(id) : null;
+        journalIo.submit(() -> {
+            journal.append(OfflineJournal.Op.CHECKOUT, booking == null ? null : booking.ref, booking == null ? id : 0,
+                    row.guest, row.contact, row.room, row.checkIn, row.checkOut);
+            availability.remove(id);
+            return null;
+        }, done -> {
+            tableModel.upsert(new Reservation(id, row.guest, row.room, row.contact, row.checkIn, row.checkOut, "PENDING_CHECKOUT"));
+            clearForm();
+            updateOfflineLabel();
+            replaySoon();
+        }, ex -> showError("Error saving checkout offline: " + ex.getMessage()));
+    }
+
+    // A booking made offline and still pending is withdrawn from the journal when it is replayed;
+    // anything else is deleted once the connection returns
+    private void cancelOffline(int id) {
+        OfflineJournal.Entry booking = null;
+        if (id < 0) {
+            booking = journal.pendingReserve(id);
+            if (booking == null) {
+                showError("No reservation found with ID " + id);
+                return;
+            }
+        }
+        Reservation row = booking == null ? tableModel.findLoaded(id) : null;
+        OfflineJournal.Entry target = booking;
+        journalIo.submit(() -> {
+            if (target != null) {
+                journal.append(OfflineJournal.Op.CANCEL, target.ref, 0, target.guest, target.contact, target.room,
+                        target.checkIn, target.checkOut);
+            } else if (row != null) {
+                journal.append(OfflineJournal.Op.CANCEL, null, id, row.guest, row.contact, row.room, row.checkIn, row.checkOut);
+            } else {
+                journal.append(OfflineJournal.Op.CANCEL, null, id, null, null, 0, null, null);
+            }
+            availability.remove(id);
+            return null;
+        }, done -> {
+            tableModel.remove(id);
+            clearForm();
+            updateOfflineLabel();
+            JOptionPane.showMessageDialog(this, target != null
+                    ? "Offline reservation " + id + " cancelled; it will not be saved."
+                    : "Database unreachable: reservation " + id + " will be deleted when the connection returns.");
+            replaySoon();
+        }, ex -> showError("Error saving deletion offline: " + ex.getMessage()));
+    }
+
+    // Until the database is open the replayer isn't running; it starts with a round straight away
+    private void replaySoon() {
+        if (replayer != null) replayer.replaySoon();
+    }
+
+    private void startReplayer() {
+        replayer = new JournalReplayer(journal, service, new JournalReplayer.Listener() {
+            @Override public void replayed(OfflineJournal.Entry e, Reservation row) {
+                SwingUtilities.invokeLater(() -> {
+                    if (e.op == OfflineJournal.Op.RESERVE) tableModel.remove(e.offlineId());
+                    // row is null for an entry withdrawn before it reached the database
+                    if (row != null && e.op == OfflineJournal.Op.CANCEL) {
+                        tableModel.remove(row.id);
+                    } else if (row != null) {
+                        tableModel.upsert(row);
                     }
+                    updateOfflineLabel();
+                });
+            }
+
+            @Override public void conflict(OfflineJournal.Entry e, String reason) {
+                if (e.op == OfflineJournal.Op.RESERVE) availability.remove(e.offlineId());
+                SwingUtilities.invokeLater(() -> {
+                    updateOfflineLabel();
+                    refreshCaches();
+                    loadReservationsToTable(); // drop placeholders and rows the desk changed offline
+                    JOptionPane.showMessageDialog(HotelManagementSystem.this,
+                            "A change saved while offline could not be applied:\n\n" + e.describe() + "\n\n" + reason,
+                            "Offline change rejected", JOptionPane.WARNING_MESSAGE);
+                });
+            }
+        });
+        replayer.start(JOURNAL_REPLAY_MS);
+    }
+
+    /** Puts journaled, not yet replayed changes back into a freshly loaded availability index. */
+    private void reapplyJournal() {
+        java.util.Map<String, Integer> offlineIds = new java.util.HashMap<>();
+        for (OfflineJournal.Entry e : journal.pending()) {
+            switch (e.op) {
+                case RESERVE:
+                    offlineIds.put(e.ref, e.offlineId());
+                    availability.put(e.offlineId(), e.room, e.checkIn.getTime(), e.checkOut.getTime());
+                    break;
+                case UPDATE: {
+                    Integer id = e.reservationId > 0 ? Integer.valueOf(e.reservationId) : offlineIds.get(e.ref);
+                    if (id != null) availability.update(id, e.room, e.checkIn.getTime(), e.checkOut.getTime());
+                    break;
+                }
+                case CHECKOUT:
+                case CANCEL: {
+                    Integer id = e.reservationId > 0 ? Integer.valueOf(e.reservationId) : offlineIds.get(e.ref);
+                    if (id != null) availability.remove(id);
+                    break;
                 }
             }
-        } catch (NumberFormatException nfe) {
-            showError("Invalid Reservation ID.");
-        } catch (SQLException e) {
-            showError("Error during checkout: " + e.getMessage());
         }
     }
 
+    private void updateOfflineLabel() {
+        int n = journal.pendingCount();
+        String pending = n == 0 ? "" : n + " offline change(s) waiting for the database";
+        String text = dbStatus.isEmpty() ? pending : pending.isEmpty() ? dbStatus : dbStatus + " - " + pending;
+        offlineLabel.setText(text);
+        offlineLabel.setVisible(!text.isEmpty());
+    }
+
+
     // ---------------- Helpers ----------------
 
-    private long computeNights(Timestamp checkIn, Timestamp checkOut) {
-        // Truncate to date (midnight) to avoid partial-day confusion
-        try {
-            Date inDate = dateOnlyFormat.parse(dateOnlyFormat.format(checkIn));
-            Date outDate = dateOnlyFormat.parse(dateOnlyFormat.format(checkOut));
-            long diffMs = outDate.getTime() - inDate.getTime();
-            long nights = diffMs / (24L * 60 * 60 * 1000);
-            return Math.max(nights, 1);
-        } catch (Exception e) {
-            long diffMs = checkOut.getTime() - checkIn.getTime();
-            long nights = (long) Math.ceil(diffMs / (24.0 * 60 * 60 * 1000));
-            return Math.max(nights, 1);
+    private void refreshCaches() {
+        db.submit("availability", () -> {
+            boolean roomsChanged = service.refreshCaches();
+            snapshot.save(catalog, availability); // before the journal goes back in: the snapshot holds database state only
+            reapplyJournal(); // the reload only knows what is in the database
+            return roomsChanged;
+        }, roomsChanged -> {
+            if (roomsChanged) fillRoomCombo(catalog.roomNumbers());
+        }, e -> { /* keep the previous snapshot; the DB checks still guard every write */ });
+    }
+
+    /** Service errors carry a message meant for the user; anything else gets context. */
+    private void showFailure(String context, Exception e) {
+        if (e instanceof RoomConflictException) {
+            refreshCaches(); // our index missed a booking from another desk
+            showError(e.getMessage());
+        } else if (e instanceof IllegalArgumentException || e instanceof IllegalStateException) {
+            showError(e.getMessage());
+        } else if (ReservationService.isLockTimeout(e)) {
+            showError("This room is being booked at another desk right now. Please try again.");
+        } else {
+            showError(context + ": " + e.getMessage());
         }
     }
 
@@ -703,6 +1078,11 @@ public class HotelManagementSystem extends JFrame {
         checkOutSpinner.setValue(new Date(System.currentTimeMillis() + 24L*60*60*1000));
     }
 
+    private void setBusy(boolean busy) {
+        if (busyBar != null) busyBar.setVisible(busy);
+        setCursor(busy ? Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR) : Cursor.getDefaultCursor());
+    }
+
     private void showError(String msg) {
         JOptionPane.showMessageDialog(this, msg, "Error", JOptionPane.ERROR_MESSAGE);
     }
@@ -0,0 +1,118 @@
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Statement;
+import java.util.Arrays;
+
+/**
+ * Times the execute calls of one JDBC statement and remembers its bind values for the slow-query
+ * log. Handed out by {@link ConnectionPool} in place of the driver's statement.
+ *
+ * The histogram label is the statement's leading SQL comment if it has one (the hot queries
+ * carry e.g. "overlapCheck" that way), otherwise the start of the SQL text.
+ */
+final class InstrumentedStatement implements InvocationHandler {
+
+    private static final int LABEL_CHARS = 60;
+
+    private final Statement raw;
+    private final String sql;                // null for a plain Statement until it executes
+    private final String label;
+    private final Metrics metrics;
+    private Object[] params = new Object[8]; // 1-based bind values of the current execution
+    private int batched;
+
+    private InstrumentedStatement(Statement raw, String sql, Metrics metrics) {
+        this.raw = raw;
+        this.sql = sql;
+        this.label = sql == null ? null : label(sql);
+        this.metrics = metrics;
+    }
+
+    /** {@code type} is the interface the connection method returned (Statement, PreparedStatement or CallableStatement). */
+    static Statement wrap(Statement raw, String sql, Class<?> type, Metrics metrics) {
+        return (Statement) Proxy.newProxyInstance(InstrumentedStatement.class.getClassLoader(), new Class<?>[]{type},
+                new InstrumentedStatement(raw, sql, metrics));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        String name = method.getName();
+        if (name.startsWith("execute")) return execute(method, args);
+        switch (name) {
+            case "equals": return proxy == args[0];
+            case "hashCode": return System.identityHashCode(proxy);
+            case "toString": return "Instrumented" + raw;
+            case "clearParameters": Arrays.fill(params, null); break;
+            case "addBatch": batched++; break;
+            case "clearBatch": batched = 0; break;
+            default:
+                // setInt(1, 5), setString(2, "x"), setNull(3, Types.INTEGER), ...
+                if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                    bind((Integer) args[0], name.equals("setNull") ? "NULL" : args[1]);
+                }
+        }
+        return forward(method, args);
+    }
+
+    private Object execute(Method method, Object[] args) throws Throwable {
+        String text = (args != null && args.length > 0 && args[0] instanceof String) ? (String) args[0] : sql;
+        if (text == null) text = "";
+        boolean failed = true;
+        long t0 = System.nanoTime();
+        try {
+            Object result = forward(method, args);
+            failed = false;
+            return result;
+        } finally {
+            long nanos = System.nanoTime() - t0;
+            String name = (text == sql) ? label : label(text);
+            metrics.record(name, nanos);
+            if (failed) metrics.increment("sql.errors");
+            boolean batch = method.getName().equals("executeBatch");
+            if (Metrics.isSlowSql(nanos)) metrics.slowSql(name, nanos, text, params(batch ? "batch of " + batched : ""));
+            if (batch) batched = 0;
+        }
+    }
+
+    private Object forward(Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(raw, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private void bind(int index, Object value) {
+        if (index < 1) return;
+        if (index >= params.length) params = Arrays.copyOf(params, Math.max(index + 1, params.length * 2));
+        params[index] = value;
+    }
+
+    private String params(String prefix) {
+        StringBuilder sb = new StringBuilder(prefix);
+        for (int i = 1; i < params.length; i++) {
+            if (params[i] == null) continue;
+            if (sb.length() > 0) sb.append(", ");
+            Object v = params[i];
+            sb.append(i).append('=');
+            if (v instanceof String) sb.append('\'').append(v).append('\''); else sb.append(v);
+        }
+        return sb.toString();
+    }
+
+    static String label(String sql) {
+        String s = sql.trim();
+        if (s.startsWith("/*")) {
+            int end = s.indexOf("*/");
+            if (end > 0) return "sql:" + s.substring(2, end).trim();
+        }
+        s = s.replaceAll("\\s+", " ");
+        return "sql:" + (s.length() > LABEL_CHARS ? s.substring(0, LABEL_CHARS) : s);
+    }
+
+    static boolean isStatementFactory(String methodName) {
+        return methodName.equals("prepareStatement") || methodName.equals("prepareCall") || methodName.equals("createStatement");
+    }
+}
@@ -0,0 +1,154 @@
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Applies {@link OfflineJournal} entries to the database once it is reachable again.
+ *
+ * Entries are replayed in order on a single background thread through {@link ReservationService},
+ * so they get the same locking and overlap checks as live bookings. Replay is idempotent: a
+ * booking is matched by its client reference, an update just writes the same values again, and a
+ * checkout that already happened or a deletion of a row already gone is skipped. A booking made
+ * and deleted while offline is dropped together with its changes without reaching the database. An entry the database rejects (the room was booked
+ * at another desk meanwhile, the reservation was checked out or deleted) is reported as a
+ * conflict and dropped; a connection failure stops the round and it is retried later.
+ */
+public class JournalReplayer {
+
+    /** Called on the replayer thread. */
+    public interface Listener {
+        /** {@code row} as stored (as deleted, for CANCEL); null if the entry was dropped or the row was already gone. */
+        void replayed(OfflineJournal.Entry entry, Reservation row);
+        void conflict(OfflineJournal.Entry entry, String reason);
+    }
+
+    private final OfflineJournal journal;
+    private final ReservationService service;
+    private final Listener listener;
+    private final ScheduledExecutorService thread = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "journal-replay");
+        t.setDaemon(true);
+        return t;
+    });
+    // client ref -> reservation id, for entries that target a booking made offline
+    private final Map<String, Integer> placed = new HashMap<>();
+
+    public JournalReplayer(OfflineJournal journal, ReservationService service, Listener listener) {
+        this.journal = journal;
+        this.service = service;
+        this.listener = listener;
+    }
+
+    public void start(long periodMs) {
+        thread.scheduleWithFixedDelay(this::replayQuietly, 0, periodMs, TimeUnit.MILLISECONDS);
+    }
+
+    /** Asks for a replay round as soon as possible (e.g. right after something was journaled). */
+    public void replaySoon() {
+        thread.execute(this::replayQuietly);
+    }
+
+    public void stop() {
+        thread.shutdownNow();
+    }
+
+    private void replayQuietly() {
+        try {
+            replay();
+        } catch (SQLException | IOException e) {
+            // Still offline (or the journal couldn't be written); the next round tries again
+        }
+    }
+
+    private void replay() throws SQLException, IOException {
+        List<OfflineJournal.Entry> pending = journal.pending();
+        // Offline bookings deleted before they were placed: nothing of them needs the database
+        Set<String> unplaced = new HashSet<>();
+        Set<String> withdrawn = new HashSet<>();
+        for (OfflineJournal.Entry e : pending) {
+            if (e.op == OfflineJournal.Op.RESERVE) unplaced.add(e.ref);
+            if (e.op == OfflineJournal.Op.CANCEL && e.reservationId == 0 && unplaced.contains(e.ref)) withdrawn.add(e.ref);
+        }
+        for (OfflineJournal.Entry e : pending) {
+            if (e.reservationId == 0 && withdrawn.contains(e.ref)) {
+                journal.markDone(e.seq);
+                listener.replayed(e, null);
+                continue;
+            }
+            Reservation row;
+            try {
+                row = apply(e);
+            } catch (RoomConflictException | IllegalArgumentException | IllegalStateException rejected) {
+                journal.markDone(e.seq);
+                listener.conflict(e, rejected.getMessage());
+                continue;
+            } catch (SQLException ex) {
+                if (OfflineJournal.isConnectivityFailure(ex)) throw ex;
+                journal.markDone(e.seq);
+                listener.conflict(e, ex.getMessage());
+                continue;
+            }
+            journal.markDone(e.seq);
+            listener.replayed(e, row);
+        }
+    }
+
+    private Reservation apply(OfflineJournal.Entry e) throws SQLException {
+        switch (e.op) {
+            case RESERVE: {
+                // Its placeholder in the availability index would otherwise clash with itself
+                service.availability().remove(e.offlineId());
+                Reservation r;
+                try {
+                    r = service.reserve(e.guest, e.contact, e.room, e.checkIn, e.checkOut, e.ref);
+                } catch (SQLException ex) {
+                    if (OfflineJournal.isConnectivityFailure(ex)) {
+                        service.availability().put(e.offlineId(), e.room, e.checkIn.getTime(), e.checkOut.getTime());
+                    }
+                    throw ex;
+                }
+                placed.put(e.ref, r.id);
+                return r;
+            }
+            case UPDATE: {
+                Reservation r = service.update(target(e), e.guest, e.contact, e.room, e.checkIn, e.checkOut);
+                if (r == null) throw new IllegalArgumentException("Reservation no longer exists.");
+                return r;
+            }
+            case CHECKOUT: {
+                int id = target(e);
+                Reservation now = service.find(id);
+                if (now == null) throw new IllegalArgumentException("Reservation no longer exists.");
+                if (!now.isActive()) return now; // already checked out, e.g. replayed twice
+                return service.checkout(id).row;
+            }
+            case CANCEL: {
+                int id = target(e);
+                Reservation now = service.find(id);
+                if (now != null) service.cancel(id); // else deleted already, e.g. replayed twice
+                return now;
+            }
+            default:
+                throw new IllegalStateException("Unknown journal operation " + e.op);
+        }
+    }
+
+    /** The database id an UPDATE/CHECKOUT/CANCEL entry refers to. */
+    private int target(OfflineJournal.Entry e) throws SQLException {
+        if (e.reservationId > 0) return e.reservationId;
+        Integer id = placed.get(e.ref);
+        if (id == null) {
+            Reservation r = service.findByClientRef(e.ref);
+            if (r == null) throw new IllegalStateException("The offline booking it changes was never placed.");
+            id = r.id;
+        }
+        return id;
+    }
+}
@@ -0,0 +1,302 @@
+import com.sun.net.httpserver.HttpServer;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+import java.awt.AWTEvent;
+import java.awt.EventQueue;
+import java.awt.Toolkit;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Process-wide latency histograms, counters and gauges for the hot paths.
+ *
+ * Every JDBC statement from the pool is timed under a label (see {@link InstrumentedStatement}),
+ * service operations and background tasks under their names, and every EDT event dispatch under
+ * {@code edt.dispatch}. Statements slower than {@code -Dhotel.metrics.slowQueryMs} (default 250)
+ * and EDT events slower than {@code -Dhotel.metrics.slowEdtMs} (default 100) are logged to stderr
+ * with their SQL and bind values / event.
+ *
+ * Read the numbers over JMX ({@code hotel:type=Metrics}) or as text from {@code /metrics}: on the
+ * API port, or on 127.0.0.1:{@code -Dhotel.metrics.port} for the desk app. Histograms are
+ * HdrHistogram-style (log-linear buckets, under 2% error) so recording is a few atomic adds
+ * and no samples are kept. {@code -Dhotel.metrics=false} leaves JDBC calls unwrapped.
+ */
+public final class Metrics {
+
+    static final boolean ENABLED = !"false".equals(System.getProperty("hotel.metrics"));
+    private static final long SLOW_SQL_NANOS = Long.getLong("hotel.metrics.slowQueryMs", 250) * 1_000_000;
+    private static final long SLOW_EDT_NANOS = Long.getLong("hotel.metrics.slowEdtMs", 100) * 1_000_000;
+    // Ad-hoc SQL (IN lists of varying length) must not grow the registry without bound
+    private static final int MAX_HISTOGRAMS = 500;
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private static final Metrics SHARED = new Metrics();
+    static {
+        SHARED.registerMBean();
+    }
+
+    /** Latency distribution in microseconds. */
+    static final class LatencyHistogram {
+        private static final int SUB_BITS = 7;
+        private static final int HALF = 1 << (SUB_BITS - 1);
+        private static final long MAX_MICROS = (1L << 41) - 1; // ~25 days
+        private static final int BUCKETS = index(MAX_MICROS) + 1;
+
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+
+        void record(long micros) {
+            long v = Math.min(Math.max(micros, 0), MAX_MICROS);
+            counts.incrementAndGet(index(v));
+            count.increment();
+            sum.add(v);
+            max.accumulateAndGet(v, Math::max);
+        }
+
+        long count() { return count.sum(); }
+        long sum() { return sum.sum(); }
+        long max() { return max.get(); }
+
+        /** Smallest recorded value (to bucket precision) that {@code q} of all values are at or below. */
+        long quantile(double q) {
+            long n = count();
+            if (n == 0) return 0;
+            long rank = Math.max(1, (long) Math.ceil(q * n));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts.get(i);
+                if (seen >= rank) return Math.min(highestEquivalent(i), max());
+            }
+            return max();
+        }
+
+        // Values below 2^SUB_BITS get a bucket each; above, each power of two is split into HALF buckets
+        static int index(long v) {
+            int shift = Math.max(0, 63 - Long.numberOfLeadingZeros(v) - SUB_BITS + 1);
+            return shift * HALF + (int) (v >>> shift);
+        }
+
+        static long highestEquivalent(int index) {
+            int shift = index < 2 * HALF ? 0 : index / HALF - 1;
+            long lower = (long) (index - shift * HALF) << shift;
+            return lower + (1L << shift) - 1;
+        }
+    }
+
+    private final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+
+    /** The registry the pool, executors and service report to. */
+    public static Metrics shared() {
+        return SHARED;
+    }
+
+    public LatencyHistogram histogram(String name) {
+        LatencyHistogram h = histograms.get(name);
+        if (h != null) return h;
+        if (histograms.size() >= MAX_HISTOGRAMS) name = "other";
+        return histograms.computeIfAbsent(name, k -> new LatencyHistogram());
+    }
+
+    public void record(String name, long nanos) {
+        histogram(name).record(nanos / 1_000);
+    }
+
+    public void increment(String name) {
+        counters.computeIfAbsent(name, k -> new LongAdder()).increment();
+    }
+
+    public void gauge(String name, LongSupplier value) {
+        gauges.put(name, value);
+    }
+
+    // ---------------- Slow operations ----------------
+
+    static boolean isSlowSql(long nanos) {
+        return nanos >= SLOW_SQL_NANOS;
+    }
+
+    void slowSql(String label, long nanos, String sql, String params) {
+        increment("sql.slow");
+        log("SLOW SQL " + nanos / 1_000_000 + " ms [" + label + "]: " + sql.replaceAll("\\s+", " ").trim() +
+            (params.isEmpty() ? "" : " -- params: " + params));
+    }
+
+    private static void log(String line) {
+        System.err.println(LocalDateTime.now().format(Dates.DATE_TIME) + " " + line);
+    }
+
+    /** Times every event the EDT dispatches; call once, from the desk app. */
+    public void installEdtTimer() {
+        Toolkit.getDefaultToolkit().getSystemEventQueue().push(new EventQueue() {
+            @Override protected void dispatchEvent(AWTEvent event) {
+                long t0 = System.nanoTime();
+                try {
+                    super.dispatchEvent(event);
+                } finally {
+                    long nanos = System.nanoTime() - t0;
+                    record("edt.dispatch", nanos);
+                    if (nanos >= SLOW_EDT_NANOS) {
+                        increment("edt.slow");
+                        log("SLOW EDT " + nanos / 1_000_000 + " ms: " + event.paramString() + " from " + event.getSource().getClass().getSimpleName());
+                    }
+                }
+            }
+        });
+    }
+
+    // ---------------- Export ----------------
+
+    /** Prometheus text format; latencies in microseconds. */
+    public String text() {
+        StringBuilder sb = new StringBuilder(4_096);
+        sb.append("# TYPE hotel_latency_micros summary\n");
+        for (Map.Entry<String, LatencyHistogram> e : new TreeMap<>(histograms).entrySet()) {
+            String name = label(e.getKey());
+            LatencyHistogram h = e.getValue();
+            for (double q : QUANTILES) {
+                sb.append("hotel_latency_micros{name=").append(name).append(",quantile=\"").append(q).append("\"} ")
+                  .append(h.quantile(q)).append('\n');
+            }
+            sb.append("hotel_latency_micros_max{name=").append(name).append("} ").append(h.max()).append('\n');
+            sb.append("hotel_latency_micros_sum{name=").append(name).append("} ").append(h.sum()).append('\n');
+            sb.append("hotel_latency_micros_count{name=").append(name).append("} ").append(h.count()).append('\n');
+        }
+        sb.append("# TYPE hotel_events_total counter\n");
+        for (Map.Entry<String, LongAdder> e : new TreeMap<>(counters).entrySet()) {
+            sb.append("hotel_events_total{name=").append(label(e.getKey())).append("} ").append(e.getValue().sum()).append('\n');
+        }
+        sb.append("# TYPE hotel_gauge gauge\n");
+        for (Map.Entry<String, LongSupplier> e : new TreeMap<>(gauges).entrySet()) {
+            sb.append("hotel_gauge{name=").append(label(e.getKey())).append("} ").append(e.getValue().getAsLong()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static String label(String s) {
+        return '"' + s.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n") + '"';
+    }
+
+    /** Serves {@link #text()} at http://127.0.0.1:port/metrics if {@code -Dhotel.metrics.port} is set. */
+    public void serveIfConfigured() throws IOException {
+        Integer port = Integer.getInteger("hotel.metrics.port");
+        if (port == null) return;
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/metrics", ex -> {
+            byte[] body = text().getBytes(StandardCharsets.UTF_8);
+            ex.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            ex.sendResponseHeaders(200, body.length);
+            try (OutputStream out = ex.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start(); // its dispatcher thread isn't a daemon, but the desk app leaves via System.exit
+    }
+
+    private void registerMBean() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new Bean(), new ObjectName("hotel:type=Metrics"));
+        } catch (Exception | LinkageError e) {
+            // Already registered (another class loader) or no JMX in this runtime: metrics still work
+        }
+    }
+
+    /** JMX view: one read-only attribute per histogram quantile, counter and gauge. */
+    private final class Bean implements DynamicMBean {
+
+        @Override
+        public Object getAttribute(String attribute) throws AttributeNotFoundException {
+            int dot = attribute.lastIndexOf('.');
+            if (dot > 0) {
+                LatencyHistogram h = histograms.get(attribute.substring(0, dot));
+                if (h != null) {
+                    switch (attribute.substring(dot + 1)) {
+                        case "count": return h.count();
+                        case "max": return h.max();
+                        case "p50": return h.quantile(0.5);
+                        case "p90": return h.quantile(0.9);
+                        case "p99": return h.quantile(0.99);
+                        case "p999": return h.quantile(0.999);
+                        default: break;
+                    }
+                }
+            }
+            LongAdder c = counters.get(attribute);
+            if (c != null) return c.sum();
+            LongSupplier g = gauges.get(attribute);
+            if (g != null) return g.getAsLong();
+            throw new AttributeNotFoundException(attribute);
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] attributes) {
+            AttributeList list = new AttributeList();
+            for (String a : attributes) {
+                try {
+                    list.add(new Attribute(a, getAttribute(a)));
+                } catch (AttributeNotFoundException ignore) {
+                    // dropped since the MBeanInfo was read
+                }
+            }
+            return list;
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+            throw new AttributeNotFoundException("Metrics are read-only");
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+            throw new ReflectionException(new NoSuchMethodException(actionName));
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            List<MBeanAttributeInfo> attrs = new ArrayList<>();
+            for (String h : new TreeMap<>(histograms).keySet()) {
+                for (String s : new String[]{"count", "p50", "p90", "p99", "p999", "max"}) {
+                    attrs.add(new MBeanAttributeInfo(h + "." + s, "long", s.equals("count") ? "calls" : "microseconds", true, false, false));
+                }
+            }
+            for (String c : new TreeMap<>(counters).keySet()) {
+                attrs.add(new MBeanAttributeInfo(c, "long", "count", true, false, false));
+            }
+            for (String g : new TreeMap<>(gauges).keySet()) {
+                attrs.add(new MBeanAttributeInfo(g, "long", "current value", true, false, false));
+            }
+            return new MBeanInfo(Metrics.class.getName(), "Hotel hot-path latencies and counters",
+                    attrs.toArray(new MBeanAttributeInfo[0]), null, new MBeanOperationInfo[0], null);
+        }
+    }
+}
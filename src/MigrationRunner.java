@@ -0,0 +1,281 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * Applies the versioned SQL scripts in db/migration at startup.
+ *
+ * Scripts are named {@code V<version>__<description>.sql} and run in version order, once each.
+ * Every applied version is recorded in {@code schema_migrations} with a CRC32 of its text; if an
+ * applied script is later edited the runner refuses to start rather than leave the schema
+ * guessing. Add a new version instead of changing an old one.
+ *
+ * Databases set up by hand from the README may already contain some of these changes, so a
+ * statement failing with "already exists" (duplicate column, index, table or constraint) is
+ * treated as applied.
+ *
+ * Desks that start together would otherwise all see the same pending versions and run the same
+ * DDL, so the read-apply loop holds a MySQL named lock per schema ({@code GET_LOCK}); whoever
+ * waited re-reads the applied versions once it gets the lock and finds nothing left to do.
+ *
+ * {@link #explainHotQueries} prints EXPLAIN for the queries the app runs most and flags any that
+ * scan the whole reservations table; enable it with {@code -Dhotel.db.explain=true} while testing.
+ */
+public class MigrationRunner {
+
+    private static final Pattern NAME = Pattern.compile("V(\\d+)__(.+)\\.sql");
+
+    // MySQL: duplicate column, duplicate key name, table exists, duplicate check constraint, trigger exists
+    private static final int[] ALREADY_EXISTS = {1060, 1061, 1050, 3822, 1359};
+    // Long enough for another desk to apply every pending script
+    private static final int LOCK_WAIT_SECONDS = Integer.getInteger("hotel.db.migrationLockSeconds", 300);
+    private static final String LOCK_NAME = "CONCAT('schema_migrations.', DATABASE())";
+
+    private static final class Script {
+        final int version;
+        final String description;
+        final String sql;
+        final long checksum;
+
+        Script(int version, String description, String sql) {
+            this.version = version;
+            this.description = description;
+            this.sql = sql;
+            CRC32 crc = new CRC32();
+            crc.update(sql.replace("\r\n", "\n").getBytes(StandardCharsets.UTF_8));
+            this.checksum = crc.getValue();
+        }
+    }
+
+    private final ConnectionPool pool;
+    private final Path dir;
+
+    public MigrationRunner(ConnectionPool pool) {
+        this(pool, Paths.get(System.getProperty("hotel.db.migrations", "db/migration")));
+    }
+
+    public MigrationRunner(ConnectionPool pool, Path dir) {
+        this.pool = pool;
+        this.dir = dir;
+    }
+
+    /** Applies pending scripts; returns how many ran. */
+    public int migrate() throws SQLException, IOException {
+        if (!Files.isDirectory(dir)) {
+            System.out.println("Migrations: " + dir.toAbsolutePath() + " not found, skipping");
+            return 0;
+        }
+        List<Script> scripts = load();
+        int ran = 0;
+        try (Connection c = pool.getConnection()) {
+            try (Statement st = c.createStatement()) {
+                st.execute("CREATE TABLE IF NOT EXISTS schema_migrations (" +
+                           "version INT PRIMARY KEY, " +
+                           "description VARCHAR(200) NOT NULL, " +
+                           "checksum BIGINT NOT NULL, " +
+                           "applied_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP)");
+            }
+            lock(c);
+            try {
+                // Read only under the lock: another desk may have applied scripts while we waited
+                Map<Integer, Long> applied = new HashMap<>();
+                try (Statement st = c.createStatement();
+                     ResultSet rs = st.executeQuery("SELECT version, checksum FROM schema_migrations")) {
+                    while (rs.next()) applied.put(rs.getInt(1), rs.getLong(2));
+                }
+
+                for (Script s : scripts) {
+                    Long sum = applied.get(s.version);
+                    if (sum != null) {
+                        if (sum != s.checksum) {
+                            throw new IllegalStateException("Migration V" + s.version + "__" + s.description +
+                                    " was changed after it was applied (checksum " + sum + " != " + s.checksum + ")");
+                        }
+                        continue;
+                    }
+                    apply(c, s);
+                    ran++;
+                }
+            } finally {
+                unlock(c);
+            }
+        }
+        return ran;
+    }
+
+    /** Takes the schema's migration lock for this session, waiting up to {@link #LOCK_WAIT_SECONDS}. */
+    private static void lock(Connection c) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement("SELECT GET_LOCK(" + LOCK_NAME + ", ?)")) {
+            ps.setInt(1, LOCK_WAIT_SECONDS);
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                if (rs.getInt(1) != 1) {
+                    throw new SQLException("Timed out after " + LOCK_WAIT_SECONDS +
+                            " s waiting for another process to finish applying migrations");
+                }
+            }
+        }
+    }
+
+    private static void unlock(Connection c) {
+        try (Statement st = c.createStatement()) {
+            st.execute("DO RELEASE_LOCK(" + LOCK_NAME + ")");
+        } catch (SQLException ignore) {
+            // the lock goes with the session; a broken connection is discarded by the pool
+        }
+    }
+
+    private List<Script> load() throws IOException {
+        TreeMap<Integer, Script> byVersion = new TreeMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "V*.sql")) {
+            for (Path f : files) {
+                Matcher m = NAME.matcher(f.getFileName().toString());
+                if (!m.matches()) continue;
+                int version = Integer.parseInt(m.group(1));
+                Script s = new Script(version, m.group(2), Files.readString(f, StandardCharsets.UTF_8));
+                Script dup = byVersion.put(version, s);
+                if (dup != null) throw new IllegalStateException("Two migrations share version " + version);
+            }
+        }
+        return new ArrayList<>(byVersion.values());
+    }
+
+    private static void apply(Connection c, Script s) throws SQLException {
+        // MySQL commits DDL implicitly, so a script is not atomic: keep each one small
+        System.out.println("Migrations: applying V" + s.version + "__" + s.description);
+        try (Statement st = c.createStatement()) {
+            for (String sql : statements(s.sql)) {
+                try {
+                    st.execute(sql);
+                } catch (SQLException e) {
+                    if (!alreadyExists(e)) {
+                        throw new SQLException("Migration V" + s.version + " failed: " + e.getMessage(), e.getSQLState(), e.getErrorCode(), e);
+                    }
+                    System.out.println("Migrations: V" + s.version + " already present (" + e.getMessage() + ")");
+                }
+            }
+        }
+        try (PreparedStatement ps = c.prepareStatement(
+                "INSERT INTO schema_migrations (version, description, checksum) VALUES (?, ?, ?)")) {
+            ps.setInt(1, s.version);
+            ps.setString(2, s.description);
+            ps.setLong(3, s.checksum);
+            ps.executeUpdate();
+        }
+    }
+
+    private static boolean alreadyExists(SQLException e) {
+        for (int code : ALREADY_EXISTS) if (e.getErrorCode() == code) return true;
+        return false;
+    }
+
+    /** Splits a script on semicolons that end a line; strips full-line "--" comments. */
+    static List<String> statements(String script) {
+        List<String> out = new ArrayList<>();
+        StringBuilder cur = new StringBuilder();
+        for (String line : script.split("\r?\n")) {
+            String t = line.trim();
+            if (t.isEmpty() || t.startsWith("--")) continue;
+            cur.append(line).append('\n');
+            if (t.endsWith(";")) {
+                String sql = cur.toString().trim();
+                out.add(sql.substring(0, sql.length() - 1));
+                cur.setLength(0);
+            }
+        }
+        if (cur.toString().trim().length() > 0) out.add(cur.toString().trim());
+        return out;
+    }
+
+    // ---------------- Query plans ----------------
+
+    /** Representative forms of the app's frequent queries, with sample parameters. */
+    private static final Object[][] HOT_QUERIES = {
+            {"overlap check",
+             "SELECT reservation_id FROM reservations WHERE room_number = ? AND status = 'ACTIVE' AND reservation_id <> ? " +
+             "AND (checkout_date > ? AND reservation_date < ?)",
+             101, -1, Timestamp.valueOf("2024-01-15 00:00:00"), Timestamp.valueOf("2024-01-17 00:00:00")},
+            {"availability index load",
+             "SELECT reservation_id, room_number, reservation_date, checkout_date FROM reservations WHERE status = 'ACTIVE'"},
+            {"checkout",
+             "SELECT reservation_id FROM reservations WHERE reservation_id = ? AND status = 'ACTIVE'", 1},
+            {"table page (current)",
+             Reservation.SELECT + "WHERE status = 'ACTIVE' ORDER BY reservation_date DESC, reservation_id DESC LIMIT 200"},
+            {"table page (keyset)",
+             Reservation.SELECT + "WHERE (reservation_date < ? OR (reservation_date = ? AND reservation_id < ?)) " +
+             "ORDER BY reservation_date DESC, reservation_id DESC LIMIT 200",
+             Timestamp.valueOf("2024-01-15 00:00:00"), Timestamp.valueOf("2024-01-15 00:00:00"), 1000},
+            {"archive batch",
+             "SELECT reservation_id FROM reservations WHERE status = 'CHECKED_OUT' AND checkout_date < ? " +
+             "ORDER BY checkout_date LIMIT 1000", Timestamp.valueOf("2024-01-01 00:00:00")},
+            {"change feed",
+             "SELECT seq, reservation_id, op FROM reservation_changes WHERE seq > ? ORDER BY seq LIMIT 500", 0L},
+            {"search by contact",
+             "SELECT COUNT(*) FROM reservations WHERE contact_number LIKE ?", "98%"},
+            {"search by guest",
+             "SELECT COUNT(*) FROM reservations WHERE guest_name LIKE ?", "John%"},
+    };
+
+    /**
+     * Prints the EXPLAIN plan of each hot query; returns how many do a full scan of reservations
+     * (access type ALL). A non-zero result during testing means an index is missing.
+     */
+    public int explainHotQueries() throws SQLException {
+        int fullScans = 0;
+        try (Connection c = pool.getConnection()) {
+            for (Object[] q : HOT_QUERIES) {
+                try (PreparedStatement ps = c.prepareStatement("EXPLAIN " + q[1])) {
+                    for (int i = 2; i < q.length; i++) ps.setObject(i - 1, q[i]);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        ResultSetMetaData md = rs.getMetaData();
+                        while (rs.next()) {
+                            String table = column(rs, md, "table");
+                            String type = column(rs, md, "type");
+                            boolean scan = "ALL".equals(type) && "reservations".equals(table);
+                            if (scan) fullScans++;
+                            System.out.println("EXPLAIN " + q[0] + ": table=" + table + " type=" + type +
+                                    " key=" + column(rs, md, "key") + " rows=" + column(rs, md, "rows") +
+                                    " extra=" + column(rs, md, "Extra") + (scan ? "  <-- FULL TABLE SCAN" : ""));
+                        }
+                    }
+                }
+            }
+        }
+        return fullScans;
+    }
+
+    private static String column(ResultSet rs, ResultSetMetaData md, String label) throws SQLException {
+        for (int i = 1; i <= md.getColumnCount(); i++) {
+            if (md.getColumnLabel(i).equalsIgnoreCase(label)) return rs.getString(i);
+        }
+        return null;
+    }
+
+    /** Runs migrations (unless -Dhotel.db.migrate=false) and, if asked, the EXPLAIN report. */
+    static void runAtStartup(ConnectionPool pool) throws SQLException, IOException {
+        MigrationRunner runner = new MigrationRunner(pool);
+        if (!"false".equals(System.getProperty("hotel.db.migrate"))) runner.migrate();
+        if (Boolean.getBoolean("hotel.db.explain")) {
+            int scans = runner.explainHotQueries();
+            if (scans > 0) System.out.println("EXPLAIN: " + scans + " hot query plan(s) scan the whole reservations table");
+        }
+    }
+}
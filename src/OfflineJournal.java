@@ -0,0 +1,261 @@
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Write-ahead journal of desk operations made while the database is unreachable.
+ *
+ * Each operation is appended as one record ({@code [length][payload][crc32]}) and forced to disk
+ * before the desk reports success, so a crash or power cut can't lose a booking. When an entry
+ * has been applied to MySQL a DONE record is appended; once nothing is pending the file is cut
+ * back to its header. The header ({@code [magic][highest seq issued]}) outlives the records, so
+ * sequence numbers, and the placeholder ids made from them, never repeat across restarts. A torn
+ * record at the end (crash mid-write) fails its CRC and is cut off on open.
+ *
+ * Entries created offline carry a random client reference; it is stored with the reservation so
+ * replaying the same entry twice can't book the room twice.
+ */
+public class OfflineJournal implements Closeable {
+
+    enum Op { RESERVE, UPDATE, CHECKOUT, CANCEL } // stored by position: add new ones at the end
+
+    private static final byte DONE = 0;
+    private static final int MAGIC = 0x484D534A; // "HMSJ"
+    private static final int HEADER = 12;        // magic + highest seq issued
+
+    /** One journaled operation. {@code reservationId} is 0 when the target was itself created offline. */
+    static final class Entry {
+        final long seq;
+        final Op op;
+        final String ref;           // RESERVE: its own reference; otherwise the target's if created offline
+        final int reservationId;
+        final String guest;
+        final String contact;
+        final int room;
+        final Timestamp checkIn;
+        final Timestamp checkOut;
+        final long createdAt;
+
+        Entry(long seq, Op op, String ref, int reservationId, String guest, String contact, int room,
+              Timestamp checkIn, Timestamp checkOut, long createdAt) {
+            this.seq = seq;
+            this.op = op;
+            this.ref = ref;
+            this.reservationId = reservationId;
+            this.guest = guest;
+            this.contact = contact;
+            this.room = room;
+            this.checkIn = checkIn;
+            this.checkOut = checkOut;
+            this.createdAt = createdAt;
+        }
+
+        /** Placeholder id for a reservation booked offline, until the database assigns one. */
+        int offlineId() {
+            return (int) -seq;
+        }
+
+        String describe() {
+            String what = op == Op.RESERVE ? "Booking" : op == Op.UPDATE ? "Update" : op == Op.CHECKOUT ? "Checkout" : "Deletion";
+            String target = reservationId > 0 ? " of reservation " + reservationId : "";
+            if (checkIn == null) return what + target + " (saved offline " + Dates.format(new Timestamp(createdAt)) + ")";
+            return what + target + " for " + guest + ", room " + room + ", " +
+                   Dates.format(checkIn) + " to " + Dates.format(checkOut) +
+                   " (saved offline " + Dates.format(new Timestamp(createdAt)) + ")";
+        }
+    }
+
+    private final Path file;
+    private final FileChannel channel;
+    private final Map<Long, Entry> pending = new LinkedHashMap<>();
+    private long lastSeq;
+    private long dataStart; // HEADER, or 0 for a journal written before the header existed
+
+    public OfflineJournal(Path file) throws IOException {
+        this.file = file;
+        if (file.getParent() != null) Files.createDirectories(file.getParent());
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        recover();
+    }
+
+    public Path file() {
+        return file;
+    }
+
+    public synchronized int pendingCount() {
+        return pending.size();
+    }
+
+    /** Pending entries in the order they were made. */
+    public synchronized List<Entry> pending() {
+        return new ArrayList<>(pending.values());
+    }
+
+    /** The pending RESERVE entry whose placeholder id is {@code offlineId}, or null. */
+    public synchronized Entry pendingReserve(int offlineId) {
+        Entry e = pending.get((long) -offlineId);
+        return (e != null && e.op == Op.RESERVE) ? e : null;
+    }
+
+    /** Appends and fsyncs an entry; it is durable when this returns. */
+    public synchronized Entry append(Op op, String ref, int reservationId, String guest, String contact, int room,
+                                     Timestamp checkIn, Timestamp checkOut) throws IOException {
+        Entry e = new Entry(lastSeq + 1, op, ref, reservationId, guest, contact, room, checkIn, checkOut,
+                System.currentTimeMillis());
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(op.ordinal() + 1);
+            out.writeLong(e.seq);
+            out.writeUTF(ref == null ? "" : ref);
+            out.writeInt(reservationId);
+            out.writeUTF(guest == null ? "" : guest);
+            out.writeUTF(contact == null ? "" : contact);
+            out.writeInt(room);
+            out.writeLong(checkIn == null ? 0 : checkIn.getTime());
+            out.writeLong(checkOut == null ? 0 : checkOut.getTime());
+            out.writeLong(e.createdAt);
+        }
+        write(bytes.toByteArray());
+        lastSeq = e.seq;
+        pending.put(e.seq, e);
+        return e;
+    }
+
+    /** Records that {@code seq} reached the database (or was given up as a conflict). */
+    public synchronized void markDone(long seq) throws IOException {
+        if (pending.remove(seq) == null) return;
+        if (pending.isEmpty()) {
+            // Nothing left to replay: keep only the header, which remembers lastSeq
+            writeHeader();
+            channel.truncate(HEADER);
+            channel.force(true);
+            return;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(16);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(DONE);
+            out.writeLong(seq);
+        }
+        write(bytes.toByteArray());
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+
+    private void write(byte[] payload) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer buf = ByteBuffer.allocate(4 + payload.length + 8);
+        buf.putInt(payload.length).put(payload).putLong(crc.getValue()).flip();
+        long pos = channel.size();
+        while (buf.hasRemaining()) pos += channel.write(buf, pos);
+        channel.force(false);
+    }
+
+    /** Stores lastSeq at the start of the file; records after the header are left as they are. */
+    private void writeHeader() throws IOException {
+        if (dataStart == 0) channel.truncate(0); // older journal: records start at 0, and none is pending
+        ByteBuffer buf = ByteBuffer.allocate(HEADER);
+        buf.putInt(MAGIC).putLong(lastSeq).flip();
+        long pos = 0;
+        while (buf.hasRemaining()) pos += channel.write(buf, pos);
+        channel.force(true);
+        dataStart = HEADER;
+    }
+
+    private void recover() throws IOException {
+        long size = channel.size();
+        ByteBuffer all = ByteBuffer.allocate((int) size);
+        while (all.hasRemaining() && channel.read(all, all.position()) >= 0) { /* fill */ }
+        all.flip();
+
+        if (size >= HEADER && all.getInt(0) == MAGIC) {
+            lastSeq = all.getLong(4);
+            all.position(HEADER);
+            dataStart = HEADER;
+        } else if (size < HEADER) {
+            // New file, or a crash while creating one: no record fits in there
+            writeHeader();
+            return;
+        }
+        long good = all.position();
+        while (all.remaining() >= 4) {
+            int len = all.getInt();
+            if (len <= 0 || len > all.remaining() - 8) break;
+            byte[] payload = new byte[len];
+            all.get(payload);
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            if (crc.getValue() != all.getLong()) break;
+            try {
+                apply(payload);
+            } catch (EOFException | IllegalArgumentException bad) {
+                break;
+            }
+            good = all.position();
+        }
+        if (good < size) {
+            // Torn or corrupt tail from a crash mid-append: drop it
+            channel.truncate(good);
+            channel.force(true);
+        }
+    }
+
+    private void apply(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new java.io.ByteArrayInputStream(payload));
+        int type = in.readByte();
+        long seq = in.readLong();
+        lastSeq = Math.max(lastSeq, seq);
+        if (type == DONE) {
+            pending.remove(seq);
+            return;
+        }
+        if (type < 1 || type > Op.values().length) throw new IllegalArgumentException("Unknown journal record " + type);
+        String ref = in.readUTF();
+        int reservationId = in.readInt();
+        String guest = in.readUTF();
+        String contact = in.readUTF();
+        int room = in.readInt();
+        long checkIn = in.readLong();
+        long checkOut = in.readLong();
+        long createdAt = in.readLong();
+        pending.put(seq, new Entry(seq, Op.values()[type - 1], ref.isEmpty() ? null : ref, reservationId, guest, contact,
+                room, checkIn == 0 ? null : new Timestamp(checkIn), checkOut == 0 ? null : new Timestamp(checkOut), createdAt));
+    }
+
+    /** True if {@code e} means the database could not be reached (as opposed to a rejected request). */
+    static boolean isConnectivityFailure(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof SQLTransientConnectionException || t instanceof SQLNonTransientConnectionException
+                    || t instanceof SQLRecoverableException || t instanceof ConnectException) {
+                return true;
+            }
+            if (t instanceof SQLException) {
+                String state = ((SQLException) t).getSQLState();
+                if (state != null && state.startsWith("08")) return true; // connection exception class
+            }
+        }
+        return false;
+    }
+}
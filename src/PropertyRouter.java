@@ -0,0 +1,298 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Routes each hotel property to its own database.
+ *
+ * Every property has its own schema (several schemas may share one MySQL server), so each
+ * reservations table only holds one hotel and the queries stay as they are. A property's schema
+ * is migrated and claimed (the {@code property} table) the first time it is used; pointing two
+ * properties at the same schema is refused. Each property gets its own connection pool and
+ * {@link ReservationService}.
+ *
+ * Opening a property (migrations, claim, cache load) happens on its own opener threads, never
+ * inside a cross-property search: the search only reads the in-memory caches of properties that
+ * are already open, so it can't block on a database, and reports the others as still opening.
+ *
+ * Configured with {@code -Dhotel.shards=shards.properties}:
+ * <pre>
+ * 1.name=Mumbai
+ * 1.url=jdbc:mysql://db-west:3306/hotel_mumbai?serverTimezone=UTC&amp;rewriteBatchedStatements=true
+ * 2.name=Goa
+ * 2.url=jdbc:mysql://db-west:3306/hotel_goa?serverTimezone=UTC&amp;rewriteBatchedStatements=true
+ * 2.user=goa_app          (user/pass default to hotel.db.user / hotel.db.pass)
+ * </pre>
+ * Without it there is a single property {@value #DEFAULT_PROPERTY} at {@link DbConfig#URL}.
+ */
+public class PropertyRouter implements AutoCloseable {
+
+    static final int DEFAULT_PROPERTY = 1;
+    // One slow or unreachable hotel must not hold up a cross-property search
+    private static final long FAN_OUT_TIMEOUT_MS = 5_000;
+
+    static final class Property {
+        final int id;
+        final String name;
+        final String url;
+        final String user;
+        final String pass;
+
+        Property(int id, String name, String url, String user, String pass) {
+            this.id = id;
+            this.name = name;
+            this.url = url;
+            this.user = user;
+            this.pass = pass;
+        }
+    }
+
+    /** Free rooms per property from a fan-out search; properties that failed or timed out are listed apart. */
+    public static final class Availability {
+        final Map<Integer, int[]> free = new TreeMap<>();
+        final Map<Integer, String> failed = new TreeMap<>();
+    }
+
+    private final Map<Integer, Property> properties;
+    private final int poolSize;
+    private final Map<Integer, ReservationService> prepared = new ConcurrentHashMap<>(); // pool made, maybe not opened
+    private final Map<Integer, ReservationService> services = new ConcurrentHashMap<>();  // opened
+    private final ExecutorService fanOut;                  // cross-property searches, in memory only
+    private final ExecutorService opener;                  // opens properties and loads their caches
+    private final Map<Integer, Future<?>> opening = new ConcurrentHashMap<>();
+
+    public PropertyRouter(Map<Integer, Property> properties, int poolSize) {
+        if (properties.isEmpty()) throw new IllegalArgumentException("No properties configured.");
+        this.properties = new TreeMap<>(properties);
+        this.poolSize = poolSize;
+        AtomicInteger n = new AtomicInteger();
+        // Headroom over one thread per property, so a search never queues behind the previous one
+        this.fanOut = Executors.newFixedThreadPool(properties.size() * 2, r -> {
+            Thread t = new Thread(r, "property-search-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        AtomicInteger m = new AtomicInteger();
+        this.opener = Executors.newFixedThreadPool(properties.size(), r -> {
+            Thread t = new Thread(r, "property-open-" + m.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /** From {@code -Dhotel.shards}, or the single default property. */
+    public static PropertyRouter fromConfig(int poolSize) throws IOException {
+        String file = System.getProperty("hotel.shards");
+        Map<Integer, Property> map = new TreeMap<>();
+        if (file == null) {
+            map.put(DEFAULT_PROPERTY, new Property(DEFAULT_PROPERTY, "Hotel", DbConfig.URL, DbConfig.USER, DbConfig.PASS));
+            return new PropertyRouter(map, poolSize);
+        }
+        Properties p = new Properties();
+        try (Reader in = Files.newBufferedReader(Paths.get(file), StandardCharsets.UTF_8)) {
+            p.load(in);
+        }
+        for (String key : p.stringPropertyNames()) {
+            if (!key.endsWith(".url")) continue;
+            String prefix = key.substring(0, key.length() - ".url".length());
+            int id;
+            try {
+                id = Integer.parseInt(prefix);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(file + ": property ids must be numbers, got '" + prefix + "'");
+            }
+            map.put(id, new Property(id, p.getProperty(prefix + ".name", "Property " + id), p.getProperty(key),
+                    p.getProperty(prefix + ".user", DbConfig.USER), p.getProperty(prefix + ".pass", DbConfig.PASS)));
+        }
+        if (map.isEmpty()) throw new IllegalArgumentException(file + " defines no <id>.url entries");
+        return new PropertyRouter(map, poolSize);
+    }
+
+    public Set<Integer> propertyIds() {
+        return Collections.unmodifiableSet(properties.keySet());
+    }
+
+    public String name(int propertyId) {
+        return property(propertyId).name;
+    }
+
+    public String url(int propertyId) {
+        return property(propertyId).url;
+    }
+
+    /**
+     * The service for a property without touching its database yet (the pool connects on first
+     * use), e.g. for a desk to warm its caches while {@link #service} opens it in the background.
+     */
+    public ReservationService prepare(int propertyId) {
+        Property p = property(propertyId);
+        return prepared.computeIfAbsent(propertyId,
+                id -> new ReservationService(DbConfig.newPool(p.url, p.user, p.pass, poolSize)));
+    }
+
+    /**
+     * The service for a property, connecting, migrating and claiming its schema on first use. If
+     * that fails the pool is kept, so the next call tries again with the same service.
+     */
+    public ReservationService service(int propertyId) throws SQLException, IOException {
+        ReservationService s = services.get(propertyId);
+        if (s != null) return s;
+        Property p = property(propertyId);
+        synchronized (p) { // properties open side by side, each only once
+            s = services.get(propertyId);
+            if (s != null) return s;
+            s = prepare(propertyId);
+            MigrationRunner.runAtStartup(s.pool());
+            claim(s.pool(), p);
+            services.put(propertyId, s);
+            return s;
+        }
+    }
+
+    /** Opens every property and loads its caches, all in parallel; fails if any property can't be opened. */
+    public void loadAll() throws SQLException, IOException {
+        List<Future<?>> futures = new ArrayList<>();
+        for (int id : properties.keySet()) futures.add(openInBackground(id));
+        for (Future<?> f : futures) {
+            try {
+                f.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while opening properties", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof SQLException) throw (SQLException) cause;
+                if (cause instanceof IOException) throw (IOException) cause;
+                if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+                throw new SQLException(cause);
+            }
+        }
+    }
+
+    /**
+     * Starts opening every property that isn't open yet and loading its caches, without waiting,
+     * so cross-property searches find them ready. A failed property is retried by the next call
+     * or the next search.
+     */
+    public void openAllInBackground() {
+        for (int id : properties.keySet()) openInBackground(id);
+    }
+
+    /** Opens one property on the opener threads; a call while it is already opening joins that attempt. */
+    private Future<?> openInBackground(int propertyId) {
+        return opening.compute(propertyId, (id, running) -> running != null && !running.isDone() ? running : opener.submit(() -> {
+            ReservationService s = service(id);
+            if (!isReady(s)) s.loadCaches();
+            return null;
+        }));
+    }
+
+    private static boolean isReady(ReservationService s) {
+        return s != null && s.catalog().isLoaded() && s.availability().isLoaded();
+    }
+
+    /** Services opened so far, by property id. */
+    public Map<Integer, ReservationService> openServices() {
+        return new TreeMap<>(services);
+    }
+
+    /**
+     * Free rooms in every property for [checkIn, checkOut), from each property's cached index on
+     * its own thread. A property that isn't open with its caches loaded yet is reported in
+     * {@link Availability#failed} and opened in the background; so is one that fails or takes
+     * longer than {@value #FAN_OUT_TIMEOUT_MS} ms. None of this touches a database.
+     */
+    public Availability availableRooms(Timestamp checkIn, Timestamp checkOut) {
+        if (checkIn == null || checkOut == null || !checkOut.after(checkIn)) {
+            throw new IllegalArgumentException("Checkout date must be after Check-in date.");
+        }
+        Map<Integer, Future<int[]>> futures = new TreeMap<>();
+        Availability result = new Availability();
+        for (int id : properties.keySet()) {
+            ReservationService s = services.get(id);
+            if (!isReady(s)) {
+                openInBackground(id);
+                result.failed.put(id, "still opening");
+                continue;
+            }
+            futures.put(id, fanOut.submit(() -> s.availableRooms(checkIn, checkOut)));
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(FAN_OUT_TIMEOUT_MS);
+        for (Map.Entry<Integer, Future<int[]>> e : futures.entrySet()) {
+            try {
+                result.free.put(e.getKey(), e.getValue().get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                result.failed.put(e.getKey(), "interrupted");
+            } catch (ExecutionException ex) {
+                // Bad dates are the caller's fault, not the property's
+                if (ex.getCause() instanceof IllegalArgumentException) throw (IllegalArgumentException) ex.getCause();
+                result.failed.put(e.getKey(), String.valueOf(ex.getCause().getMessage()));
+            } catch (TimeoutException ex) {
+                e.getValue().cancel(true);
+                result.failed.put(e.getKey(), "timed out");
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void close() {
+        fanOut.shutdownNow();
+        opener.shutdownNow();
+        for (ReservationService s : prepared.values()) s.pool().close();
+        prepared.clear();
+        services.clear();
+    }
+
+    private Property property(int propertyId) {
+        Property p = properties.get(propertyId);
+        if (p == null) throw new IllegalArgumentException("Unknown property " + propertyId + ".");
+        return p;
+    }
+
+    /**
+     * Records which property the schema holds, or checks it if already recorded. The table takes
+     * one row only (V13), so when two desks claim a fresh schema at once the second insert is
+     * ignored and both read back the winner's row.
+     */
+    private static void claim(ConnectionPool pool, Property p) throws SQLException {
+        try (Connection c = pool.getConnection()) {
+            try (PreparedStatement ps = c.prepareStatement("INSERT IGNORE INTO property (property_id, name) VALUES (?, ?)")) {
+                ps.setInt(1, p.id);
+                ps.setString(2, p.name);
+                ps.executeUpdate();
+            }
+            try (PreparedStatement ps = c.prepareStatement("SELECT property_id FROM property");
+                 ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) throw new SQLException("Could not claim database " + p.url + " for property " + p.id + ".");
+                int owner = rs.getInt(1);
+                if (owner != p.id) {
+                    throw new IllegalStateException("Database " + p.url + " holds property " + owner + ", not " + p.id + ".");
+                }
+            }
+        }
+    }
+}
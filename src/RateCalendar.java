@@ -0,0 +1,214 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Nightly rates by room type and calendar day, kept in memory for pricing stays.
+ *
+ * A {@code room_rates} row (V9) overrides price_per_night for every room of its type on that
+ * night; nights without a row cost the room's own price. Rows from {@value #DAYS_BACK} days back
+ * to {@value #DAYS_AHEAD} days ahead are loaded into primitive arrays per type, indexed by epoch
+ * day, with prefix sums and sparse tables on top, so the total, cheapest and dearest night of any
+ * stay are each O(1) however long it is. Like {@link RoomCatalog} the arrays are replaced as a
+ * whole, and {@link #refreshIfChanged} only re-reads them when a checksum of the table moves.
+ */
+public class RateCalendar {
+
+    static final int DAYS_BACK = 400;   // checkouts of long-running stays still find their rates
+    static final int DAYS_AHEAD = 800;
+
+    private static final String VERSION_SQL =
+            "SELECT COUNT(*), COALESCE(SUM(CRC32(CONCAT_WS('|', room_type, stay_date, price_paise))), 0) FROM room_rates";
+
+    /** Rates of one stay: nights, total, cheapest and dearest night, all in paise. */
+    public static final class Stay {
+        final long nights;
+        final long totalPaise;
+        final long minPaise;
+        final long maxPaise;
+
+        Stay(long nights, long totalPaise, long minPaise, long maxPaise) {
+            this.nights = nights;
+            this.totalPaise = totalPaise;
+            this.minPaise = minPaise;
+            this.maxPaise = maxPaise;
+        }
+    }
+
+    /** One room type night by night: rack rate, free rooms, and the rates over the whole range. */
+    public static final class Nights {
+        final String type;
+        final long fromDay;
+        final int rooms;
+        final long[] ratePaise;
+        final int[] free;
+        final Stay range;
+
+        Nights(String type, long fromDay, int rooms, long[] ratePaise, int[] free, Stay range) {
+            this.type = type;
+            this.fromDay = fromDay;
+            this.rooms = rooms;
+            this.ratePaise = ratePaise;
+            this.free = free;
+            this.range = range;
+        }
+
+        /** The fewest rooms free on any night: how many can be sold for the whole range. */
+        int minFree() {
+            return Arrays.stream(free).min().orElse(0);
+        }
+    }
+
+    /** Overrides of one room type over the loaded window; index i is night firstDay + i. */
+    private static final class TypeRates {
+        final long[] prefixSum;    // [i] = sum of overrides on nights 0 .. i-1
+        final int[] prefixCount;   // [i] = overridden nights among 0 .. i-1
+        final long[][] min;        // sparse tables: [k][i] = min/max over nights i .. i + 2^k - 1,
+        final long[][] max;        // Long.MAX_VALUE / MIN_VALUE where nothing is overridden
+
+        TypeRates(long[] night) { // night[i] = override in paise, or -1
+            int n = night.length;
+            prefixSum = new long[n + 1];
+            prefixCount = new int[n + 1];
+            long[] lo = new long[n];
+            long[] hi = new long[n];
+            for (int i = 0; i < n; i++) {
+                boolean set = night[i] >= 0;
+                prefixSum[i + 1] = prefixSum[i] + (set ? night[i] : 0);
+                prefixCount[i + 1] = prefixCount[i] + (set ? 1 : 0);
+                lo[i] = set ? night[i] : Long.MAX_VALUE;
+                hi[i] = set ? night[i] : Long.MIN_VALUE;
+            }
+            int levels = 32 - Integer.numberOfLeadingZeros(Math.max(n, 1));
+            min = new long[levels][];
+            max = new long[levels][];
+            min[0] = lo;
+            max[0] = hi;
+            for (int k = 1; k < levels; k++) {
+                int half = 1 << (k - 1);
+                int len = n - (1 << k) + 1;
+                min[k] = new long[len];
+                max[k] = new long[len];
+                for (int i = 0; i < len; i++) {
+                    min[k][i] = Math.min(min[k - 1][i], min[k - 1][i + half]);
+                    max[k][i] = Math.max(max[k - 1][i], max[k - 1][i + half]);
+                }
+            }
+        }
+
+        /** Index range [a, b) must be non-empty. */
+        long min(int a, int b) {
+            int k = 31 - Integer.numberOfLeadingZeros(b - a);
+            return Math.min(min[k][a], min[k][b - (1 << k)]);
+        }
+
+        long max(int a, int b) {
+            int k = 31 - Integer.numberOfLeadingZeros(b - a);
+            return Math.max(max[k][a], max[k][b - (1 << k)]);
+        }
+    }
+
+    private static final class Snapshot {
+        final long firstDay;
+        final int days;
+        final Map<String, TypeRates> types;
+        final String version;  // checksum plus the day the window was anchored on
+
+        Snapshot(long firstDay, int days, Map<String, TypeRates> types, String version) {
+            this.firstDay = firstDay;
+            this.days = days;
+            this.types = types;
+            this.version = version;
+        }
+    }
+
+    private static final Snapshot EMPTY = new Snapshot(0, 0, Map.of(), null);
+
+    private volatile Snapshot snap = EMPTY;
+
+    public boolean isLoaded() {
+        return snap.version != null;
+    }
+
+    /** Unconditionally re-reads the rates around today. */
+    public void load(Connection c) throws SQLException {
+        String version = readVersion(c);
+        long firstDay = LocalDate.now().toEpochDay() - DAYS_BACK;
+        int days = DAYS_BACK + DAYS_AHEAD;
+        Map<String, long[]> nights = new HashMap<>();
+        try (PreparedStatement ps = c.prepareStatement(
+                "/* ratesLoad */ SELECT room_type, stay_date, price_paise FROM room_rates WHERE stay_date >= ? AND stay_date < ?")) {
+            ps.setObject(1, LocalDate.ofEpochDay(firstDay));
+            ps.setObject(2, LocalDate.ofEpochDay(firstDay + days));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    long[] night = nights.computeIfAbsent(rs.getString(1), t -> {
+                        long[] a = new long[days];
+                        Arrays.fill(a, -1);
+                        return a;
+                    });
+                    night[(int) (rs.getDate(2).toLocalDate().toEpochDay() - firstDay)] = rs.getLong(3);
+                }
+            }
+        }
+        Map<String, TypeRates> types = new HashMap<>();
+        for (Map.Entry<String, long[]> e : nights.entrySet()) types.put(e.getKey(), new TypeRates(e.getValue()));
+        snap = new Snapshot(firstDay, days, types, version);
+    }
+
+    /** Reloads if the table changed or the day rolled over since the last load; returns true if it did. */
+    public boolean refreshIfChanged(Connection c) throws SQLException {
+        if (isLoaded() && readVersion(c).equals(snap.version)) return false;
+        load(c);
+        return true;
+    }
+
+    /** The rate of one night (an epoch day) for a room of {@code type} whose own price is {@code basePaise}. */
+    public long rate(String type, long basePaise, long day) {
+        return stay(type, basePaise, day, 1).totalPaise;
+    }
+
+    /** Nightly rates for {@code days} nights from {@code fromDay}, one per night. */
+    public long[] rates(String type, long basePaise, long fromDay, int days) {
+        long[] out = new long[days];
+        for (int i = 0; i < days; i++) out[i] = rate(type, basePaise, fromDay + i);
+        return out;
+    }
+
+    /**
+     * Total, cheapest and dearest night of {@code nights} nights from {@code fromDay} for a room of
+     * {@code type} whose own price is {@code basePaise}.
+     */
+    public Stay stay(String type, long basePaise, long fromDay, long nights) {
+        if (nights < 1) throw new IllegalArgumentException("A stay needs at least one night.");
+        Snapshot s = snap;
+        TypeRates t = type == null ? null : s.types.get(type);
+        // Nights inside the loaded window, as indexes [a, b); nights outside it have no override
+        int a = (int) Math.max(0, Math.min(s.days, fromDay - s.firstDay));
+        int b = (int) Math.max(a, Math.min(s.days, fromDay + nights - s.firstDay));
+        int overridden = (t == null || a == b) ? 0 : t.prefixCount[b] - t.prefixCount[a];
+        if (overridden == 0) return new Stay(nights, basePaise * nights, basePaise, basePaise);
+        long total = t.prefixSum[b] - t.prefixSum[a] + basePaise * (nights - overridden);
+        long min = t.min(a, b);
+        long max = t.max(a, b);
+        if (overridden < nights) {
+            min = Math.min(min, basePaise);
+            max = Math.max(max, basePaise);
+        }
+        return new Stay(nights, total, min, max);
+    }
+
+    private static String readVersion(Connection c) throws SQLException {
+        try (Statement st = c.createStatement();
+             ResultSet rs = st.executeQuery(VERSION_SQL)) {
+            rs.next();
+            return rs.getLong(1) + ":" + rs.getLong(2) + "@" + LocalDate.now().toEpochDay();
+        }
+    }
+}
@@ -0,0 +1,228 @@
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Occupancy and revenue report: per day and per room type, rooms sold, occupancy %, ADR
+ * (average daily rate), RevPAR (revenue per available room) and GST.
+ *
+ * Stays are streamed from the database with a forward-only, row-streaming ResultSet and joined
+ * with the cached room catalog in memory, so no per-row objects are kept: every night of every
+ * stay adds to {@code long[day * types + type]} arrays (rooms sold, revenue and GST in paise).
+ * A checked-out stay earns the nightly rate and tax rate on its stored invoice; an ACTIVE one
+ * (or one checked out before invoices were kept) is priced night by night from the
+ * {@link RateCalendar} at the slab of its dearest night, exactly as {@link BillingEngine} would bill it.
+ */
+public class ReportEngine {
+
+    /** Aggregates for {@code [from, from + days)}; amounts in paise. */
+    public static final class Report {
+        final LocalDate from;
+        final int days;
+        final String[] types;       // room types, in column order
+        final int[] roomsOfType;    // rooms available per type (capacity per night)
+        final long[] sold;          // [day * types.length + t] room-nights sold
+        final long[] revenue;       // [day * types.length + t] paise
+        final long[] gst;           // [day * types.length + t] paise
+
+        Report(LocalDate from, int days, String[] types, int[] roomsOfType) {
+            this.from = from;
+            this.days = days;
+            this.types = types;
+            this.roomsOfType = roomsOfType;
+            this.sold = new long[days * types.length];
+            this.revenue = new long[days * types.length];
+            this.gst = new long[days * types.length];
+        }
+
+        /** Adds one stay; {@code typeIndex} is a column of {@link #types}. */
+        void add(long checkInMillis, long checkOutMillis, int typeIndex, long pricePaise, int taxRateBp) {
+            long first = Dates.epochDay(checkInMillis);
+            long last = Math.max(Dates.epochDay(checkOutMillis), first + 1); // same-day stays bill one night
+            long start = from.toEpochDay();
+            int d0 = (int) Math.max(first - start, 0);
+            int d1 = (int) Math.min(last - start, days);
+            long nightTax = TaxSlabs.tax(pricePaise, taxRateBp);
+            int t = types.length;
+            for (int d = d0; d < d1; d++) {
+                sold[d * t + typeIndex]++;
+                revenue[d * t + typeIndex] += pricePaise;
+                gst[d * t + typeIndex] += nightTax;
+            }
+        }
+
+        /** Adds nights priced one by one: {@code nightPaise[k]} is the rate of epoch day firstDay + k. */
+        void addNights(long firstDay, int typeIndex, long[] nightPaise, int taxRateBp) {
+            long start = from.toEpochDay();
+            int t = types.length;
+            for (int k = 0; k < nightPaise.length; k++) {
+                long d = firstDay + k - start;
+                if (d < 0 || d >= days) continue;
+                int cell = (int) d * t + typeIndex;
+                sold[cell]++;
+                revenue[cell] += nightPaise[k];
+                gst[cell] += TaxSlabs.tax(nightPaise[k], taxRateBp);
+            }
+        }
+
+        /**
+         * Writes one line per day and room type plus an "ALL" line per day:
+         * date, room_type, rooms, sold, occupancy_pct, adr, revpar, revenue, gst (rupees).
+         */
+        void writeCsv(Writer out) throws IOException {
+            StringBuilder line = new StringBuilder(128);
+            out.write("date,room_type,rooms,sold,occupancy_pct,adr,revpar,revenue,gst\n");
+            int t = types.length;
+            int totalRooms = 0;
+            for (int n : roomsOfType) totalRooms += n;
+            for (int d = 0; d < days; d++) {
+                String date = from.plusDays(d).toString();
+                long daySold = 0, dayRevenue = 0, dayGst = 0;
+                for (int i = 0; i < t; i++) {
+                    long s = sold[d * t + i], r = revenue[d * t + i], g = gst[d * t + i];
+                    daySold += s;
+                    dayRevenue += r;
+                    dayGst += g;
+                    row(line, date, types[i], roomsOfType[i], s, r, g);
+                    out.append(line);
+                }
+                row(line, date, "ALL", totalRooms, daySold, dayRevenue, dayGst);
+                out.append(line);
+            }
+        }
+
+        private static void row(StringBuilder line, String date, String type, int rooms, long sold, long revenue, long gst) {
+            line.setLength(0);
+            line.append(date).append(',').append(csv(type)).append(',').append(rooms).append(',').append(sold).append(',');
+            appendFixed(line, rooms == 0 ? 0 : sold * 10_000 / rooms).append(','); // occupancy, 2 decimals
+            appendFixed(line, sold == 0 ? 0 : revenue / sold).append(',');         // ADR
+            appendFixed(line, rooms == 0 ? 0 : revenue / rooms).append(',');       // RevPAR
+            appendFixed(line, revenue).append(',');
+            appendFixed(line, gst).append('\n');
+        }
+    }
+
+    // Live and archived stays (see ArchiveJob); the history side only reads the years it covers
+    private static final String STAYS_SQL =
+            "SELECT r.reservation_date, r.checkout_date, r.room_number, i.price_per_night_paise, i.tax_rate_bp FROM (" +
+            "SELECT reservation_id, reservation_date, checkout_date, room_number FROM reservations " +
+            "WHERE checkout_date > ? AND reservation_date < ? " +
+            "UNION ALL " +
+            "SELECT reservation_id, reservation_date, checkout_date, room_number FROM reservations_history " +
+            "WHERE checkout_date > ? AND reservation_date < ?" +
+            ") r LEFT JOIN invoices i ON i.reservation_id = r.reservation_id";
+
+    private final ConnectionPool pool;
+    private final RoomCatalog catalog;
+    private final RateCalendar rates;
+    private final TaxSlabs slabs;
+
+    public ReportEngine(ConnectionPool pool, RoomCatalog catalog, RateCalendar rates, TaxSlabs slabs) {
+        this.pool = pool;
+        this.catalog = catalog;
+        this.rates = rates;
+        this.slabs = slabs;
+    }
+
+    /** Builds the report for {@code [from, toExclusive)}. */
+    public Report run(LocalDate from, LocalDate toExclusive) throws SQLException {
+        int days = (int) (toExclusive.toEpochDay() - from.toEpochDay());
+        if (days <= 0) throw new IllegalArgumentException("Report end date must be after the start date.");
+
+        try (Connection c = pool.getConnection()) {
+            catalog.refreshIfChanged(c);
+            rates.refreshIfChanged(c);
+
+            // Room type of each room, as a column index, and capacity per type
+            Map<String, Integer> typeIndex = new LinkedHashMap<>();
+            int[] rooms = catalog.roomNumbers();
+            int[] roomType = new int[rooms.length];
+            for (int i = 0; i < rooms.length; i++) {
+                roomType[i] = typeIndex.computeIfAbsent(catalog.type(rooms[i]), k -> typeIndex.size());
+            }
+            String[] types = typeIndex.keySet().toArray(new String[0]);
+            int[] capacity = new int[types.length];
+            for (int t : roomType) capacity[t]++;
+            long[] price = new long[rooms.length];
+            for (int i = 0; i < rooms.length; i++) price[i] = catalog.pricePaise(rooms[i]);
+            long windowStart = from.toEpochDay();
+            long windowEnd = toExclusive.toEpochDay();
+
+            Report report = new Report(from, days, types, capacity);
+            try (PreparedStatement ps = c.prepareStatement(STAYS_SQL, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                // MySQL streams rows one by one only with this exact fetch size
+                ps.setFetchSize(Integer.MIN_VALUE);
+                for (int i = 1; i <= 4; i += 2) {
+                    ps.setTimestamp(i, Timestamp.valueOf(from.atStartOfDay()));
+                    ps.setTimestamp(i + 1, Timestamp.valueOf(toExclusive.atStartOfDay()));
+                }
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        Timestamp in = rs.getTimestamp(1);
+                        Timestamp out = rs.getTimestamp(2);
+                        int i = java.util.Arrays.binarySearch(rooms, rs.getInt(3));
+                        if (in == null || out == null || i < 0) continue; // room deleted since
+                        long invoicedPrice = rs.getLong(4);
+                        if (rs.wasNull()) {
+                            // Not invoiced: price it as BillingEngine.quote would, from the rate calendar
+                            String type = types[roomType[i]];
+                            long first = Dates.epochDay(in.getTime());
+                            long nights = Dates.nights(in, out);
+                            RateCalendar.Stay stay = rates.stay(type, price[i], first, nights);
+                            int taxRateBp = slabs.rateBp(stay.maxPaise);
+                            if (stay.minPaise == stay.maxPaise) {
+                                report.add(in.getTime(), out.getTime(), roomType[i], stay.maxPaise, taxRateBp);
+                            } else {
+                                long a = Math.max(first, windowStart);
+                                long b = Math.min(first + nights, windowEnd);
+                                if (a < b) report.addNights(a, roomType[i], rates.rates(type, price[i], a, (int) (b - a)), taxRateBp);
+                            }
+                        } else {
+                            report.add(in.getTime(), out.getTime(), roomType[i], invoicedPrice, rs.getInt(5));
+                        }
+                    }
+                }
+            }
+            return report;
+        }
+    }
+
+    private static StringBuilder appendFixed(StringBuilder sb, long hundredths) {
+        if (hundredths < 0) {
+            sb.append('-');
+            hundredths = -hundredths;
+        }
+        long frac = hundredths % 100;
+        return sb.append(hundredths / 100).append('.').append(frac < 10 ? "0" : "").append(frac);
+    }
+
+    static String csv(String s) {
+        return (s.indexOf(',') >= 0 || s.indexOf('"') >= 0) ? '"' + s.replace("\"", "\"\"") + '"' : s;
+    }
+
+    /** {@code java ReportEngine 2024-01-01 2025-01-01 report.csv} (end date exclusive). */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 3) {
+            System.err.println("Usage: java ReportEngine <from yyyy-MM-dd> <to yyyy-MM-dd, exclusive> <out.csv>");
+            System.exit(2);
+        }
+        ConnectionPool pool = DbConfig.newPool(1);
+        long t0 = System.nanoTime();
+        Report report = new ReportEngine(pool, new RoomCatalog(), new RateCalendar(), TaxSlabs.fromConfig()).run(LocalDate.parse(args[0]), LocalDate.parse(args[1]));
+        try (Writer w = Files.newBufferedWriter(Paths.get(args[2]), StandardCharsets.UTF_8)) {
+            report.writeCsv(w);
+        }
+        pool.close();
+        System.out.printf("Report for %d day(s) written to %s in %d ms%n", report.days, args[2], (System.nanoTime() - t0) / 1_000_000);
+    }
+}
@@ -0,0 +1,105 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/** One row of the reservations table, as read by the service, the table model and the API. */
+public final class Reservation {
+
+    static final String COLUMNS =
+            "reservation_id, guest_name, room_number, contact_number, reservation_date, checkout_date, status ";
+    static final String SELECT = "SELECT " + COLUMNS + "FROM reservations ";
+
+    final int id;
+    final String guest;
+    final int room;
+    final String contact;
+    final Timestamp checkIn;
+    final Timestamp checkOut;
+    final String status;
+
+    // Formatted once per row on first paint; Cell is immutable so a racy init is harmless
+    private Dates.Cell checkInCell, checkOutCell;
+
+    Reservation(int id, String guest, int room, String contact, Timestamp checkIn, Timestamp checkOut, String status) {
+        this.id = id;
+        this.guest = guest;
+        this.room = room;
+        this.contact = contact;
+        this.checkIn = checkIn;
+        this.checkOut = checkOut;
+        this.status = status;
+    }
+
+    Reservation(ResultSet rs) throws SQLException {
+        id = rs.getInt("reservation_id");
+        guest = rs.getString("guest_name");
+        room = rs.getInt("room_number");
+        contact = rs.getString("contact_number");
+        checkIn = rs.getTimestamp("reservation_date");
+        checkOut = rs.getTimestamp("checkout_date");
+        status = rs.getString("status");
+    }
+
+    /** The reservation with this id, or null. */
+    static Reservation fetch(Connection c, int id) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement(SELECT + "WHERE reservation_id = ?")) {
+            ps.setInt(1, id);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? new Reservation(rs) : null;
+            }
+        }
+    }
+
+    /** All reservations with these ids (in no particular order). */
+    static List<Reservation> fetchAll(Connection c, int[] ids) throws SQLException {
+        List<Reservation> rows = new ArrayList<>(ids.length);
+        if (ids.length == 0) return rows;
+        String in = String.join(",", java.util.Collections.nCopies(ids.length, "?"));
+        try (PreparedStatement ps = c.prepareStatement(SELECT + "WHERE reservation_id IN (" + in + ")")) {
+            for (int i = 0; i < ids.length; i++) ps.setInt(i + 1, ids[i]);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) rows.add(new Reservation(rs));
+            }
+        }
+        return rows;
+    }
+
+    Dates.Cell checkInCell() {
+        Dates.Cell c = checkInCell;
+        if (c == null && checkIn != null) checkInCell = c = Dates.cell(checkIn);
+        return c;
+    }
+
+    Dates.Cell checkOutCell() {
+        Dates.Cell c = checkOutCell;
+        if (c == null && checkOut != null) checkOutCell = c = Dates.cell(checkOut);
+        return c;
+    }
+
+    boolean isActive() {
+        return "ACTIVE".equals(status);
+    }
+
+    /** Booked or changed at the desk while the database was down, not yet replayed (see OfflineJournal). */
+    boolean isPending() {
+        return status != null && status.startsWith("PENDING");
+    }
+
+    boolean sameAs(Reservation o) {
+        return id == o.id && room == o.room
+                && Objects.equals(guest, o.guest) && Objects.equals(contact, o.contact)
+                && Objects.equals(checkIn, o.checkIn) && Objects.equals(checkOut, o.checkOut)
+                && Objects.equals(status, o.status);
+    }
+
+    /** Negative if {@code a} is listed before {@code b} (newest check-in first, then highest id). */
+    static int order(Reservation a, Reservation b) {
+        int c = b.checkIn.compareTo(a.checkIn);
+        return c != 0 ? c : Integer.compare(b.id, a.id);
+    }
+}
@@ -0,0 +1,611 @@
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * HTTP/JSON front end for {@link ReservationService}, for web and kiosk channels.
+ *
+ * <pre>
+ * GET    /properties                    configured properties (hotels)
+ * GET    /rooms/available?checkIn=2024-01-15&amp;checkOut=2024-01-17[&amp;property=2|all]
+ * GET    /rooms/assign?type=Deluxe&amp;checkIn=2024-01-15&amp;checkOut=2024-01-17[&amp;property=2]   best-fitting free room
+ * GET    /rates?type=Deluxe&amp;from=2024-01-15&amp;days=90[&amp;property=2]   nightly rate and free rooms of a type
+ * GET    /reservations/{id}
+ * POST   /reservations                 guest, contact, room, checkIn, checkOut (form-encoded)
+ * PUT    /reservations/{id}            same fields
+ * DELETE /reservations/{id}
+ * GET    /reservations/{id}/bill        quote while ACTIVE, stored invoice once checked out
+ * POST   /reservations/{id}/checkout    returns the invoice
+ * GET    /changes?after={seq}&amp;wait=25  reservation ids changed since seq (long poll, see ChangeFeed)
+ * </pre>
+ *
+ * The reservation routes act on the default property; prefix them with {@code /properties/{pid}}
+ * for another one (see {@link PropertyRouter}). {@code property=all} searches every property in
+ * parallel; properties that did not answer are named in the {@code X-Unavailable-Properties}
+ * header. Dates are yyyy-MM-dd or yyyy-MM-ddTHH:mm:ss. Errors come back as {@code {"error": "..."}} with
+ * 400 (bad input), 404 (unknown id), 409 (room taken / wrong state) or 500.
+ *
+ * Run headless with {@code java ReservationApiServer [port]}, or alongside the desk app with
+ * {@code -Dhotel.api.port=8080}. The API serves guest names and phone numbers and accepts writes,
+ * so it listens on the loopback address only unless {@code -Dhotel.api.bind} names another (e.g.
+ * 0.0.0.0). With {@code -Dhotel.api.token=...} every request must carry
+ * {@code Authorization: Bearer <token>} or is refused with 401.
+ */
+public class ReservationApiServer {
+
+    private static final int CACHE_REFRESH_SECONDS = 60;
+    // Long polls on /changes: held without a thread; MAX(seq) is checked every CHANGES_CHECK_MS
+    private static final int MAX_WAIT_SECONDS = 25;
+    private static final int MAX_WAITERS = 1_000;
+    private static final long CHANGES_CHECK_MS = 250;
+    private static final int CHANGES_LIMIT = 1_000;
+    private static final String BIND = System.getProperty("hotel.api.bind", "127.0.0.1");
+    private static final String TOKEN = System.getProperty("hotel.api.token", "");
+
+    private final PropertyRouter router;
+    private final int defaultProperty;
+    private final HttpServer server;
+    private final ExecutorService handlers;
+    private final List<Waiter> waiters = new ArrayList<>(); // guarded by itself
+    private final ScheduledExecutorService poller;     // checks parked long polls for changes
+    private final ScheduledExecutorService refresher;  // periodic cache refresh of every property
+
+    public ReservationApiServer(PropertyRouter router, int defaultProperty, int port, int threads) throws IOException {
+        this.router = router;
+        this.defaultProperty = defaultProperty;
+        InetAddress address = InetAddress.getByName(BIND);
+        if (!address.isLoopbackAddress() && TOKEN.isEmpty()) {
+            System.err.println("Warning: the reservation API listens on " + BIND + " without -Dhotel.api.token; anyone who can reach it can read and change bookings");
+        }
+        this.server = HttpServer.create(new InetSocketAddress(address, port), 0);
+        // Java 17 target: a fixed pool of platform threads sized to the connection pool plus headroom
+        AtomicInteger n = new AtomicInteger();
+        this.handlers = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "api-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.poller = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "api-changes");
+            t.setDaemon(true);
+            return t;
+        });
+        this.refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "api-cache-refresh");
+            t.setDaemon(true);
+            return t;
+        });
+        server.setExecutor(handlers);
+        route("/rooms/available", this::handleAvailable);
+        route("/rooms/assign", this::handleAssign);
+        route("/reservations", this::handleReservations);
+        route("/properties", this::handleProperties);
+        route("/rates", this::handleRates);
+        route("/metrics", this::handleMetrics);
+        route("/changes", ex -> respond(ex, () -> changes(ex, defaultProperty)));
+    }
+
+    private void route(String path, HttpHandler handler) {
+        HttpContext context = server.createContext(path, handler);
+        if (!TOKEN.isEmpty()) context.getFilters().add(new TokenCheck());
+    }
+
+    /** Passes on requests carrying {@code Authorization: Bearer <hotel.api.token>}; answers 401 otherwise. */
+    private static final class TokenCheck extends Filter {
+        private final byte[] expected = ("Bearer " + TOKEN).getBytes(StandardCharsets.UTF_8);
+
+        @Override
+        public void doFilter(HttpExchange ex, Chain chain) throws IOException {
+            String given = ex.getRequestHeaders().getFirst("Authorization");
+            if (given != null && MessageDigest.isEqual(expected, given.getBytes(StandardCharsets.UTF_8))) {
+                chain.doFilter(ex);
+                return;
+            }
+            ex.getResponseHeaders().set("WWW-Authenticate", "Bearer");
+            respond(ex, () -> new Reply(401, error("Missing or wrong API token.")));
+        }
+
+        @Override
+        public String description() {
+            return "API token check";
+        }
+    }
+
+    public void start() {
+        server.start();
+        router.openAllInBackground(); // so property=all searches find every property ready
+        poller.scheduleWithFixedDelay(this::answerWaiters, CHANGES_CHECK_MS, CHANGES_CHECK_MS, TimeUnit.MILLISECONDS);
+        // The index only sees this process's writes; re-sync with other desks periodically
+        refresher.scheduleWithFixedDelay(() -> {
+            for (ReservationService service : router.openServices().values()) {
+                try {
+                    service.refreshCaches();
+                } catch (SQLException ignore) {
+                    // keep the previous snapshot; the DB checks still guard every write
+                }
+            }
+        }, CACHE_REFRESH_SECONDS, CACHE_REFRESH_SECONDS, TimeUnit.SECONDS);
+    }
+
+    public void stop() {
+        server.stop(1);
+        poller.shutdownNow();
+        refresher.shutdownNow();
+        handlers.shutdownNow();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    // ---------------- Handlers ----------------
+
+    private void handleAvailable(HttpExchange ex) throws IOException {
+        respond(ex, () -> {
+            requireMethod(ex, "GET");
+            Map<String, String> q = params(ex.getRequestURI().getRawQuery());
+            Timestamp checkIn = date(q, "checkIn");
+            Timestamp checkOut = date(q, "checkOut");
+            StringBuilder sb = new StringBuilder("[");
+            if ("all".equals(q.get("property"))) {
+                PropertyRouter.Availability all = router.availableRooms(checkIn, checkOut);
+                for (Map.Entry<Integer, int[]> e : all.free.entrySet()) {
+                    appendRooms(sb, e.getKey(), router.service(e.getKey()), e.getValue(), checkIn, checkOut);
+                }
+                if (!all.failed.isEmpty()) {
+                    ex.getResponseHeaders().set("X-Unavailable-Properties", String.join(",",
+                            all.failed.keySet().stream().map(String::valueOf).toArray(String[]::new)));
+                }
+            } else {
+                int property = q.containsKey("property") ? intParam(q, "property") : defaultProperty;
+                ReservationService service = router.service(property);
+                appendRooms(sb, property, service, service.availableRooms(checkIn, checkOut), checkIn, checkOut);
+            }
+            return new Reply(200, sb.append(']').toString());
+        });
+    }
+
+    private void handleAssign(HttpExchange ex) throws IOException {
+        respond(ex, () -> {
+            requireMethod(ex, "GET");
+            Map<String, String> q = params(ex.getRequestURI().getRawQuery());
+            Timestamp checkIn = date(q, "checkIn");
+            Timestamp checkOut = date(q, "checkOut");
+            String type = q.get("type");
+            int property = q.containsKey("property") ? intParam(q, "property") : defaultProperty;
+            ReservationService service = router.service(property);
+            int room = service.assignRoom(type == null || type.isEmpty() ? null : type, checkIn, checkOut);
+            StringBuilder sb = new StringBuilder();
+            appendRooms(sb, property, service, new int[]{room}, checkIn, checkOut);
+            return new Reply(200, sb.toString());
+        });
+    }
+
+    private static void appendRooms(StringBuilder sb, int property, ReservationService service, int[] free,
+                                    Timestamp checkIn, Timestamp checkOut) {
+        for (int room : free) {
+            RateCalendar.Stay stay = service.stayRates(room, checkIn, checkOut);
+            if (stay == null) continue;
+            if (sb.length() > 1) sb.append(',');
+            sb.append("{\"property\":").append(property)
+              .append(",\"room\":").append(room)
+              .append(",\"type\":").append(str(service.catalog().type(room)))
+              .append(",\"pricePerNight\":").append(Bill.rupees(service.catalog().pricePaise(room)))
+              .append(",\"minRate\":").append(Bill.rupees(stay.minPaise))
+              .append(",\"maxRate\":").append(Bill.rupees(stay.maxPaise))
+              .append(",\"stayTotal\":").append(Bill.rupees(stay.totalPaise))
+              .append('}');
+        }
+    }
+
+    private void handleRates(HttpExchange ex) throws IOException {
+        respond(ex, () -> {
+            requireMethod(ex, "GET");
+            Map<String, String> q = params(ex.getRequestURI().getRawQuery());
+            String type = q.get("type");
+            if (type == null || type.isEmpty()) throw new IllegalArgumentException("Missing type.");
+            long from = Dates.epochDay(date(q, "from").getTime());
+            int days = q.containsKey("days") ? intParam(q, "days") : 90;
+            int property = q.containsKey("property") ? intParam(q, "property") : defaultProperty;
+            RateCalendar.Nights n = router.service(property).typeCalendar(type, from, days);
+            StringBuilder sb = new StringBuilder("{\"property\":").append(property)
+                    .append(",\"type\":").append(str(n.type))
+                    .append(",\"rooms\":").append(n.rooms)
+                    .append(",\"minRate\":").append(Bill.rupees(n.range.minPaise))
+                    .append(",\"maxRate\":").append(Bill.rupees(n.range.maxPaise))
+                    .append(",\"total\":").append(Bill.rupees(n.range.totalPaise))
+                    .append(",\"minFree\":").append(n.minFree())
+                    .append(",\"nights\":[");
+            for (int i = 0; i < n.free.length; i++) {
+                if (i > 0) sb.append(',');
+                sb.append("{\"date\":\"").append(java.time.LocalDate.ofEpochDay(n.fromDay + i))
+                  .append("\",\"rate\":").append(Bill.rupees(n.ratePaise[i]))
+                  .append(",\"free\":").append(n.free[i]).append('}');
+            }
+            return new Reply(200, sb.append("]}").toString());
+        });
+    }
+
+    private void handleProperties(HttpExchange ex) throws IOException {
+        respond(ex, () -> {
+            String[] parts = ex.getRequestURI().getPath().replaceAll("/+$", "").split("/");
+            // parts: "", "properties", [pid, "reservations", [id], [action]]
+            if (parts.length == 2) {
+                requireMethod(ex, "GET");
+                StringBuilder sb = new StringBuilder("[");
+                for (int id : router.propertyIds()) {
+                    if (sb.length() > 1) sb.append(',');
+                    sb.append("{\"property\":").append(id).append(",\"name\":").append(str(router.name(id))).append('}');
+                }
+                return new Reply(200, sb.append(']').toString());
+            }
+            if (parts.length == 4 && parts[3].equals("changes")) return changes(ex, parsePropertyId(parts[2]));
+            if (parts.length < 4 || !parts[3].equals("reservations")) {
+                return new Reply(404, error("Unknown path " + ex.getRequestURI().getPath()));
+            }
+            return reservations(ex, parsePropertyId(parts[2]), Arrays.copyOfRange(parts, 4, parts.length));
+        });
+    }
+
+    private void handleMetrics(HttpExchange ex) throws IOException {
+        byte[] body = Metrics.shared().text().getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+        ex.sendResponseHeaders(200, body.length);
+        try (OutputStream out = ex.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private void handleReservations(HttpExchange ex) throws IOException {
+        respond(ex, () -> {
+            String[] parts = ex.getRequestURI().getPath().replaceAll("/+$", "").split("/");
+            // parts: "", "reservations", [id], [action]
+            return reservations(ex, defaultProperty, Arrays.copyOfRange(parts, 2, parts.length));
+        });
+    }
+
+    /** {@code rest} is what follows "reservations": nothing, {id} or {id, action}. */
+    private Reply reservations(HttpExchange ex, int property, String[] rest) throws Exception {
+        String method = ex.getRequestMethod();
+        ReservationService service = router.service(property);
+        if (rest.length == 0) {
+            requireMethod(ex, "POST");
+            Map<String, String> f = params(body(ex));
+            Reservation r = service.reserve(f.get("guest"), f.get("contact"), intParam(f, "room"),
+                    date(f, "checkIn"), date(f, "checkOut"));
+            return new Reply(201, json(property, r));
+        }
+        int id = parseId(rest[0]);
+        String action = rest.length > 1 ? rest[1] : "";
+        switch (method + " " + action) {
+            case "GET ": {
+                Reservation r = service.find(id);
+                return r == null ? notFound(id) : new Reply(200, json(property, r));
+            }
+            case "PUT ": {
+                Map<String, String> f = params(body(ex));
+                Reservation r = service.update(id, f.get("guest"), f.get("contact"), intParam(f, "room"),
+                        date(f, "checkIn"), date(f, "checkOut"));
+                return r == null ? notFound(id) : new Reply(200, json(property, r));
+            }
+            case "DELETE ":
+                return service.cancel(id) ? new Reply(204, "") : notFound(id);
+            case "GET bill":
+                return new Reply(200, json(service.bill(id)));
+            case "POST checkout":
+                return new Reply(200, json(service.checkout(id).invoice));
+            default:
+                return new Reply(405, error("Unsupported: " + method + " " + ex.getRequestURI().getPath()));
+        }
+    }
+
+    // ---------------- Change feed ----------------
+
+    private static final class Waiter {
+        final HttpExchange ex;
+        final int property;
+        final long after;
+        final long deadline;
+        final long seen; // newest seq already read for it; it is read again only once the feed passes this
+
+        Waiter(HttpExchange ex, int property, long after, long deadline, long seen) {
+            this.ex = ex;
+            this.property = property;
+            this.after = after;
+            this.deadline = deadline;
+            this.seen = seen;
+        }
+    }
+
+    /**
+     * Without {@code after}: the position to start following from. With it: the changes since,
+     * or, if there are none yet and {@code wait} seconds were asked for, the request is parked
+     * and answered by {@link #answerWaiters} as soon as something changes.
+     */
+    private Reply changes(HttpExchange ex, int property) throws Exception {
+        requireMethod(ex, "GET");
+        Map<String, String> q = params(ex.getRequestURI().getRawQuery());
+        ReservationService service = router.service(property);
+        if (!q.containsKey("after")) {
+            return new Reply(200, "{\"next\":" + service.withConnection(ChangeFeed::start) + ",\"changes\":[]}");
+        }
+        long after = longParam(q, "after");
+        int wait = q.containsKey("wait") ? Math.min(intParam(q, "wait"), MAX_WAIT_SECONDS) : 0;
+        ChangeFeed.Batch batch = service.withConnection(c -> ChangeFeed.read(c, after, CHANGES_LIMIT));
+        if (!batch.changes.isEmpty() || wait <= 0) return new Reply(200, json(batch));
+        synchronized (waiters) {
+            if (waiters.size() >= MAX_WAITERS) return new Reply(200, json(batch));
+            waiters.add(new Waiter(ex, property, after, System.currentTimeMillis() + wait * 1_000L, after));
+        }
+        return PARKED;
+    }
+
+    /**
+     * Finds parked long polls whose property's feed moved past what they last read, or whose wait
+     * ran out, and hands them to the HTTP threads to answer. This thread only runs one MAX(seq)
+     * per property, so a slow client or a slow read can't hold up the other waiters.
+     */
+    private void answerWaiters() {
+        List<Waiter> parked;
+        synchronized (waiters) {
+            if (waiters.isEmpty()) return;
+            parked = new ArrayList<>(waiters);
+        }
+        long now = System.currentTimeMillis();
+        Map<Integer, Long> latest = new HashMap<>();
+        for (Waiter w : parked) {
+            // One cheap MAX(seq) per property per round, however many clients wait on it
+            Long newest = latest.get(w.property);
+            if (newest == null) {
+                try {
+                    newest = router.service(w.property).withConnection(ChangeFeed::latest);
+                } catch (Exception e) {
+                    newest = Long.MAX_VALUE; // let the read fail on a handler thread and report it
+                }
+                latest.put(w.property, newest);
+            }
+            if (newest <= w.seen && now < w.deadline) continue;
+            long upTo = newest;
+            unpark(w);
+            handlers.execute(() -> answer(w, upTo));
+        }
+    }
+
+    /**
+     * Answers one long poll on an HTTP thread. If the changes up to {@code newest} are all behind a
+     * hole that may still be filled, it is parked again until the feed moves on past them.
+     */
+    private void answer(Waiter w, long newest) {
+        try {
+            ChangeFeed.Batch batch = newest > w.after
+                    ? router.service(w.property).withConnection(c -> ChangeFeed.read(c, w.after, CHANGES_LIMIT))
+                    : new ChangeFeed.Batch(new ArrayList<>(), w.after, false);
+            if (batch.changes.isEmpty() && System.currentTimeMillis() < w.deadline) {
+                synchronized (waiters) {
+                    waiters.add(new Waiter(w.ex, w.property, w.after, w.deadline, newest));
+                }
+                return;
+            }
+            respond(w.ex, () -> new Reply(200, json(batch)));
+        } catch (Exception e) {
+            try {
+                respond(w.ex, () -> { throw e; });
+            } catch (IOException gone) {
+                // client hung up
+            }
+        }
+    }
+
+    private void unpark(Waiter w) {
+        synchronized (waiters) {
+            waiters.remove(w);
+        }
+    }
+
+    private static String json(ChangeFeed.Batch b) {
+        StringBuilder sb = new StringBuilder("{\"next\":").append(b.next).append(",\"changes\":[");
+        for (int i = 0; i < b.changes.size(); i++) {
+            ChangeFeed.Change c = b.changes.get(i);
+            if (i > 0) sb.append(',');
+            sb.append("{\"seq\":").append(c.seq).append(",\"id\":").append(c.reservationId)
+              .append(",\"op\":").append(c.deleted ? "\"delete\"" : "\"upsert\"").append('}');
+        }
+        return sb.append("]}").toString();
+    }
+
+    // ---------------- Plumbing ----------------
+
+    private interface Action {
+        Reply run() throws Exception;
+    }
+
+    private static final class Reply {
+        final int status;
+        final String body;
+
+        Reply(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+
+    // The exchange stays open and is answered later from another thread
+    private static final Reply PARKED = new Reply(0, "");
+
+    private static void respond(HttpExchange ex, Action action) throws IOException {
+        Reply reply;
+        try {
+            reply = action.run();
+        } catch (RoomConflictException | IllegalStateException e) {
+            reply = new Reply(409, error(e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            boolean unknown = e.getMessage() != null
+                    && (e.getMessage().startsWith("No reservation found") || e.getMessage().startsWith("Unknown property"));
+            reply = new Reply(unknown ? 404 : 400, error(e.getMessage()));
+        } catch (Exception e) {
+            reply = new Reply(ReservationService.isLockTimeout(e) ? 409 : 500, error(e.getMessage()));
+        }
+        if (reply == PARKED) return;
+        byte[] bytes = reply.body.getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        ex.sendResponseHeaders(reply.status, reply.status == 204 ? -1 : bytes.length);
+        try (OutputStream out = ex.getResponseBody()) {
+            if (reply.status != 204) out.write(bytes);
+        }
+    }
+
+    private static void requireMethod(HttpExchange ex, String method) {
+        if (!method.equals(ex.getRequestMethod())) {
+            throw new IllegalArgumentException("Use " + method + " for " + ex.getRequestURI().getPath());
+        }
+    }
+
+    private static Reply notFound(int id) {
+        return new Reply(404, error("No reservation found for ID " + id));
+    }
+
+    private static String body(HttpExchange ex) throws IOException {
+        try (InputStream in = ex.getRequestBody()) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static Map<String, String> params(String encoded) {
+        Map<String, String> out = new HashMap<>();
+        if (encoded == null || encoded.isEmpty()) return out;
+        for (String pair : encoded.split("&")) {
+            int eq = pair.indexOf('=');
+            String k = eq < 0 ? pair : pair.substring(0, eq);
+            String v = eq < 0 ? "" : pair.substring(eq + 1);
+            out.put(URLDecoder.decode(k, StandardCharsets.UTF_8), URLDecoder.decode(v, StandardCharsets.UTF_8));
+        }
+        return out;
+    }
+
+    private static int parseId(String s) {
+        try {
+            return Integer.parseInt(s);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid Reservation ID.");
+        }
+    }
+
+    private static int parsePropertyId(String s) {
+        try {
+            return Integer.parseInt(s);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid property ID.");
+        }
+    }
+
+    private static long longParam(Map<String, String> p, String name) {
+        String v = p.get(name);
+        try {
+            return Long.parseLong(v);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid or missing '" + name + "'.");
+        }
+    }
+
+    private static int intParam(Map<String, String> p, String name) {
+        String v = p.get(name);
+        try {
+            return Integer.parseInt(v);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid or missing '" + name + "'.");
+        }
+    }
+
+    private static Timestamp date(Map<String, String> p, String name) {
+        String v = p.get(name);
+        if (v == null) throw new IllegalArgumentException("Missing '" + name + "'.");
+        try {
+            return Dates.parse(v);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid date for '" + name + "': " + v);
+        }
+    }
+
+    private static String json(int property, Reservation r) {
+        return "{\"property\":" + property +
+               ",\"id\":" + r.id +
+               ",\"guest\":" + str(r.guest) +
+               ",\"room\":" + r.room +
+               ",\"contact\":" + str(r.contact) +
+               ",\"checkIn\":" + str(r.checkIn == null ? null : r.checkIn.toLocalDateTime().toString()) +
+               ",\"checkOut\":" + str(r.checkOut == null ? null : r.checkOut.toLocalDateTime().toString()) +
+               ",\"status\":" + str(r.status) + "}";
+    }
+
+    private static String json(Bill b) {
+        return "{" + (b.isIssued() ? "\"invoiceNo\":" + b.invoiceNo + ",\"issuedAt\":" + str(Dates.format(b.issuedAt)) + "," : "") +
+               "\"reservationId\":" + b.reservationId +
+               ",\"room\":" + b.room +
+               ",\"nights\":" + b.nights +
+               ",\"pricePerNight\":" + Bill.rupees(b.pricePerNightPaise) +
+               ",\"subtotal\":" + Bill.rupees(b.subtotalPaise) +
+               ",\"gstRate\":" + str(TaxSlabs.percent(b.taxRateBp)) +
+               ",\"gst\":" + Bill.rupees(b.gstPaise) +
+               ",\"total\":" + Bill.rupees(b.totalPaise) + "}";
+    }
+
+    private static String error(String message) {
+        return "{\"error\":" + str(message) + "}";
+    }
+
+    private static String str(String s) {
+        if (s == null) return "null";
+        StringBuilder sb = new StringBuilder(s.length() + 2).append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (c < 0x20) sb.append(String.format("\\u%04x", (int) c)); else sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    // ---------------- main ----------------
+
+    /** Headless mode: API only, no Swing. */
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        int poolSize = Integer.getInteger("hotel.db.poolSize", 16);
+        PropertyRouter router = PropertyRouter.fromConfig(poolSize);
+        router.loadAll();
+        int defaultProperty = Integer.getInteger("hotel.property", PropertyRouter.DEFAULT_PROPERTY);
+        ReservationApiServer api = new ReservationApiServer(router, defaultProperty, port, poolSize * 2);
+        api.start();
+        System.out.println("Reservation API listening on " + BIND + ":" + api.getPort() + " for " + router.propertyIds().size() + " property(ies)");
+    }
+}
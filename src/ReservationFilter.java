@@ -0,0 +1,106 @@
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * What the reservations table is showing: the Current/All/Archived view plus the search bar's
+ * criteria. Immutable; every criterion is optional. The Archived view reads reservations_history
+ * (see {@link ArchiveJob}), which has the same search indexes.
+ *
+ * Each criterion maps to a sargable, parameterized condition covered by an index from
+ * db/migration/V2__search_indexes.sql:
+ * <ul>
+ *   <li>guest name prefix: {@code guest_name LIKE 'abc%'} on (guest_name)</li>
+ *   <li>contact prefix: {@code contact_number LIKE '98%'} on (contact_number)</li>
+ *   <li>room and/or dates: {@code room_number = ? AND status = ? AND reservation_date < ? AND checkout_date > ?}
+ *       on (room_number, status, reservation_date, checkout_date)</li>
+ * </ul>
+ * {@link #matches} applies the same test in memory so row-level updates respect the filter.
+ */
+public final class ReservationFilter {
+
+    static final ReservationFilter ALL = new ReservationFilter(false, null, null, null, null, null);
+
+    final boolean activeOnly;
+    final boolean archived;     // read reservations_history instead of the live table
+    final String guestPrefix;   // null = any
+    final String contactPrefix; // null = any
+    final Integer room;         // null = any
+    final Timestamp from;       // stays overlapping [from, to); null = open-ended
+    final Timestamp to;
+
+    ReservationFilter(boolean activeOnly, String guestPrefix, String contactPrefix, Integer room, Timestamp from, Timestamp to) {
+        this(activeOnly, false, guestPrefix, contactPrefix, room, from, to);
+    }
+
+    private ReservationFilter(boolean activeOnly, boolean archived, String guestPrefix, String contactPrefix, Integer room,
+                              Timestamp from, Timestamp to) {
+        this.activeOnly = activeOnly;
+        this.archived = archived;
+        this.guestPrefix = blankToNull(guestPrefix);
+        this.contactPrefix = blankToNull(contactPrefix);
+        this.room = room;
+        this.from = from;
+        this.to = to;
+    }
+
+    ReservationFilter withActiveOnly(boolean active) {
+        return new ReservationFilter(active, archived, guestPrefix, contactPrefix, room, from, to);
+    }
+
+    /** The same criteria against the archive (nothing there is ACTIVE, so activeOnly is dropped). */
+    ReservationFilter withArchived(boolean archive) {
+        return new ReservationFilter(activeOnly && !archive, archive, guestPrefix, contactPrefix, room, from, to);
+    }
+
+    /** The table the rows come from. */
+    String table() {
+        return archived ? "reservations_history" : "reservations";
+    }
+
+    /** SQL conditions (joined with AND by the caller), in the order {@link #bind} fills them. */
+    List<String> conditions() {
+        List<String> conds = new ArrayList<>(6);
+        if (room != null) conds.add("room_number = ? ");
+        if (activeOnly) conds.add("status = 'ACTIVE' ");
+        if (to != null) conds.add("reservation_date < ? ");
+        if (from != null) conds.add("checkout_date > ? ");
+        if (guestPrefix != null) conds.add("guest_name LIKE ? ESCAPE '!' ");
+        if (contactPrefix != null) conds.add("contact_number LIKE ? ESCAPE '!' ");
+        return conds;
+    }
+
+    /** Binds the parameters of {@link #conditions} starting at index {@code i}; returns the next index. */
+    int bind(PreparedStatement ps, int i) throws SQLException {
+        if (room != null) ps.setInt(i++, room);
+        if (to != null) ps.setTimestamp(i++, to);
+        if (from != null) ps.setTimestamp(i++, from);
+        if (guestPrefix != null) ps.setString(i++, likePrefix(guestPrefix));
+        if (contactPrefix != null) ps.setString(i++, likePrefix(contactPrefix));
+        return i;
+    }
+
+    boolean matches(Reservation r) {
+        if (archived) return false; // live rows (all that row-level updates carry) never belong here
+        if (activeOnly && !r.isActive() && !r.isPending()) return false;
+        if (room != null && r.room != room) return false;
+        if (to != null && (r.checkIn == null || !r.checkIn.before(to))) return false;
+        if (from != null && (r.checkOut == null || !r.checkOut.after(from))) return false;
+        // The column collation is case-insensitive, so compare the same way
+        if (guestPrefix != null && (r.guest == null
+                || !r.guest.toLowerCase(Locale.ROOT).startsWith(guestPrefix.toLowerCase(Locale.ROOT)))) return false;
+        if (contactPrefix != null && (r.contact == null || !r.contact.startsWith(contactPrefix))) return false;
+        return true;
+    }
+
+    private static String likePrefix(String s) {
+        return s.replace("!", "!!").replace("%", "!%").replace("_", "!_") + "%";
+    }
+
+    private static String blankToNull(String s) {
+        return (s == null || s.isBlank()) ? null : s.trim();
+    }
+}
@@ -0,0 +1,518 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Reservation business logic with no UI dependencies.
+ *
+ * Used by the Swing desk app, the HTTP API and the command-line tools alike. Every method is
+ * blocking and thread-safe; callers on the EDT must run them on a background thread. Bad input is
+ * reported as {@link IllegalArgumentException}, an operation that doesn't fit the reservation's
+ * state as {@link IllegalStateException}, and a double booking as {@link RoomConflictException}.
+ */
+public class ReservationService {
+
+    /** Work that needs a connection. */
+    public interface SqlWork<T> {
+        T run(Connection connection) throws SQLException;
+    }
+
+    /** A checked-out reservation as stored, and the invoice issued for it. */
+    public static final class Checkout {
+        final Reservation row;
+        final Bill invoice;
+
+        Checkout(Reservation row, Bill invoice) {
+            this.row = row;
+            this.invoice = invoice;
+        }
+    }
+
+    static final int MAX_CALENDAR_DAYS = 366;
+    // The index follows the change feed; a full reload from the table backs it up this often
+    static final long RECONCILE_MS = Long.getLong("hotel.cache.reconcileMs", 15 * 60_000);
+    private static final int FEED_LIMIT = 500;
+
+    private final ConnectionPool pool;
+    private final RoomCatalog catalog;
+    private final AvailabilityIndex availability;
+    private final RateCalendar rates;
+    private final BillingEngine billing;
+    private final Object feedLock = new Object();
+    private long feedPosition = -1; // guarded by feedLock; -1 until the index was loaded through loadIndex
+    private long reconciledAt;
+
+    public ReservationService(ConnectionPool pool) {
+        this(pool, new BillingEngine(TaxSlabs.fromConfig()));
+    }
+
+    public ReservationService(ConnectionPool pool, BillingEngine billing) {
+        this.pool = pool;
+        this.catalog = new RoomCatalog();
+        this.availability = new AvailabilityIndex();
+        this.rates = new RateCalendar();
+        this.billing = billing;
+    }
+
+    public ConnectionPool pool() { return pool; }
+    public RoomCatalog catalog() { return catalog; }
+    public AvailabilityIndex availability() { return availability; }
+    public RateCalendar rates() { return rates; }
+
+    // ---------------- Caches ----------------
+
+    /** Loads the room catalog, rate calendar and availability index from scratch. */
+    public void loadCaches() throws SQLException {
+        withConnection(c -> {
+            catalog.load(c);
+            rates.load(c);
+            loadIndex(c);
+            ChangeFeed.checkTransactionList(c);
+            return null;
+        });
+    }
+
+    /**
+     * Picks up room and rate edits (cheap checksum queries) and brings the index up to date from
+     * the change feed; true if rooms changed. The index is reloaded in full instead when rooms
+     * changed, the feed has too much to catch up on, or it was last reloaded {@link #RECONCILE_MS}
+     * ago, which also repairs anything the feed missed.
+     */
+    public boolean refreshCaches() throws SQLException {
+        return withConnection(c -> {
+            boolean roomsChanged = catalog.refreshIfChanged(c);
+            rates.refreshIfChanged(c);
+            synchronized (feedLock) {
+                if (roomsChanged || feedPosition < 0 || System.currentTimeMillis() - reconciledAt >= RECONCILE_MS
+                        || !followFeed(c)) {
+                    loadIndex(c);
+                }
+            }
+            ChangeFeed.purge(c); // piggybacks on the periodic refresh; a few indexed deletes at most
+            return roomsChanged;
+        });
+    }
+
+    /** Reloads the index from the table and restarts the feed from just before the load. */
+    private void loadIndex(Connection c) throws SQLException {
+        synchronized (feedLock) {
+            long position = ChangeFeed.start(c); // changes after it are replayed on top; that is harmless
+            availability.load(c, catalog.roomNumbers());
+            feedPosition = position;
+            reconciledAt = System.currentTimeMillis();
+        }
+    }
+
+    /** Applies the feed since the last refresh to the index; false if it is too far behind to bother. */
+    private boolean followFeed(Connection c) throws SQLException {
+        ChangeFeed.Batch batch = ChangeFeed.read(c, feedPosition, FEED_LIMIT);
+        if (batch.full) return false;
+        if (batch.next == feedPosition) return true;
+        List<Reservation> rows = Reservation.fetchAll(c, batch.upsertedIds());
+        Set<Integer> gone = new HashSet<>();
+        for (int id : batch.deletedIds()) gone.add(id);
+        for (int id : batch.upsertedIds()) gone.add(id); // unless fetched below: deleted since
+        for (Reservation r : rows) gone.remove(r.id);
+        applyChanges(rows, gone.stream().mapToInt(Integer::intValue).toArray());
+        feedPosition = batch.next;
+        return true;
+    }
+
+    /** Keeps the availability index in step with rows changed or deleted elsewhere (other desks, API). */
+    public void applyChanges(List<Reservation> rows, int[] deletedIds) {
+        for (Reservation r : rows) {
+            if (r.isActive()) {
+                availability.put(r.id, r.room, r.checkIn.getTime(), r.checkOut.getTime());
+            } else {
+                availability.remove(r.id);
+            }
+        }
+        for (int id : deletedIds) availability.remove(id);
+    }
+
+    // ---------------- Queries ----------------
+
+    /** The reservation with this id, or null. */
+    public Reservation find(int id) throws SQLException {
+        return withConnection(c -> Reservation.fetch(c, id));
+    }
+
+    /** The reservation booked under this client reference, or null. */
+    public Reservation findByClientRef(String clientRef) throws SQLException {
+        return withConnection(c -> fetchByClientRef(c, clientRef));
+    }
+
+    private static Reservation fetchByClientRef(Connection c, String clientRef) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement(Reservation.SELECT + "WHERE client_ref = ?")) {
+            ps.setString(1, clientRef);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? new Reservation(rs) : null;
+            }
+        }
+    }
+
+    /** Room numbers with no ACTIVE booking overlapping [checkIn, checkOut), ascending. */
+    public int[] availableRooms(Timestamp checkIn, Timestamp checkOut) throws SQLException {
+        checkDates(checkIn, checkOut);
+        if (!catalog.isLoaded() || !availability.isLoaded()) loadCaches();
+        return availability.freeRooms(checkIn.getTime(), checkOut.getTime());
+    }
+
+    /**
+     * The free room of {@code type} (any type if null) that fits [checkIn, checkOut) best: the one
+     * leaving the fewest free nights stranded around the stay (see {@link RoomAssigner}). Picked
+     * from the cached index like {@link #availableRooms}; the booking itself is checked as usual.
+     */
+    public int assignRoom(String type, Timestamp checkIn, Timestamp checkOut) throws SQLException {
+        checkDates(checkIn, checkOut);
+        if (!catalog.isLoaded() || !availability.isLoaded()) loadCaches();
+        int[] rooms = type == null ? catalog.roomNumbers() : catalog.roomsOfType(type);
+        if (type != null && rooms.length == 0) throw new IllegalArgumentException("Unknown room type '" + type + "'.");
+        int room = RoomAssigner.bestFit(availability, rooms, checkIn.getTime(), checkOut.getTime(),
+                Dates.epochDay(System.currentTimeMillis()));
+        if (room < 0) {
+            throw new IllegalStateException("No " + (type == null ? "" : type + " ") + "room is free for these dates.");
+        }
+        return room;
+    }
+
+    /**
+     * The nightly rates of staying in {@code room} over [checkIn, checkOut), from the cached
+     * catalog and rate calendar; null for a room not in the catalog.
+     */
+    public RateCalendar.Stay stayRates(int room, Timestamp checkIn, Timestamp checkOut) {
+        long base = catalog.pricePaise(room);
+        if (base < 0) return null;
+        return rates.stay(catalog.type(room), base, Dates.epochDay(checkIn.getTime()), Dates.nights(checkIn, checkOut));
+    }
+
+    /** Rack rate and free rooms of one room type for each of {@code days} nights from {@code fromDay} (an epoch day). */
+    public RateCalendar.Nights typeCalendar(String type, long fromDay, int days) throws SQLException {
+        if (days < 1 || days > MAX_CALENDAR_DAYS) {
+            throw new IllegalArgumentException("Days must be between 1 and " + MAX_CALENDAR_DAYS + ".");
+        }
+        if (!catalog.isLoaded() || !rates.isLoaded() || !availability.isLoaded()) loadCaches();
+        long base = catalog.typePricePaise(type);
+        if (base < 0) throw new IllegalArgumentException("Unknown room type '" + type + "'.");
+        int[] rooms = catalog.roomsOfType(type);
+        return new RateCalendar.Nights(type, fromDay, rooms.length, rates.rates(type, base, fromDay, days),
+                availability.freeByNight(rooms, fromDay, days), rates.stay(type, base, fromDay, days));
+    }
+
+    /**
+     * For an ACTIVE reservation, the bill as it would be charged now; once checked out, the
+     * invoice stored at checkout (a reprint, never recomputed).
+     */
+    public Bill bill(int id) throws SQLException {
+        return withConnection("bill", c -> {
+            Reservation r = Reservation.fetch(c, id);
+            if (r == null) {
+                // Archived stays are no longer in reservations, but their invoices are kept
+                Bill invoice = billing.find(c, id);
+                if (invoice != null) return invoice;
+                throw new IllegalArgumentException("No reservation found for ID " + id);
+            }
+            if (!r.isActive()) {
+                Bill invoice = billing.find(c, id);
+                if (invoice == null) {
+                    throw new IllegalStateException("Reservation " + id + " is not ACTIVE (current status: " + r.status + ") and has no stored invoice.");
+                }
+                return invoice;
+            }
+            return quote(c, r);
+        });
+    }
+
+    /**
+     * The bill priced from the cached room catalog and rate calendar alone, for when the database
+     * is unreachable. Returns null if the room isn't in the catalog.
+     */
+    public Bill estimate(Reservation r) {
+        RateCalendar.Stay stay = stayRates(r.room, r.checkIn, r.checkOut);
+        return stay == null ? null : billing.quote(r, stay);
+    }
+
+    private Bill quote(Connection c, Reservation r) throws SQLException {
+        if (r.checkIn == null || r.checkOut == null || !r.checkOut.after(r.checkIn)) {
+            throw new IllegalStateException("Invalid check-in/checkout dates for this reservation.");
+        }
+        // Nightly rates come from the cached catalog and calendar; re-check the table only for a room we don't know yet
+        if (!catalog.contains(r.room)) catalog.refreshIfChanged(c);
+        if (!rates.isLoaded()) rates.load(c);
+        RateCalendar.Stay stay = stayRates(r.room, r.checkIn, r.checkOut);
+        if (stay == null) throw new IllegalStateException("Room " + r.room + " not found in rooms table.");
+        return billing.quote(r, stay);
+    }
+
+    // ---------------- Mutations ----------------
+
+    /** Books a room; the overlap check and insert run as one transaction under a room lock. */
+    public Reservation reserve(String guest, String contact, int room, Timestamp checkIn, Timestamp checkOut) throws SQLException {
+        return reserve(guest, contact, room, checkIn, checkOut, null);
+    }
+
+    /**
+     * Books a room under a client reference (e.g. from the offline journal). If a reservation with
+     * that reference already exists it is returned as is, so retrying the same request is safe.
+     */
+    public Reservation reserve(String guest, String contact, int room, Timestamp checkIn, Timestamp checkOut,
+                               String clientRef) throws SQLException {
+        if (clientRef != null) {
+            Reservation earlier = findByClientRef(clientRef);
+            if (earlier != null) return earlier;
+        }
+        precheck(-1, guest, contact, room, checkIn, checkOut);
+
+        Reservation r = inTransaction("reserve", c -> {
+            lockRoom(c, room);
+            if (clientRef != null) {
+                // Re-check under the room lock: a retry of the same reference always targets this room
+                Reservation earlier = fetchByClientRef(c, clientRef);
+                if (earlier != null) return earlier;
+            }
+            checkNoOverlap(c, room, checkIn, checkOut, -1);
+
+            String insert = "INSERT INTO reservations (guest_name, room_number, contact_number, reservation_date, checkout_date, status, client_ref) " +
+                            "VALUES (?, ?, ?, ?, ?, 'ACTIVE', ?)";
+            try (PreparedStatement ps = c.prepareStatement(insert, Statement.RETURN_GENERATED_KEYS)) {
+                ps.setString(1, guest);
+                ps.setInt(2, room);
+                ps.setString(3, contact);
+                ps.setTimestamp(4, checkIn);
+                ps.setTimestamp(5, checkOut);
+                ps.setString(6, clientRef);
+                if (ps.executeUpdate() == 0) throw new SQLException("Failed to save reservation.");
+                try (ResultSet keys = ps.getGeneratedKeys()) {
+                    if (!keys.next()) throw new SQLException("Failed to save reservation.");
+                    return Reservation.fetch(c, keys.getInt(1));
+                }
+            }
+        });
+        availability.put(r.id, room, checkIn.getTime(), checkOut.getTime());
+        return r;
+    }
+
+    /** Changes a reservation; returns null if there is no such id. */
+    public Reservation update(int id, String guest, String contact, int room, Timestamp checkIn, Timestamp checkOut) throws SQLException {
+        precheck(id, guest, contact, room, checkIn, checkOut);
+
+        Reservation r = inTransaction("update", c -> {
+            lockRoom(c, room);
+            checkNoOverlap(c, room, checkIn, checkOut, id);
+
+            String sql = "UPDATE reservations SET guest_name = ?, room_number = ?, contact_number = ?, reservation_date = ?, checkout_date = ? WHERE reservation_id = ?";
+            try (PreparedStatement ps = c.prepareStatement(sql)) {
+                ps.setString(1, guest);
+                ps.setInt(2, room);
+                ps.setString(3, contact);
+                ps.setTimestamp(4, checkIn);
+                ps.setTimestamp(5, checkOut);
+                ps.setInt(6, id);
+                if (ps.executeUpdate() == 0) return null;
+            }
+            return Reservation.fetch(c, id);
+        });
+        if (r != null) availability.update(id, room, checkIn.getTime(), checkOut.getTime());
+        return r;
+    }
+
+    /**
+     * Moves an ACTIVE reservation from {@code fromRoom} to {@code toRoom}, changing nothing else;
+     * returns null if it is gone or no longer has that room and those dates. The new room is
+     * locked and checked for overlaps, and the reservation is matched on its room and dates in
+     * the same transaction, so an edit made at a desk meanwhile is neither undone nor overwritten.
+     */
+    public Reservation moveRoom(int id, int fromRoom, int toRoom, Timestamp checkIn, Timestamp checkOut) throws SQLException {
+        if (availability.findOverlap(toRoom, checkIn.getTime(), checkOut.getTime(), id) >= 0) {
+            throw new RoomConflictException(toRoom, checkIn, checkOut);
+        }
+        Reservation r = inTransaction("moveRoom", c -> {
+            lockRoom(c, toRoom);
+            checkNoOverlap(c, toRoom, checkIn, checkOut, id);
+            try (PreparedStatement ps = c.prepareStatement(
+                    "/* moveRoom */ UPDATE reservations SET room_number = ? WHERE reservation_id = ? AND room_number = ? " +
+                    "AND reservation_date = ? AND checkout_date = ? AND status = 'ACTIVE'")) {
+                ps.setInt(1, toRoom);
+                ps.setInt(2, id);
+                ps.setInt(3, fromRoom);
+                ps.setTimestamp(4, checkIn);
+                ps.setTimestamp(5, checkOut);
+                if (ps.executeUpdate() == 0) return null;
+            }
+            return Reservation.fetch(c, id);
+        });
+        if (r != null) availability.update(id, toRoom, checkIn.getTime(), checkOut.getTime());
+        return r;
+    }
+
+    /** Deletes a reservation; false if there is no such id. */
+    public boolean cancel(int id) throws SQLException {
+        int rows = withConnection(c -> {
+            try (PreparedStatement ps = c.prepareStatement("DELETE FROM reservations WHERE reservation_id = ?")) {
+                ps.setInt(1, id);
+                return ps.executeUpdate();
+            }
+        });
+        availability.remove(id);
+        return rows > 0;
+    }
+
+    /**
+     * Marks an ACTIVE reservation CHECKED_OUT and stores its invoice, in one transaction; returns
+     * both. The invoice is also available from {@link #bill} afterwards without a query.
+     */
+    public Checkout checkout(int id) throws SQLException {
+        Checkout done = inTransaction("checkout", c -> {
+            Reservation r;
+            try (PreparedStatement ps = c.prepareStatement("/* checkoutLock */ " + Reservation.SELECT + "WHERE reservation_id = ? FOR UPDATE")) {
+                ps.setInt(1, id);
+                try (ResultSet rs = ps.executeQuery()) {
+                    r = rs.next() ? new Reservation(rs) : null;
+                }
+            }
+            if (r == null) throw new IllegalArgumentException("No reservation found for ID " + id);
+            if (!r.isActive()) {
+                throw new IllegalStateException("Reservation " + id + " is not ACTIVE (current status: " + r.status + ").");
+            }
+            Bill invoice = billing.issue(c, quote(c, r));
+            try (PreparedStatement upd = c.prepareStatement(
+                    "/* checkoutUpdate */ UPDATE reservations SET status = 'CHECKED_OUT' WHERE reservation_id = ?")) {
+                upd.setInt(1, id);
+                upd.executeUpdate();
+            }
+            return new Checkout(Reservation.fetch(c, id), invoice);
+        });
+        billing.remember(done.invoice);
+        availability.remove(id);
+        return done;
+    }
+
+    /** Books a whole group or nothing; see {@link GroupBooking}. */
+    public GroupBooking.Result bookGroup(List<GroupBooking.Entry> entries) throws SQLException {
+        GroupBooking.Result result = inTransaction("bookGroup", c -> GroupBooking.commit(c, entries));
+        if (result.ok()) {
+            for (int i = 0; i < entries.size(); i++) {
+                GroupBooking.Entry e = entries.get(i);
+                if (result.ids[i] > 0) availability.put(result.ids[i], e.room, e.checkIn.getTime(), e.checkOut.getTime());
+            }
+        }
+        return result;
+    }
+
+    /** The stored rows for these ids, e.g. after a group booking. */
+    public List<Reservation> findAll(int[] ids) throws SQLException {
+        return withConnection(c -> Reservation.fetchAll(c, ids));
+    }
+
+    // ---------------- Helpers ----------------
+
+    public <T> T withConnection(SqlWork<T> work) throws SQLException {
+        try (Connection c = pool.getConnection()) {
+            return work.run(c);
+        }
+    }
+
+    /** {@link #withConnection} timed as {@code op:<name>} in {@link Metrics}, connection wait included. */
+    private <T> T withConnection(String op, SqlWork<T> work) throws SQLException {
+        long t0 = System.nanoTime();
+        try {
+            return withConnection(work);
+        } finally {
+            Metrics.shared().record("op:" + op, System.nanoTime() - t0);
+        }
+    }
+
+    /** Like {@link #withConnection} but commits on success and rolls back on any failure. */
+    public <T> T inTransaction(SqlWork<T> work) throws SQLException {
+        return inTransaction(null, work);
+    }
+
+    private <T> T inTransaction(String op, SqlWork<T> work) throws SQLException {
+        SqlWork<T> tx = c -> {
+            c.setAutoCommit(false);
+            try {
+                T result = work.run(c);
+                c.commit();
+                return result;
+            } catch (SQLException | RuntimeException e) {
+                c.rollback();
+                throw e;
+            } finally {
+                c.setAutoCommit(true);
+            }
+        };
+        return op == null ? withConnection(tx) : withConnection(op, tx);
+    }
+
+    /** MySQL lock wait timeout (1205) or deadlock (1213): the room is busy, not broken. */
+    public static boolean isLockTimeout(Exception e) {
+        if (!(e instanceof SQLException)) return false;
+        int code = ((SQLException) e).getErrorCode();
+        return code == 1205 || code == 1213;
+    }
+
+    /**
+     * Validates a booking or change of {@code excludeId} (-1 for a new one) against the form rules
+     * and the availability index only. Writes repeat the overlap check in the database; the
+     * offline journal relies on this alone.
+     */
+    public void precheck(int excludeId, String guest, String contact, int room, Timestamp checkIn, Timestamp checkOut)
+            throws RoomConflictException {
+        checkFields(guest, contact);
+        checkDates(checkIn, checkOut);
+        // In-memory pre-check saves a round trip for the common "already taken" case
+        if (availability.findOverlap(room, checkIn.getTime(), checkOut.getTime(), excludeId) >= 0) {
+            throw new RoomConflictException(room, checkIn, checkOut);
+        }
+    }
+
+    private static void checkFields(String guest, String contact) {
+        if (guest == null || guest.isBlank() || contact == null || contact.isBlank()) {
+            throw new IllegalArgumentException("Please fill Guest name, contact and choose a room.");
+        }
+    }
+
+    private static void checkDates(Timestamp checkIn, Timestamp checkOut) {
+        if (checkIn == null || checkOut == null || !checkOut.after(checkIn)) {
+            throw new IllegalArgumentException("Checkout date must be after Check-in date.");
+        }
+    }
+
+    /**
+     * Takes a row lock on the room until the transaction ends. Bookings for the same room queue
+     * behind it; bookings for other rooms are unaffected. The overlap SELECT that follows opens
+     * its read view only after the lock is granted, so it sees the previous holder's insert.
+     */
+    private static void lockRoom(Connection c, int room) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement(
+                "/* lockRoom */ SELECT room_number FROM rooms WHERE room_number = ? FOR UPDATE")) {
+            ps.setInt(1, room);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) throw new IllegalArgumentException("Room " + room + " does not exist.");
+            }
+        }
+    }
+
+    // Check overlapping booking for the room (only against ACTIVE reservations)
+    private static void checkNoOverlap(Connection c, int room, Timestamp checkIn, Timestamp checkOut, int excludeId) throws SQLException {
+        String sql =
+                "/* overlapCheck */ SELECT reservation_id FROM reservations " +
+                "WHERE room_number = ? AND status = 'ACTIVE' AND reservation_id <> ? " +
+                "AND (checkout_date > ? AND reservation_date < ?)"; // overlap condition
+        try (PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setInt(1, room);
+            ps.setInt(2, excludeId);
+            ps.setTimestamp(3, checkIn);
+            ps.setTimestamp(4, checkOut);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) throw new RoomConflictException(room, checkIn, checkOut);
+            }
+        }
+    }
+}
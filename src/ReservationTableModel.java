@@ -0,0 +1,504 @@
+import javax.swing.table.AbstractTableModel;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Table model that pages reservations in from the database as the table asks for rows.
+ *
+ * The row count comes from a COUNT(*) query; rows are fetched a page at a time, newest first,
+ * using keyset pagination on (reservation_date, reservation_id) and never OFFSET: a page is read
+ * by seeking from the nearest page boundary whose key is known, forward or (in reverse order,
+ * flipped) backward, and the bottom of the table is a known boundary too. For a jump far from
+ * any of them the keys of all page boundaries are sampled once. Only the most recently used
+ * pages are kept in memory. All state is touched on the EDT only: JTable calls getValueAt there
+ * and page results are delivered there by the {@link DbExecutor}.
+ *
+ * After a mutation the caller passes the changed row to {@link #upsert} or {@link #remove}, which
+ * patch the cached pages and fire a single-row event, so selection and scroll position survive.
+ * {@link #pollChanges} picks up rows other desks changed or deleted, via the change feed.
+ */
+public class ReservationTableModel extends AbstractTableModel {
+
+    static final String[] COLUMNS = {"ID", "Guest Name", "Room", "Contact", "Check-in", "Checkout", "Status"};
+    // Typed so renderers and any row sorter compare ids/rooms as numbers and dates by time
+    private static final Class<?>[] COLUMN_TYPES = {
+            Integer.class, String.class, Integer.class, String.class, Dates.Cell.class, Dates.Cell.class, String.class};
+
+    private static final int PAGE_SIZE = 200;
+    private static final int MAX_CACHED_PAGES = 16;
+    private static final int POLL_LIMIT = 500;
+    private static final int MAX_WALK = 3; // pages read on the way to a requested one before sampling keys instead
+
+    private static final String SELECT = "SELECT " + Reservation.COLUMNS + "FROM ";
+    private static final String ORDER = "ORDER BY reservation_date DESC, reservation_id DESC ";
+    private static final String REVERSE_ORDER = "ORDER BY reservation_date ASC, reservation_id ASC ";
+    // Rows strictly after / before the given (reservation_date, reservation_id) in ORDER
+    private static final String AFTER_KEY =
+            "(reservation_date < ? OR (reservation_date = ? AND reservation_id < ?)) ";
+    private static final String BEFORE_KEY =
+            "(reservation_date > ? OR (reservation_date = ? AND reservation_id > ?)) ";
+
+    private final ConnectionPool pool;
+    private final DbExecutor db;
+    private final Consumer<Exception> onError;
+
+    private ReservationFilter filter = ReservationFilter.ALL;
+    private int rowCount;
+    private int epoch; // bumped on reload so late page results for an old view are ignored
+
+    // LRU of loaded pages
+    private final Map<Integer, List<Reservation>> pages = new LinkedHashMap<>(32, 0.75f, true) {
+        @Override protected boolean removeEldestEntry(Map.Entry<Integer, List<Reservation>> eldest) {
+            return size() > MAX_CACHED_PAGES;
+        }
+    };
+    // Keys of the last and first row of every page fetched (or sampled) so far; tiny, so kept even
+    // after a page is evicted. version is bumped whenever rows move between pages.
+    private final TreeMap<Integer, Reservation> pageEnds = new TreeMap<>();
+    private final TreeMap<Integer, Reservation> pageStarts = new TreeMap<>();
+    private int version;
+    private final Set<Integer> pending = new HashSet<>();
+    private final Set<Integer> waitingForKeys = new HashSet<>(); // pending pages with no known key nearby
+    private boolean sampling;
+    // Statements currently executing on db workers, so a new search can cancel them
+    private final Set<Statement> running = ConcurrentHashMap.newKeySet();
+    private long feedPosition = -1; // change feed seq seen up to; -1 until the first reload
+
+    private static Object cell(Reservation r, int col) {
+        switch (col) {
+            case 0: return r.id;
+            case 1: return r.guest;
+            case 2: return r.room;
+            case 3: return r.contact;
+            case 4: return r.checkInCell();
+            case 5: return r.checkOutCell();
+            case 6: return r.status;
+            default: return null;
+        }
+    }
+
+    public ReservationTableModel(ConnectionPool pool, DbExecutor db, Consumer<Exception> onError) {
+        this.pool = pool;
+        this.db = db;
+        this.onError = onError;
+    }
+
+    /**
+     * Shows the rows matching {@code filter}. Queries still running for the previous view are
+     * cancelled on the server, so fast typing in the search bar doesn't pile up work.
+     */
+    public void reload(ReservationFilter filter) {
+        this.filter = filter;
+        final int myEpoch = ++epoch;
+        pages.clear();
+        pageEnds.clear();
+        pageStarts.clear();
+        pending.clear();
+        waitingForKeys.clear();
+        sampling = false;
+        cancelRunning();
+
+        final String sql = "/* tableCount */ SELECT COUNT(*) FROM " + filter.table() + " " + where(filter, null);
+        db.submit("table", () -> {
+            try (Connection c = pool.getConnection()) {
+                // Taken before counting, so nothing committed meanwhile is missed by the next poll
+                long position = ChangeFeed.start(c);
+                try (PreparedStatement ps = c.prepareStatement(sql)) {
+                    filter.bind(ps, 1);
+                    try (ResultSet rs = executeTracked(ps)) {
+                        rs.next();
+                        return new long[]{rs.getInt(1), position};
+                    }
+                }
+            }
+        }, countAndPosition -> {
+            if (myEpoch != epoch) return;
+            rowCount = (int) countAndPosition[0];
+            feedPosition = countAndPosition[1];
+            fireTableDataChanged();
+        }, onError);
+    }
+
+    @Override public int getRowCount() { return rowCount; }
+    @Override public int getColumnCount() { return COLUMNS.length; }
+    @Override public String getColumnName(int column) { return COLUMNS[column]; }
+    @Override public boolean isCellEditable(int row, int column) { return false; }
+    @Override public Class<?> getColumnClass(int column) { return COLUMN_TYPES[column]; }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        int page = row / PAGE_SIZE;
+        List<Reservation> rows = pages.get(page);
+        if (rows == null) {
+            requestPage(page);
+            return column == 1 ? "Loading…" : null;
+        }
+        int offset = row % PAGE_SIZE;
+        return offset < rows.size() ? cell(rows.get(offset), column) : null;
+    }
+
+    /** The loaded row at {@code row}, or null if its page is not in memory. */
+    Reservation getRow(int row) {
+        List<Reservation> rows = pages.get(row / PAGE_SIZE);
+        int offset = row % PAGE_SIZE;
+        return (rows != null && offset < rows.size()) ? rows.get(offset) : null;
+    }
+
+    /** The loaded row with this reservation id, or null if it is not in memory. */
+    Reservation findLoaded(int id) {
+        int at = indexOf(id);
+        return at >= 0 ? getRow(at) : null;
+    }
+
+    // ---------------- Row-level updates ----------------
+
+    /** Applies an inserted or changed reservation; call on the EDT with the row as now stored. */
+    public void upsert(Reservation row) {
+        int at = indexOf(row.id);
+        boolean belongs = filter.matches(row);
+        if (at >= 0) {
+            Reservation old = getRow(at);
+            if (old.sameAs(row)) return;
+            if (belongs && Reservation.order(old, row) == 0) {
+                // Same sort position: patch in place
+                pages.get(at / PAGE_SIZE).set(at % PAGE_SIZE, row);
+                fireTableRowsUpdated(at, at);
+                return;
+            }
+            removeAt(at);
+        }
+        if (belongs) insert(row);
+    }
+
+    /** Removes a reservation by id; call on the EDT after it was deleted (or left the current view). */
+    public void remove(int id) {
+        int at = indexOf(id);
+        if (at >= 0) {
+            removeAt(at);
+        } else if (rowCount > 0) {
+            // Not cached, so its position is unknown; recount rather than guess
+            reload(filter);
+        }
+    }
+
+    /**
+     * Reads the change feed from where the last poll stopped, re-fetches the rows it names and
+     * applies them; rows deleted elsewhere are dropped if loaded. {@code onChanged} receives the
+     * changed rows and deleted ids (on the EDT) so other caches can follow along.
+     */
+    public void pollChanges(BiConsumer<List<Reservation>, int[]> onChanged) {
+        if (feedPosition < 0) return;
+        final int myEpoch = epoch;
+        final long after = feedPosition;
+        db.submit("poll", () -> {
+            try (Connection c = pool.getConnection()) {
+                ChangeFeed.Batch batch = ChangeFeed.read(c, after, POLL_LIMIT);
+                return new Object[]{batch, Reservation.fetchAll(c, batch.upsertedIds())};
+            }
+        }, result -> {
+            ChangeFeed.Batch batch = (ChangeFeed.Batch) result[0];
+            @SuppressWarnings("unchecked")
+            List<Reservation> rows = (List<Reservation>) result[1];
+            if (myEpoch != epoch || feedPosition != after || batch.next == after) return;
+            if (batch.full) {
+                // A burst of changes (e.g. a bulk import): cheaper to start over
+                reload(filter);
+                return;
+            }
+            feedPosition = batch.next;
+            if (filter.archived) {
+                // The archive view is a snapshot; archiving shows up here as deletes of live rows
+                onChanged.accept(rows, batch.deletedIds());
+                return;
+            }
+            Set<Integer> deleted = new HashSet<>();
+            for (int id : batch.deletedIds()) deleted.add(id);
+            for (int id : batch.upsertedIds()) deleted.add(id); // unless fetched below: deleted since
+            for (Reservation row : rows) {
+                deleted.remove(row.id);
+                upsert(row);
+            }
+            int[] gone = deleted.stream().mapToInt(Integer::intValue).toArray();
+            for (int id : gone) {
+                // Not loaded: whether it was in this view is unknown; the count catches up on reload
+                int at = indexOf(id);
+                if (at >= 0) removeAt(at);
+            }
+            onChanged.accept(rows, gone);
+        }, e -> { /* transient; the next poll retries from the same position */ });
+    }
+
+    private int indexOf(int id) {
+        for (Map.Entry<Integer, List<Reservation>> e : pages.entrySet()) {
+            List<Reservation> rows = e.getValue();
+            for (int i = 0; i < rows.size(); i++) {
+                if (rows.get(i).id == id) return e.getKey() * PAGE_SIZE + i;
+            }
+        }
+        return -1;
+    }
+
+    private void insert(Reservation row) {
+        TreeMap<Integer, List<Reservation>> loaded = new TreeMap<>(pages);
+        int at = -1;
+        for (Map.Entry<Integer, List<Reservation>> e : loaded.entrySet()) {
+            int p = e.getKey();
+            List<Reservation> rows = e.getValue();
+            if (rows.isEmpty()) continue;
+            boolean fitsHere = Reservation.order(row, rows.get(rows.size() - 1)) < 0
+                    || (rows.size() < PAGE_SIZE && p == (rowCount - 1) / PAGE_SIZE); // short last page
+            if (!fitsHere) continue;
+            if (p > 0 && !loaded.containsKey(p - 1) && Reservation.order(row, rows.get(0)) < 0) {
+                // Belongs somewhere before this page but the page in front isn't cached:
+                // exact position unknown, so let everything from here be re-fetched
+                at = p * PAGE_SIZE;
+                invalidateFrom(p);
+            } else {
+                int pos = 0;
+                while (pos < rows.size() && Reservation.order(rows.get(pos), row) < 0) pos++;
+                rows.add(pos, row);
+                if (rows.size() > PAGE_SIZE) rows.remove(rows.size() - 1); // spills into page p + 1
+                pageStarts.put(p, rows.get(0));
+                pageEnds.put(p, rows.get(rows.size() - 1));
+                invalidateFrom(p + 1);
+                at = p * PAGE_SIZE + pos;
+            }
+            break;
+        }
+        if (at < 0) {
+            // Sorts after everything cached
+            at = rowCount;
+            invalidateFrom(loaded.isEmpty() ? 0 : loaded.lastKey() + 1);
+        }
+        rowCount++;
+        fireTableRowsInserted(at, at);
+    }
+
+    private void removeAt(int at) {
+        int p = at / PAGE_SIZE;
+        List<Reservation> rows = pages.get(p);
+        rows.remove(at % PAGE_SIZE);
+        rowCount--;
+        // Later pages shift up by one; re-fetch this page quietly so its last slot is filled
+        version++;
+        pageEnds.tailMap(p, true).clear();
+        pageStarts.tailMap(p, true).clear();
+        pages.keySet().removeIf(k -> k > p);
+        pending.removeIf(k -> k > p);
+        waitingForKeys.removeIf(k -> k > p);
+        fireTableRowsDeleted(at, at);
+        if ((p + 1) * PAGE_SIZE <= rowCount) refetch(p);
+    }
+
+    private void invalidateFrom(int page) {
+        version++;
+        pages.keySet().removeIf(k -> k >= page);
+        pageEnds.tailMap(page, true).clear();
+        pageStarts.tailMap(page, true).clear();
+        pending.removeIf(k -> k >= page);
+        waitingForKeys.removeIf(k -> k >= page);
+    }
+
+    private void refetch(int page) {
+        if (pending.contains(page)) return;
+        List<Reservation> stale = pages.remove(page);
+        requestPage(page);
+        if (stale != null) pages.put(page, stale); // keep showing it until the fresh copy arrives
+    }
+
+    // ---------------- Paging ----------------
+
+    private ResultSet executeTracked(PreparedStatement ps) throws SQLException {
+        running.add(ps);
+        try {
+            return ps.executeQuery();
+        } finally {
+            running.remove(ps);
+        }
+    }
+
+    private void cancelRunning() {
+        if (running.isEmpty()) return;
+        List<Statement> victims = new ArrayList<>(running);
+        // Statement.cancel() opens its own connection to send KILL QUERY, so keep it off the EDT;
+        // the cancelled tasks fail with an error that the epoch check then drops
+        db.submit(() -> {
+            for (Statement st : victims) {
+                try {
+                    st.cancel();
+                } catch (SQLException ignore) {
+                    // already finished or closed
+                }
+            }
+            return null;
+        }, null, null);
+    }
+
+    /**
+     * Fetches {@code page} by a keyset seek from the nearest known key: forward from the end of an
+     * earlier page or the top, or backward from the start of a later page or the bottom of the
+     * view, reading the (at most {@value #MAX_WALK}) pages in between on the way. If every known
+     * key is further away, the page waits for {@link #sampleBoundaries}.
+     */
+    private void requestPage(int page) {
+        if (!pending.add(page)) return;
+        final int myEpoch = epoch;
+        final int myVersion = version;
+
+        int lastPage = Math.max(0, (rowCount - 1) / PAGE_SIZE);
+        Map.Entry<Integer, Reservation> before = pageEnds.lowerEntry(page);
+        Map.Entry<Integer, Reservation> after = pageStarts.higherEntry(page);
+        int fromTop = before == null ? page : page - before.getKey() - 1;   // pages to read on the way
+        int fromBottom = after == null ? lastPage - page : after.getKey() - page - 1;
+        if (Math.min(fromTop, fromBottom) > MAX_WALK) {
+            waitingForKeys.add(page);
+            sampleBoundaries();
+            return;
+        }
+        final boolean forward = fromTop <= fromBottom;
+        final Reservation key = forward ? (before == null ? null : before.getValue()) : (after == null ? null : after.getValue());
+        final int count = (forward ? fromTop : fromBottom) + 1;
+        // Backward from the bottom, the first page read is the last one, which may be short
+        final int firstSize = !forward && after == null ? rowCount - lastPage * PAGE_SIZE : PAGE_SIZE;
+        final int firstPage = forward ? page - count + 1 : page;
+
+        final ReservationFilter f = filter;
+        db.submit(() -> walk(f, key, forward, count, firstSize), fetched -> {
+            if (myEpoch != epoch) return;
+            if (!pending.remove(page)) return; // invalidated while in flight
+            if (version != myVersion) {
+                // Rows moved between pages meanwhile, so the key may no longer sit on a page boundary
+                requestPage(page);
+                return;
+            }
+            // Forward, a short read is missing its last pages; backward, its first ones
+            int from = forward ? firstPage : firstPage + count - fetched.size();
+            for (int i = 0; i < fetched.size(); i++) {
+                int p = from + i;
+                pending.remove(p);
+                store(p, fetched.get(i));
+            }
+            if (!pages.containsKey(page)) store(page, new ArrayList<>());
+            int first = Math.min(from, page) * PAGE_SIZE;
+            int last = Math.min((Math.max(from + fetched.size() - 1, page) + 1) * PAGE_SIZE, rowCount) - 1;
+            if (last >= first) fireTableRowsUpdated(first, last);
+        }, e -> {
+            if (myEpoch != epoch) return;
+            pending.remove(page);
+            onError.accept(e);
+        });
+    }
+
+    private void store(int page, List<Reservation> rows) {
+        pages.put(page, rows);
+        if (rows.isEmpty()) return;
+        pageStarts.put(page, rows.get(0));
+        pageEnds.put(page, rows.get(rows.size() - 1));
+    }
+
+    /**
+     * Reads {@code count} pages in a row, seeking from {@code key} (null: the top going forward,
+     * the bottom going backward); returns them in table order.
+     */
+    private List<List<Reservation>> walk(ReservationFilter f, Reservation key, boolean forward, int count, int firstSize)
+            throws SQLException {
+        List<List<Reservation>> out = new ArrayList<>(count);
+        try (Connection c = pool.getConnection()) {
+            for (int i = 0; i < count; i++) {
+                List<Reservation> rows = fetch(c, f, key, forward, i == 0 ? firstSize : PAGE_SIZE);
+                if (rows.isEmpty()) break;
+                out.add(rows);
+                key = forward ? rows.get(rows.size() - 1) : rows.get(0);
+            }
+        }
+        if (!forward) Collections.reverse(out);
+        return out;
+    }
+
+    /** Up to {@code limit} rows next to {@code key} in table order, read backward and flipped if not {@code forward}. */
+    private List<Reservation> fetch(Connection c, ReservationFilter f, Reservation key, boolean forward, int limit)
+            throws SQLException {
+        String sql = "/* tablePage */ " + SELECT + f.table() + " " + where(f, key == null ? null : forward ? AFTER_KEY : BEFORE_KEY)
+                + (forward ? ORDER : REVERSE_ORDER) + "LIMIT ?";
+        try (PreparedStatement ps = c.prepareStatement(sql)) {
+            int i = f.bind(ps, 1);
+            if (key != null) {
+                ps.setTimestamp(i++, key.checkIn);
+                ps.setTimestamp(i++, key.checkIn);
+                ps.setInt(i++, key.id);
+            }
+            ps.setInt(i, limit);
+            List<Reservation> rows = new ArrayList<>(limit);
+            try (ResultSet rs = executeTracked(ps)) {
+                while (rs.next()) rows.add(new Reservation(rs));
+            }
+            if (!forward) Collections.reverse(rows);
+            return rows;
+        }
+    }
+
+    /**
+     * Reads the key of every {@value #PAGE_SIZE}th row of the view in one index scan and keeps them
+     * as page ends, so a page far from any loaded one (e.g. after dragging the scroll bar) is one
+     * seek away. Runs at most once at a time; pages that waited for it are requested again.
+     */
+    private void sampleBoundaries() {
+        if (sampling) return;
+        sampling = true;
+        final int myEpoch = epoch;
+        final int myVersion = version;
+        final ReservationFilter f = filter;
+        final String sql = "/* tableBoundaries */ SELECT reservation_id, reservation_date FROM (" +
+                "SELECT reservation_id, reservation_date, ROW_NUMBER() OVER (" + ORDER + ") AS n FROM " + f.table() + " " +
+                where(f, null) + ") ranked WHERE n % " + PAGE_SIZE + " = 0 ORDER BY n";
+        db.submit(() -> {
+            try (Connection c = pool.getConnection();
+                 PreparedStatement ps = c.prepareStatement(sql)) {
+                f.bind(ps, 1);
+                List<Reservation> ends = new ArrayList<>();
+                try (ResultSet rs = executeTracked(ps)) {
+                    while (rs.next()) ends.add(new Reservation(rs.getInt(1), null, 0, null, rs.getTimestamp(2), null, null));
+                }
+                return ends;
+            }
+        }, ends -> {
+            if (myEpoch != epoch) return;
+            sampling = false;
+            if (version == myVersion) {
+                for (int p = 0; p < ends.size(); p++) pageEnds.putIfAbsent(p, ends.get(p));
+            }
+            List<Integer> waiting = new ArrayList<>(waitingForKeys);
+            waitingForKeys.clear();
+            for (int page : waiting) {
+                if (pending.remove(page)) requestPage(page);
+            }
+        }, e -> {
+            if (myEpoch != epoch) return;
+            sampling = false;
+            pending.removeAll(waitingForKeys);
+            waitingForKeys.clear();
+            onError.accept(e);
+        });
+    }
+
+    // Filter parameters are bound first, then the keyset ones
+    private static String where(ReservationFilter filter, String keyCondition) {
+        List<String> conds = filter.conditions();
+        if (keyCondition != null) conds.add(keyCondition);
+        return conds.isEmpty() ? "" : "WHERE " + String.join("AND ", conds);
+    }
+}
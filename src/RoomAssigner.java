@@ -0,0 +1,354 @@
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Chooses rooms so the free nights left between bookings stay in long runs: long stays need
+ * them, and a one- or two-night hole between bookings rarely sells.
+ *
+ * A room's calendar is scored by the sum of its squared free runs, in nights from today to
+ * {@value #HORIZON_DAYS} days ahead; higher is better. Putting an n-night stay into a free run
+ * of a + n + c nights costs (a + n + c)² - a² - c². So {@link #bestFit} takes the room whose gap
+ * leaves the fewest free nights either side, and prefers one leftover run to two between
+ * equals. {@link #plan} is the nightly pass. It moves future arrivals between rooms of the same
+ * type where that raises the score, biggest gain first and up to a limit, since every move is a
+ * guest changing rooms. It returns the moves for {@link #apply} to make.
+ */
+public class RoomAssigner {
+
+    static final int HORIZON_DAYS = 365;
+    static final int DEFAULT_MAX_MOVES = 200;
+    private static final int MAX_PASSES = 4;
+
+    /** One proposed room change; {@code checkIn}/{@code checkOut} are the booking's times when planned. */
+    public static final class Move {
+        final int reservationId;
+        final int fromRoom;
+        final int toRoom;
+        final long checkIn;
+        final long checkOut;
+
+        Move(int reservationId, int fromRoom, int toRoom, long checkIn, long checkOut) {
+            this.reservationId = reservationId;
+            this.fromRoom = fromRoom;
+            this.toRoom = toRoom;
+            this.checkIn = checkIn;
+            this.checkOut = checkOut;
+        }
+    }
+
+    /** The moves of a nightly pass, in the order to make them, and what they buy. */
+    public static final class Plan {
+        final List<Move> moves;
+        final int movable;        // future arrivals that were considered
+        final long scoreBefore;
+        final long scoreAfter;
+        final long longestBefore; // longest free run in any room, in nights
+        final long longestAfter;
+
+        Plan(List<Move> moves, int movable, long scoreBefore, long scoreAfter, long longestBefore, long longestAfter) {
+            this.moves = moves;
+            this.movable = movable;
+            this.scoreBefore = scoreBefore;
+            this.scoreAfter = scoreAfter;
+            this.longestBefore = longestBefore;
+            this.longestAfter = longestAfter;
+        }
+    }
+
+    // A booking as nights [in, out), plus the exact times the database checks overlaps with
+    private static final class Stay {
+        final int id;
+        final long start;
+        final long end;
+        final long in;
+        final long out;
+        final boolean movable;
+
+        Stay(AvailabilityIndex.Booking b, long today) {
+            this.id = b.id;
+            this.start = b.start;
+            this.end = b.end;
+            this.in = Dates.epochDay(b.start);
+            this.out = Math.max(Dates.epochDay(b.end), in + 1);
+            this.movable = b.id > 0 && in > today; // not in-house guests, today's arrivals or offline placeholders
+        }
+    }
+
+    // One room's stays by start, and the nights they take as a bitset (bit i = night today + i) for
+    // quick gap sizes; a room where two bookings share a night is left as it is
+    private static final class Calendar {
+        final int room;
+        final long today;
+        final TreeMap<Long, Stay> byStart = new TreeMap<>();
+        final BitSet nights = new BitSet(HORIZON_DAYS);
+        boolean fixed;
+
+        Calendar(int room, long today) {
+            this.room = room;
+            this.today = today;
+        }
+
+        void add(Stay s) {
+            byStart.put(s.start, s);
+            int a = index(s.in), b = index(s.out);
+            if (a < b) nights.set(a, b);
+        }
+
+        void remove(Stay s) {
+            byStart.remove(s.start);
+            int a = index(s.in), b = index(s.out);
+            if (a < b) nights.clear(a, b);
+        }
+
+        int index(long day) {
+            return (int) Math.max(0, Math.min(HORIZON_DAYS, day - today));
+        }
+
+        // Free nights right before / from a day, within the horizon
+        long freeBefore(long day) {
+            int i = index(day);
+            return i - (nights.previousSetBit(i - 1) + 1);
+        }
+
+        long freeAfter(long day) {
+            int i = index(day);
+            int next = nights.nextSetBit(i);
+            return (next < 0 ? HORIZON_DAYS : next) - i;
+        }
+
+        boolean nightsFree(long in, long out) {
+            int a = index(in), b = index(out);
+            int next = nights.nextSetBit(a);
+            return a >= b || next < 0 || next >= b;
+        }
+
+        /** No booking overlaps the stay to the minute, as the database checks it. */
+        boolean fits(Stay s) {
+            Map.Entry<Long, Stay> before = byStart.lowerEntry(s.start);
+            Map.Entry<Long, Stay> after = byStart.ceilingEntry(s.start);
+            return (before == null || before.getValue().end <= s.start) && (after == null || after.getValue().start >= s.end);
+        }
+    }
+
+    private final ReservationService service;
+
+    public RoomAssigner(ReservationService service) {
+        this.service = service;
+    }
+
+    // ---------------- Best fit ----------------
+
+    /**
+     * Of {@code rooms} (ascending), the one free for [from, to) where the stay breaks up the fewest
+     * free nights, or -1 if none is free. {@code today} is an epoch day.
+     */
+    static int bestFit(AvailabilityIndex index, int[] rooms, long from, long to, long today) {
+        long horizonEnd = today + HORIZON_DAYS;
+        long in = Dates.epochDay(from);
+        long out = Math.max(Dates.epochDay(to), in + 1);
+        long n = run(in, out, today, horizonEnd);
+        int best = -1;
+        long bestCost = Long.MAX_VALUE;
+        for (int room : rooms) {
+            long[] gap = index.gapAround(room, from, to);
+            if (gap == null) continue;
+            long a = run(day(gap[0]), in, today, horizonEnd);
+            long c = run(out, day(gap[1]), today, horizonEnd);
+            long cost = splitCost(a, n, c);
+            if (cost < bestCost) {
+                best = room;
+                bestCost = cost;
+            }
+        }
+        return best;
+    }
+
+    // ---------------- Nightly pass ----------------
+
+    /** Proposes up to {@code maxMoves} moves from the service's cached catalog and index (load them first). */
+    public Plan plan(int maxMoves) {
+        return plan(service.catalog(), service.availability().bookings(), System.currentTimeMillis(), maxMoves);
+    }
+
+    static Plan plan(RoomCatalog catalog, List<AvailabilityIndex.Booking> bookings, long now, int maxMoves) {
+        if (maxMoves < 0) throw new IllegalArgumentException("Max moves can't be negative.");
+        long today = Dates.epochDay(now);
+        long horizonEnd = today + HORIZON_DAYS;
+        Map<Integer, List<Stay>> byRoom = new HashMap<>();
+        for (AvailabilityIndex.Booking b : bookings) byRoom.computeIfAbsent(b.room, r -> new ArrayList<>()).add(new Stay(b, today));
+
+        List<Move> moves = new ArrayList<>();
+        int movable = 0;
+        long scoreBefore = 0, scoreAfter = 0, longestBefore = 0, longestAfter = 0;
+        for (String type : catalog.types()) {
+            int[] rooms = catalog.roomsOfType(type);
+            Calendar[] cals = new Calendar[rooms.length];
+            Map<Integer, Calendar> where = new HashMap<>(); // movable stay id -> its room now
+            List<Stay> candidates = new ArrayList<>();
+            for (int i = 0; i < rooms.length; i++) {
+                Calendar cal = cals[i] = new Calendar(rooms[i], today);
+                List<Stay> stays = byRoom.get(rooms[i]);
+                if (stays == null) continue;
+                stays.sort(Comparator.comparingLong(s -> s.start));
+                Stay prev = null;
+                for (Stay s : stays) {
+                    if (prev != null && (prev.end > s.start || prev.out > s.in)) cal.fixed = true;
+                    cal.add(s);
+                    prev = s;
+                }
+                if (cal.fixed) continue;
+                for (Stay s : stays) {
+                    if (!s.movable) continue;
+                    candidates.add(s);
+                    where.put(s.id, cal);
+                }
+            }
+            candidates.sort(Comparator.comparingLong(s -> s.start));
+            movable += candidates.size();
+            for (Calendar cal : cals) {
+                long[] runs = freeRuns(cal);
+                scoreBefore += runs[0];
+                longestBefore = Math.max(longestBefore, runs[1]);
+            }
+
+            for (int pass = 0; pass < MAX_PASSES && moves.size() < maxMoves; pass++) {
+                // Rank every stay by the gain of its best move now, then make them biggest first,
+                // re-checked since earlier moves in the pass may have changed both rooms
+                long[] gains = new long[candidates.size()];
+                Integer[] order = new Integer[candidates.size()];
+                for (int i = 0; i < gains.length; i++) {
+                    Stay s = candidates.get(i);
+                    long[] gain = new long[1];
+                    if (bestMove(s, where.get(s.id), cals, horizonEnd, gain) != null) gains[i] = gain[0];
+                    order[i] = i;
+                }
+                java.util.Arrays.sort(order, (x, y) -> Long.compare(gains[y], gains[x]));
+                boolean improved = false;
+                for (int i : order) {
+                    if (gains[i] <= 0 || moves.size() >= maxMoves) break;
+                    Stay s = candidates.get(i);
+                    Calendar from = where.get(s.id);
+                    Calendar to = bestMove(s, from, cals, horizonEnd, new long[1]);
+                    if (to == null) continue;
+                    from.remove(s);
+                    to.add(s);
+                    where.put(s.id, to);
+                    moves.add(new Move(s.id, from.room, to.room, s.start, s.end));
+                    improved = true;
+                }
+                if (!improved) break;
+            }
+            for (Calendar cal : cals) {
+                long[] runs = freeRuns(cal);
+                scoreAfter += runs[0];
+                longestAfter = Math.max(longestAfter, runs[1]);
+            }
+        }
+        return new Plan(moves, movable, scoreBefore, scoreAfter, longestBefore, longestAfter);
+    }
+
+    /**
+     * The room of the same type that {@code s} gains most by moving to from {@code from}, with the
+     * gain in {@code gain[0]}; null if no move raises the score.
+     */
+    private static Calendar bestMove(Stay s, Calendar from, Calendar[] cals, long horizonEnd, long[] gain) {
+        gain[0] = 0;
+        long n = run(s.in, s.out, from.today, horizonEnd);
+        long freed = splitCost(from.freeBefore(s.in), n, from.freeAfter(s.out));
+        if (freed <= n * n) return null; // no free night either side: nowhere fits tighter
+        Calendar best = null;
+        for (Calendar cal : cals) {
+            if (cal == from || cal.fixed || !cal.nightsFree(s.in, s.out)) continue;
+            long net = freed - splitCost(cal.freeBefore(s.in), n, cal.freeAfter(s.out));
+            if (net > gain[0] && cal.fits(s)) {
+                gain[0] = net;
+                best = cal;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Makes the moves in order through {@link ReservationService#moveRoom}, which changes only the
+     * room. A move is skipped if its booking changed room or dates since the plan or its new room
+     * was taken meanwhile; returns how many were made.
+     */
+    public int apply(Plan plan) throws SQLException {
+        int done = 0;
+        for (Move m : plan.moves) {
+            try {
+                if (service.moveRoom(m.reservationId, m.fromRoom, m.toRoom,
+                        new Timestamp(m.checkIn), new Timestamp(m.checkOut)) != null) done++;
+            } catch (RoomConflictException e) {
+                // booked at a desk since the plan was made; the guest keeps the old room
+            }
+        }
+        return done;
+    }
+
+    // ---------------- Scoring ----------------
+
+    // Free nights in [fromDay, toDay) within [today, horizonEnd)
+    private static long run(long fromDay, long toDay, long today, long horizonEnd) {
+        return Math.max(0, Math.min(toDay, horizonEnd) - Math.max(fromDay, today));
+    }
+
+    // How much an n-night stay between a and c free nights lowers the score
+    private static long splitCost(long a, long n, long c) {
+        long g = a + n + c;
+        return g * g - a * a - c * c;
+    }
+
+    private static long day(long millis) {
+        if (millis == Long.MIN_VALUE || millis == Long.MAX_VALUE) return millis;
+        return Dates.epochDay(millis);
+    }
+
+    // {score, longest free run} of one room over the horizon
+    private static long[] freeRuns(Calendar cal) {
+        long score = 0, longest = 0;
+        for (int i = cal.nights.nextClearBit(0); i < HORIZON_DAYS; i = cal.nights.nextClearBit(i)) {
+            int taken = cal.nights.nextSetBit(i);
+            int end = taken < 0 ? HORIZON_DAYS : taken;
+            score += (long) (end - i) * (end - i);
+            longest = Math.max(longest, end - i);
+            i = end;
+        }
+        return new long[]{score, longest};
+    }
+
+    /** {@code java RoomAssigner [max moves] [--apply]}: prints tonight's proposed moves, and with --apply makes them. */
+    public static void main(String[] args) throws Exception {
+        int maxMoves = DEFAULT_MAX_MOVES;
+        boolean apply = false;
+        for (String arg : args) {
+            if (arg.equals("--apply")) apply = true; else maxMoves = Integer.parseInt(arg);
+        }
+        ConnectionPool pool = DbConfig.newPool(1);
+        try {
+            MigrationRunner.runAtStartup(pool);
+            ReservationService service = new ReservationService(pool);
+            service.loadCaches();
+            RoomAssigner assigner = new RoomAssigner(service);
+            long t0 = System.nanoTime();
+            Plan plan = assigner.plan(maxMoves);
+            long ms = (System.nanoTime() - t0) / 1_000_000;
+            for (Move m : plan.moves) {
+                System.out.printf("Reservation %d (%s to %s): room %d -> %d%n", m.reservationId,
+                        Dates.format(new Timestamp(m.checkIn)), Dates.format(new Timestamp(m.checkOut)), m.fromRoom, m.toRoom);
+            }
+            System.out.printf("%d move(s) among %d future arrival(s) in %d ms; longest free run %d -> %d night(s), score %d -> %d%n",
+                    plan.moves.size(), plan.movable, ms, plan.longestBefore, plan.longestAfter, plan.scoreBefore, plan.scoreAfter);
+            if (apply) System.out.printf("Made %d of %d move(s)%n", assigner.apply(plan), plan.moves.size());
+        } finally {
+            pool.close();
+        }
+    }
+}
@@ -0,0 +1,173 @@
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * In-process cache of the rooms table.
+ *
+ * Rooms change rarely, so they are read once and kept in parallel primitive arrays sorted by room
+ * number (lookup is a binary search, no boxing). {@link #refreshIfChanged} compares a cheap
+ * checksum of the table with the one seen at load time and only re-reads rows when it differs.
+ * The arrays are replaced as a whole, so readers on any thread see a consistent snapshot.
+ */
+public class RoomCatalog {
+
+    // Row count plus a CRC over every row: any insert, delete or edit changes it
+    private static final String VERSION_SQL =
+            "SELECT COUNT(*), COALESCE(SUM(CRC32(CONCAT_WS('|', room_number, room_type, price_per_night))), 0) FROM rooms";
+
+    private static final class Snapshot {
+        final int[] rooms;          // ascending
+        final String[] types;       // parallel to rooms
+        final long[] pricePaise;    // parallel to rooms, price_per_night in minor units
+        final String version;
+
+        Snapshot(int[] rooms, String[] types, long[] pricePaise, String version) {
+            this.rooms = rooms;
+            this.types = types;
+            this.pricePaise = pricePaise;
+            this.version = version;
+        }
+    }
+
+    private static final Snapshot EMPTY = new Snapshot(new int[0], new String[0], new long[0], null);
+
+    private volatile Snapshot snap = EMPTY;
+
+    public boolean isLoaded() {
+        return snap.version != null;
+    }
+
+    /** Unconditionally re-reads the rooms table. */
+    public void load(Connection c) throws SQLException {
+        String version = readVersion(c);
+        int n = 0;
+        int[] rooms = new int[64];
+        String[] types = new String[64];
+        long[] prices = new long[64];
+        try (Statement st = c.createStatement();
+             ResultSet rs = st.executeQuery("SELECT room_number, room_type, price_per_night FROM rooms ORDER BY room_number")) {
+            while (rs.next()) {
+                if (n == rooms.length) {
+                    rooms = Arrays.copyOf(rooms, n * 2);
+                    types = Arrays.copyOf(types, n * 2);
+                    prices = Arrays.copyOf(prices, n * 2);
+                }
+                rooms[n] = rs.getInt(1);
+                types[n] = rs.getString(2);
+                prices[n] = rs.getBigDecimal(3).movePointRight(2).longValue();
+                n++;
+            }
+        }
+        snap = new Snapshot(Arrays.copyOf(rooms, n), Arrays.copyOf(types, n), Arrays.copyOf(prices, n), version);
+    }
+
+    /** Reloads if the table changed since the last load (or was never loaded); returns true if it did. */
+    public boolean refreshIfChanged(Connection c) throws SQLException {
+        if (isLoaded() && readVersion(c).equals(snap.version)) return false;
+        load(c);
+        return true;
+    }
+
+    /** All room numbers, ascending. */
+    public int[] roomNumbers() {
+        return snap.rooms.clone();
+    }
+
+    public boolean contains(int room) {
+        return Arrays.binarySearch(snap.rooms, room) >= 0;
+    }
+
+    /** Room type, or null for an unknown room. */
+    public String type(int room) {
+        Snapshot s = snap;
+        int i = Arrays.binarySearch(s.rooms, room);
+        return i >= 0 ? s.types[i] : null;
+    }
+
+    /** Price per night in paise, or -1 for an unknown room. */
+    public long pricePaise(int room) {
+        Snapshot s = snap;
+        int i = Arrays.binarySearch(s.rooms, room);
+        return i >= 0 ? s.pricePaise[i] : -1;
+    }
+
+    /** Distinct room types, sorted. */
+    public String[] types() {
+        return Arrays.stream(snap.types).distinct().sorted().toArray(String[]::new);
+    }
+
+    /** Rooms of one type, ascending; empty for an unknown type. */
+    public int[] roomsOfType(String type) {
+        Snapshot s = snap;
+        int[] out = new int[s.rooms.length];
+        int n = 0;
+        for (int i = 0; i < s.rooms.length; i++) if (s.types[i].equals(type)) out[n++] = s.rooms[i];
+        return Arrays.copyOf(out, n);
+    }
+
+    /** The lowest price per night among rooms of one type (its rack rate) in paise, or -1 if there are none. */
+    public long typePricePaise(String type) {
+        Snapshot s = snap;
+        long lowest = -1;
+        for (int i = 0; i < s.rooms.length; i++) {
+            if (s.types[i].equals(type) && (lowest < 0 || s.pricePaise[i] < lowest)) lowest = s.pricePaise[i];
+        }
+        return lowest;
+    }
+
+    // ---------------- Snapshot file (see CacheSnapshot) ----------------
+
+    /** Writes the loaded rooms and their checksum; each type name is written once and referenced by index. */
+    void write(DataOutputStream out) throws IOException {
+        Snapshot s = snap;
+        if (s.version == null) throw new IllegalStateException("Room catalog is not loaded.");
+        Map<String, Integer> typeIndex = new LinkedHashMap<>();
+        for (String t : s.types) typeIndex.putIfAbsent(t, typeIndex.size());
+        CacheSnapshot.putString(out, s.version);
+        out.writeInt(typeIndex.size());
+        for (String t : typeIndex.keySet()) CacheSnapshot.putString(out, t);
+        out.writeInt(s.rooms.length);
+        for (int i = 0; i < s.rooms.length; i++) {
+            out.writeInt(s.rooms[i]);
+            out.writeInt(typeIndex.get(s.types[i]));
+            out.writeLong(s.pricePaise[i]);
+        }
+    }
+
+    /**
+     * Replaces the rooms with ones written by {@link #write}. The checksum comes along, so the next
+     * {@link #refreshIfChanged} only re-reads rows if the table changed since the snapshot.
+     */
+    void read(ByteBuffer in) {
+        String version = CacheSnapshot.getString(in);
+        String[] typeNames = new String[in.getInt()];
+        for (int i = 0; i < typeNames.length; i++) typeNames[i] = CacheSnapshot.getString(in);
+        int n = in.getInt();
+        int[] rooms = new int[n];
+        String[] types = new String[n];
+        long[] prices = new long[n];
+        for (int i = 0; i < n; i++) {
+            rooms[i] = in.getInt();
+            types[i] = typeNames[in.getInt()];
+            prices[i] = in.getLong();
+            if (i > 0 && rooms[i] <= rooms[i - 1]) throw new IllegalArgumentException("Snapshot rooms are out of order.");
+        }
+        snap = new Snapshot(rooms, types, prices, version);
+    }
+
+    private static String readVersion(Connection c) throws SQLException {
+        try (Statement st = c.createStatement();
+             ResultSet rs = st.executeQuery(VERSION_SQL)) {
+            rs.next();
+            return rs.getLong(1) + ":" + rs.getLong(2);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+import java.sql.SQLException;
+import java.sql.Timestamp;
+
+/** A booking would overlap an ACTIVE reservation on the same room. */
+public class RoomConflictException extends SQLException {
+
+    private final int room;
+
+    public RoomConflictException(int room, Timestamp checkIn, Timestamp checkOut) {
+        super("Room " + room + " is not available between " + checkIn.toLocalDateTime().toLocalDate() +
+              " and " + checkOut.toLocalDateTime().toLocalDate() + ".");
+        this.room = room;
+    }
+
+    public int getRoom() {
+        return room;
+    }
+}
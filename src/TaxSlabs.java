@@ -0,0 +1,61 @@
+import java.util.Arrays;
+
+/**
+ * GST rate by nightly room price. Amounts are paise, rates basis points (1800 = 18%).
+ *
+ * Configured with {@code -Dhotel.tax.slabs}, a comma-separated list of
+ * {@code <price from, rupees>:<rate, percent>} in ascending order, e.g.
+ * {@code 0:0,1001:12,7501:18}. The default {@code 0:18} is a flat 18%.
+ */
+public final class TaxSlabs {
+
+    private final long[] fromPaise; // ascending, first is 0
+    private final int[] rateBp;
+
+    private TaxSlabs(long[] fromPaise, int[] rateBp) {
+        this.fromPaise = fromPaise;
+        this.rateBp = rateBp;
+    }
+
+    static TaxSlabs fromConfig() {
+        return parse(System.getProperty("hotel.tax.slabs", "0:18"));
+    }
+
+    static TaxSlabs parse(String spec) {
+        String[] parts = spec.split(",");
+        long[] from = new long[parts.length];
+        int[] rate = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            String[] kv = parts[i].trim().split(":");
+            try {
+                if (kv.length != 2) throw new NumberFormatException();
+                from[i] = new java.math.BigDecimal(kv[0].trim()).movePointRight(2).longValueExact();
+                rate[i] = new java.math.BigDecimal(kv[1].trim()).movePointRight(2).intValueExact();
+            } catch (NumberFormatException | ArithmeticException e) {
+                throw new IllegalArgumentException("Invalid tax slab '" + parts[i] + "' (expected rupees:percent)");
+            }
+            if (i > 0 && from[i] <= from[i - 1]) {
+                throw new IllegalArgumentException("Tax slabs must be in ascending price order: " + spec);
+            }
+        }
+        if (from[0] != 0) throw new IllegalArgumentException("The first tax slab must start at 0: " + spec);
+        return new TaxSlabs(from, rate);
+    }
+
+    /** Rate in basis points for a room at this nightly price. */
+    int rateBp(long pricePerNightPaise) {
+        int i = Arrays.binarySearch(fromPaise, pricePerNightPaise);
+        if (i < 0) i = -i - 2; // slab whose lower bound is just below the price
+        return rateBp[Math.max(i, 0)];
+    }
+
+    /** Tax on {@code amountPaise} at {@code rateBp}, rounded half up to the paisa. */
+    static long tax(long amountPaise, int rateBp) {
+        return (amountPaise * rateBp + 5_000) / 10_000;
+    }
+
+    /** "18%", "2.5%". */
+    static String percent(int rateBp) {
+        return java.math.BigDecimal.valueOf(rateBp, 2).stripTrailingZeros().toPlainString() + "%";
+    }
+}